@@ -0,0 +1,10 @@
+package com.mrsdeores.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Enables {@code @Scheduled} background jobs (analytics drain, sweepers). */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -2,11 +2,20 @@ package com.mrsdeores.controllers;
 
 import com.mrsdeores.models.Order;
 import com.mrsdeores.models.Product;
+import com.mrsdeores.pricing.Money;
 import com.mrsdeores.repository.CategoryRepository;
 import com.mrsdeores.repository.CustomOrderRepository;
 import com.mrsdeores.repository.OrderRepository;
 import com.mrsdeores.repository.ProductRepository;
 import com.mrsdeores.repository.UserRepository;
+import com.mrsdeores.search.SearchAnalytics;
+import com.mrsdeores.services.FlashStockPools;
+import com.mrsdeores.services.GuestCartSweeper;
+import com.mrsdeores.services.IdempotencyStore;
+import com.mrsdeores.services.InventoryService;
+import com.mrsdeores.services.PaymentOutbox;
+import com.mrsdeores.services.PaymentWebhooks;
+import com.mrsdeores.services.StockReservationSweeper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,6 +25,7 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -23,6 +33,8 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminStatsController {
 
+        private static final Set<String> PAID_STATUSES = Set.of("MOCK_PAID", "PAID", "SHIPPED", "DELIVERED");
+
         @Autowired
         private OrderRepository orderRepository;
 
@@ -38,6 +50,30 @@ public class AdminStatsController {
         @Autowired
         private CustomOrderRepository customOrderRepository;
 
+        @Autowired
+        private SearchAnalytics searchAnalytics;
+
+        @Autowired
+        private GuestCartSweeper guestCartSweeper;
+
+        @Autowired
+        private PaymentOutbox paymentOutbox;
+
+        @Autowired
+        private PaymentWebhooks paymentWebhooks;
+
+        @Autowired
+        private IdempotencyStore idempotencyStore;
+
+        @Autowired
+        private InventoryService inventoryService;
+
+        @Autowired
+        private StockReservationSweeper stockReservationSweeper;
+
+        @Autowired
+        private FlashStockPools flashStockPools;
+
         @GetMapping("/stats")
         public ResponseEntity<Map<String, Object>> getStats() {
                 Map<String, Object> stats = new HashMap<>();
@@ -50,12 +86,27 @@ public class AdminStatsController {
                                                 || "PENDING".equalsIgnoreCase(o.getStatus()))
                                 .count();
 
-                // Revenue: sum totalAmount for completed/paid orders
-                BigDecimal totalRevenue = allOrders.stream()
-                                .filter(o -> List.of("MOCK_PAID", "PAID", "SHIPPED", "DELIVERED")
-                                                .contains(o.getStatus() != null ? o.getStatus().toUpperCase() : ""))
-                                .map(o -> o.getTotalAmount() != null ? o.getTotalAmount() : BigDecimal.ZERO)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                // Revenue: sum totalAmount for completed/paid orders, in paise, in one
+                // pass that also fills the 7-day history (index 0 = six days ago).
+                java.time.LocalDate today = java.time.LocalDate.now();
+                long totalRevenuePaise = 0;
+                long[] dailyRevenuePaise = new long[7];
+                for (Order o : allOrders) {
+                        if (o.getStatus() == null || !PAID_STATUSES.contains(o.getStatus().toUpperCase())) {
+                                continue;
+                        }
+                        long amount = Money.toPaise(o.getTotalAmount());
+                        totalRevenuePaise = Money.plus(totalRevenuePaise, amount);
+                        if (o.getCreatedAt() != null) {
+                                long daysAgo = java.time.temporal.ChronoUnit.DAYS
+                                                .between(o.getCreatedAt().toLocalDate(), today);
+                                if (daysAgo >= 0 && daysAgo < dailyRevenuePaise.length) {
+                                        int slot = dailyRevenuePaise.length - 1 - (int) daysAgo;
+                                        dailyRevenuePaise[slot] = Money.plus(dailyRevenuePaise[slot], amount);
+                                }
+                        }
+                }
+                BigDecimal totalRevenue = Money.toRupees(totalRevenuePaise);
 
                 // ── Products ─────────────────────────────────────────
                 List<Product> allProducts = productRepository.findByIsActiveTrue();
@@ -117,20 +168,10 @@ public class AdminStatsController {
                 stats.put("recentOrders", recentOrders);
 
                 // ── 7-Day Revenue History ───────────────────────────
-                java.time.LocalDate today = java.time.LocalDate.now();
                 Map<String, BigDecimal> revenueHistory = new java.util.TreeMap<>();
                 for (int i = 6; i >= 0; i--) {
-                        java.time.LocalDate date = today.minusDays(i);
-                        String dateStr = date.toString();
-                        BigDecimal dailyRev = allOrders.stream()
-                                        .filter(o -> o.getCreatedAt() != null
-                                                        && o.getCreatedAt().toLocalDate().equals(date))
-                                        .filter(o -> List.of("MOCK_PAID", "PAID", "SHIPPED", "DELIVERED")
-                                                        .contains(o.getStatus() != null ? o.getStatus().toUpperCase()
-                                                                        : ""))
-                                        .map(o -> o.getTotalAmount() != null ? o.getTotalAmount() : BigDecimal.ZERO)
-                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                        revenueHistory.put(dateStr, dailyRev);
+                        revenueHistory.put(today.minusDays(i).toString(),
+                                        Money.toRupees(dailyRevenuePaise[dailyRevenuePaise.length - 1 - i]));
                 }
                 stats.put("revenueHistory", revenueHistory);
 
@@ -142,4 +183,45 @@ public class AdminStatsController {
 
                 return ResponseEntity.ok(stats);
         }
+
+        /**
+         * Search analytics over the last {@code days} days: top queries,
+         * zero-result queries per day, daily totals and drop counters.
+         */
+        @GetMapping("/search-analytics")
+        public ResponseEntity<Map<String, Object>> getSearchAnalytics(
+                        @RequestParam(name = "days", defaultValue = "7") int days,
+                        @RequestParam(name = "limit", defaultValue = "20") int limit) {
+                return ResponseEntity.ok(searchAnalytics.report(Math.max(1, Math.min(days, 90)),
+                                Math.max(1, Math.min(limit, 100))));
+        }
+
+        /** Guest cart sweeper counters: carts swept, batches and time taken. */
+        @GetMapping("/cart-sweeper")
+        public ResponseEntity<Map<String, Object>> getCartSweeperStats() {
+                return ResponseEntity.ok(guestCartSweeper.stats());
+        }
+
+        @GetMapping("/payment-outbox")
+        public ResponseEntity<Map<String, Object>> getPaymentOutboxStats() {
+                return ResponseEntity.ok(paymentOutbox.stats());
+        }
+
+        @GetMapping("/payment-webhooks")
+        public ResponseEntity<Map<String, Object>> getPaymentWebhookStats() {
+                return ResponseEntity.ok(paymentWebhooks.stats());
+        }
+
+        @GetMapping("/inventory")
+        public ResponseEntity<Map<String, Object>> getInventoryStats() {
+                Map<String, Object> stats = inventoryService.stats();
+                stats.put("ordersExpired", stockReservationSweeper.getOrdersExpired());
+                stats.put("flash", flashStockPools.stats());
+                return ResponseEntity.ok(stats);
+        }
+
+        @GetMapping("/idempotency")
+        public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+                return ResponseEntity.ok(idempotencyStore.stats());
+        }
 }
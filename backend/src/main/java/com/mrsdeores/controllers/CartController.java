@@ -1,9 +1,13 @@
 package com.mrsdeores.controllers;
 
-import com.mrsdeores.models.Cart;
 import com.mrsdeores.models.User;
+import com.mrsdeores.payload.request.CartBatchRequest;
+import com.mrsdeores.payload.response.MessageResponse;
 import com.mrsdeores.repository.UserRepository;
+import com.mrsdeores.security.jwt.GuestCartTokens;
+import com.mrsdeores.services.CartPricingEngine;
 import com.mrsdeores.services.CartService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -11,9 +15,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Cart endpoints. Rejected input (unknown product, bad quantity, invalid
+ * coupon) surfaces from the services as {@link IllegalArgumentException} and
+ * answers 400; anything else is a server fault and is left to propagate.
+ */
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
@@ -24,6 +34,12 @@ public class CartController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private GuestCartTokens guestCartTokens;
+
+    @Autowired
+    private CartPricingEngine cartPricingEngine;
+
     private User getAuthenticatedUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
@@ -33,47 +49,171 @@ public class CartController {
         return null;
     }
 
+    /**
+     * Anonymous callers only get a cart through a signed guest token, and
+     * only when those are enabled; a bare sessionId is guessable, so it is
+     * never trusted without a login.
+     */
+    private boolean useGuestToken(User user) {
+        return user == null && guestCartTokens.isEnabled();
+    }
+
+    private static ResponseEntity<?> unauthorized() {
+        return ResponseEntity.status(401).build();
+    }
+
+    /** Applies operations to the token cart and returns the view plus the re-signed token. */
+    private ResponseEntity<?> applyToGuestToken(String token, List<CartBatchRequest.Operation> operations) {
+        try {
+            Map<Long, Integer> lines = cartService.applyGuestOperations(guestCartTokens.decode(token), operations);
+            return ResponseEntity.ok()
+                    .header(GuestCartTokens.HEADER, guestCartTokens.encode(lines))
+                    .body(cartService.getGuestCartView(lines));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    private static CartBatchRequest.Operation operation(Long productId, Integer quantity, String op) {
+        CartBatchRequest.Operation operation = new CartBatchRequest.Operation();
+        operation.setProductId(productId);
+        operation.setQuantity(quantity);
+        operation.setOp(op);
+        return operation;
+    }
+
+    // Viewing never creates a cart; a caller without one gets an empty cart.
     @GetMapping
-    public ResponseEntity<Cart> getCart(@RequestParam(name = "sessionId", required = false) String sessionId) {
+    public ResponseEntity<?> getCart(@RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
+        User user = getAuthenticatedUser();
+        if (useGuestToken(user)) {
+            return ResponseEntity.ok(cartService.getGuestCartView(guestCartTokens.decode(guestCart)));
+        }
+        if (user == null) {
+            return unauthorized();
+        }
+        return ResponseEntity.ok(cartService.getCart(user, sessionId));
+    }
+
+    /**
+     * Priced cart: subtotal, bulk savings and, with {@code coupon}, the
+     * discount and total that checkout will charge.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(@RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestParam(name = "coupon", required = false) String coupon,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
         User user = getAuthenticatedUser();
-        if (user == null && sessionId == null) {
-            return ResponseEntity.badRequest().build();
+        try {
+            if (useGuestToken(user)) {
+                return ResponseEntity.ok(cartPricingEngine.applyCoupon(
+                        cartService.getGuestCartView(guestCartTokens.decode(guestCart)), coupon));
+            }
+            if (user == null) {
+                return unauthorized();
+            }
+            return ResponseEntity.ok(cartService.getPricedCart(user, sessionId, coupon));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         }
-        return ResponseEntity.ok(cartService.getOrCreateCart(user, sessionId));
     }
 
+    // Mutations return a lean CartView; GET /api/cart still returns the full cart.
     @PostMapping("/items")
-    public ResponseEntity<Cart> addToCart(@RequestBody Map<String, Object> payload,
-            @RequestParam(name = "sessionId", required = false) String sessionId) {
+    public ResponseEntity<?> addToCart(@RequestBody Map<String, Object> payload,
+            @RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
         User user = getAuthenticatedUser();
         Long productId = Long.valueOf(payload.get("productId").toString());
         Integer quantity = Integer.valueOf(payload.get("quantity").toString());
 
-        return ResponseEntity.ok(cartService.addToCart(user, sessionId, productId, quantity));
+        if (useGuestToken(user)) {
+            return applyToGuestToken(guestCart, List.of(operation(productId, quantity, "add")));
+        }
+        if (user == null) {
+            return unauthorized();
+        }
+        try {
+            return ResponseEntity.ok(cartService.addToCart(user, sessionId, productId, quantity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
     }
 
     @PutMapping("/items/{productId}")
-    public ResponseEntity<Cart> updateItem(@PathVariable("productId") Long productId, @RequestBody Map<String, Object> payload,
-            @RequestParam(name = "sessionId", required = false) String sessionId) {
+    public ResponseEntity<?> updateItem(@PathVariable("productId") Long productId, @RequestBody Map<String, Object> payload,
+            @RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
         User user = getAuthenticatedUser();
         Integer quantity = Integer.valueOf(payload.get("quantity").toString());
+        if (useGuestToken(user)) {
+            return applyToGuestToken(guestCart, List.of(operation(productId, quantity, "set")));
+        }
+        if (user == null) {
+            return unauthorized();
+        }
         return ResponseEntity.ok(cartService.updateItemQuantity(user, sessionId, productId, quantity));
     }
 
     @DeleteMapping("/items/{productId}")
-    public ResponseEntity<Cart> removeItem(@PathVariable("productId") Long productId,
-            @RequestParam(name = "sessionId", required = false) String sessionId) {
+    public ResponseEntity<?> removeItem(@PathVariable("productId") Long productId,
+            @RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
         User user = getAuthenticatedUser();
+        if (useGuestToken(user)) {
+            return applyToGuestToken(guestCart, List.of(operation(productId, 0, "remove")));
+        }
+        if (user == null) {
+            return unauthorized();
+        }
         return ResponseEntity.ok(cartService.removeItem(user, sessionId, productId));
     }
 
+    /**
+     * Applies several add/set/remove operations in one request and one
+     * transaction, e.g. "reorder" or "add bundle".
+     *
+     * POST /api/cart/items:batch {"items":[{"productId":1,"quantity":50,"op":"add"}]}
+     */
+    @PostMapping("/items:batch")
+    public ResponseEntity<?> applyBatch(@Valid @RequestBody CartBatchRequest request,
+            @RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
+        User user = getAuthenticatedUser();
+        if (useGuestToken(user)) {
+            return applyToGuestToken(guestCart, request.getItems());
+        }
+        if (user == null) {
+            return unauthorized();
+        }
+        try {
+            return ResponseEntity.ok(cartService.applyBatch(user, sessionId, request.getItems()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Called after login: folds the session cart and/or the stateless guest
+     * cart token into the user's cart. Token lines are merged idempotently
+     * (the larger quantity wins), so replaying the same token changes
+     * nothing; the response clears the header for the client to drop it.
+     */
     @PostMapping("/merge")
-    public ResponseEntity<?> mergeCart(@RequestParam String sessionId) {
+    public ResponseEntity<?> mergeCart(@RequestParam(name = "sessionId", required = false) String sessionId,
+            @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
         User user = getAuthenticatedUser();
         if (user == null) {
-            return ResponseEntity.status(401).build();
+            return unauthorized();
+        }
+        if (sessionId != null) {
+            cartService.mergeCarts(user, sessionId);
+        }
+        if (guestCart != null) {
+            cartService.mergeGuestLines(user, guestCartTokens.decode(guestCart));
+            return ResponseEntity.ok().header(GuestCartTokens.HEADER, "").build();
         }
-        cartService.mergeCarts(user, sessionId);
         return ResponseEntity.ok().build();
     }
 }
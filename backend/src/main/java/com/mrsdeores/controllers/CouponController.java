@@ -1,12 +1,16 @@
 package com.mrsdeores.controllers;
 
 import com.mrsdeores.models.Coupon;
+import com.mrsdeores.payload.response.MessageResponse;
 import com.mrsdeores.services.CouponService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -39,4 +43,41 @@ public class CouponController {
             return ResponseEntity.badRequest().body(error);
         }
     }
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<Coupon> getAllCoupons() {
+        return couponService.getAllCoupons();
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createCoupon(@RequestBody Coupon coupon) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(couponService.createCoupon(coupon));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateCoupon(@PathVariable Long id, @RequestBody Coupon coupon) {
+        try {
+            return couponService.updateCoupon(id, coupon)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> deleteCoupon(@PathVariable Long id) {
+        if (couponService.deleteCoupon(id)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
 }
@@ -0,0 +1,44 @@
+package com.mrsdeores.controllers;
+
+import com.mrsdeores.payload.response.MessageResponse;
+import com.mrsdeores.repository.ProductRepository;
+import com.mrsdeores.services.FlashStockPools;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/** Turns flash-sale mode (in-memory stock pools) on and off per product. */
+@RestController
+@RequestMapping("/api/admin/flash-sale")
+@PreAuthorize("hasRole('ADMIN')")
+public class FlashSaleController {
+
+    @Autowired
+    private FlashStockPools flashStockPools;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @GetMapping
+    public List<Map<String, Object>> listFlashSkus() {
+        return flashStockPools.list();
+    }
+
+    @PostMapping("/{productId}")
+    public ResponseEntity<?> enableFlashSale(@PathVariable Long productId) {
+        if (!productRepository.existsById(productId)) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Product not found"));
+        }
+        return ResponseEntity.ok(flashStockPools.enable(productId));
+    }
+
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<?> disableFlashSale(@PathVariable Long productId) {
+        flashStockPools.disable(productId);
+        return ResponseEntity.ok(new MessageResponse("Flash sale ended; held stock returned"));
+    }
+}
@@ -3,6 +3,7 @@ package com.mrsdeores.controllers;
 import com.mrsdeores.models.Order;
 import com.mrsdeores.models.User;
 import com.mrsdeores.repository.UserRepository;
+import com.mrsdeores.services.IdempotencyStore;
 import com.mrsdeores.services.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +26,9 @@ public class OrderController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     private User getAuthenticatedUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof UserDetails) {
@@ -59,51 +63,83 @@ public class OrderController {
         return ResponseEntity.ok(order);
     }
 
-    @PostMapping("/checkout")
-    public ResponseEntity<?> checkout(@RequestBody Map<String, Long> payload) {
+    @GetMapping("/{id}/payment")
+    public ResponseEntity<?> getPaymentStatus(@PathVariable("id") Long id) {
         User user = getAuthenticatedUser();
         if (user == null) {
             return ResponseEntity.status(401).build();
         }
-        Long addressId = payload.get("addressId");
-        if (addressId == null) {
-            return ResponseEntity.badRequest().body("Address ID required");
+        Order order = orderService.getOrder(id);
+        if (order == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!order.getUser().getId().equals(user.getId())) {
+            return ResponseEntity.status(403).build();
         }
+        return ResponseEntity.ok(orderService.getPaymentStatus(order));
+    }
 
-        try {
-            Order order = orderService.createOrder(user, addressId);
-            return ResponseEntity.ok(order);
-        } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    /**
+     * Checkout and payment verification accept an {@code Idempotency-Key}
+     * header: a retried request with the same key gets the first response
+     * back instead of creating another order (see {@link IdempotencyStore}).
+     */
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestBody Map<String, Object> payload,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        User user = getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (payload.get("addressId") == null) {
+            return ResponseEntity.badRequest().body("Address ID required");
         }
+        Long addressId = Long.valueOf(payload.get("addressId").toString());
+        String couponCode = payload.get("couponCode") != null ? payload.get("couponCode").toString() : null;
+
+        return idempotencyStore.execute(user.getId(), "checkout", idempotencyKey, payload, () -> {
+            try {
+                // 202: the Razorpay order id arrives asynchronously; poll /{id}/payment for it.
+                Order order = orderService.createOrder(user, addressId, couponCode);
+                return ResponseEntity.accepted().body(order);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
     }
 
     @PostMapping("/verify")
-    public ResponseEntity<?> verifyPayment(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<?> verifyPayment(@RequestBody Map<String, String> payload,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         User user = getAuthenticatedUser();
         if (user == null) {
             return ResponseEntity.status(401).build();
         }
 
-        try {
-            Long orderId = Long.parseLong(payload.get("orderId"));
-            String razorpayOrderId = payload.get("razorpayOrderId");
-            String razorpayPaymentId = payload.get("razorpayPaymentId");
-            String razorpaySignature = payload.get("razorpaySignature");
-
-            boolean success = orderService.verifyPayment(orderId, razorpayOrderId, razorpayPaymentId, razorpaySignature,
-                    user);
-
-            if (success) {
-                return ResponseEntity.ok(Map.of("status", "SUCCESS", "message", "Payment verified successfully"));
-            } else {
+        return idempotencyStore.execute(user.getId(), "verify", idempotencyKey, payload, () -> {
+            try {
+                Long orderId = Long.parseLong(payload.get("orderId"));
+                String razorpayOrderId = payload.get("razorpayOrderId");
+                String razorpayPaymentId = payload.get("razorpayPaymentId");
+                String razorpaySignature = payload.get("razorpaySignature");
+
+                OrderService.Settlement settlement = orderService.verifyPayment(orderId, razorpayOrderId,
+                        razorpayPaymentId, razorpaySignature, user);
+
+                if (settlement == OrderService.Settlement.PAID || settlement == OrderService.Settlement.ALREADY_PAID) {
+                    return ResponseEntity.ok(Map.of("status", "SUCCESS", "message", "Payment verified successfully"));
+                } else if (settlement == OrderService.Settlement.REFUND_DUE) {
+                    return ResponseEntity.status(409).body(Map.of("status", "REFUND_DUE",
+                            "message", "This order can no longer be paid; your payment will be refunded"));
+                } else {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("status", "FAILED", "message", "Invalid signature or order details"));
+                }
+            } catch (Exception e) {
                 return ResponseEntity.badRequest()
-                        .body(Map.of("status", "FAILED", "message", "Invalid signature or order details"));
+                        .body(Map.of("status", "ERROR", "message", "Verification exception checking payment"));
             }
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("status", "ERROR", "message", "Verification exception checking payment"));
-        }
+        });
     }
 
     // --- Admin Endpoints ---
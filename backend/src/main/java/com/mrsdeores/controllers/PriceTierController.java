@@ -0,0 +1,49 @@
+package com.mrsdeores.controllers;
+
+import com.mrsdeores.models.PriceTier;
+import com.mrsdeores.payload.request.PriceTierRequest;
+import com.mrsdeores.payload.response.MessageResponse;
+import com.mrsdeores.pricing.PriceTierService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/price-tiers")
+@PreAuthorize("hasRole('ADMIN')")
+public class PriceTierController {
+
+    @Autowired
+    private PriceTierService priceTierService;
+
+    @GetMapping
+    public List<PriceTier> listTiers(@RequestParam(required = false) Long productId,
+            @RequestParam(required = false) Integer categoryId) {
+        return priceTierService.list(productId, categoryId);
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createTier(@Valid @RequestBody PriceTierRequest request) {
+        PriceTier tier = new PriceTier();
+        tier.setProductId(request.getProductId());
+        tier.setCategoryId(request.getCategoryId());
+        tier.setMinQuantity(request.getMinQuantity());
+        tier.setUnitPrice(request.getUnitPrice());
+        tier.setDiscountPercent(request.getDiscountPercent());
+        try {
+            return ResponseEntity.ok(priceTierService.create(tier));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteTier(@PathVariable Long id) {
+        priceTierService.delete(id);
+        return ResponseEntity.ok(new MessageResponse("Price tier deleted"));
+    }
+}
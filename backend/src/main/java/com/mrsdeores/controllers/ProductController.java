@@ -5,7 +5,13 @@ import com.mrsdeores.models.ProductImage;
 import com.mrsdeores.models.Category;
 import com.mrsdeores.services.ProductService;
 import com.mrsdeores.services.CategoryService;
+import com.mrsdeores.services.FlashStockPools;
+import com.mrsdeores.services.ProductSortKey;
+import com.mrsdeores.payload.request.ProductFilter;
+import com.mrsdeores.payload.response.CursorPage;
+import com.mrsdeores.payload.response.FacetedResult;
 import com.mrsdeores.payload.response.MessageResponse;
+import com.mrsdeores.payload.response.ProductCard;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -26,20 +32,79 @@ public class ProductController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private FlashStockPools flashStockPools;
+
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Lists active products. Without {@code cursor}/{@code limit} the full list
+     * is returned; with either, the response is a keyset page
+     * ({@code items} + {@code nextCursor}) suitable for infinite scroll.
+     * {@code view=card} returns {@link ProductCard}s instead of full entities.
+     * Attribute filters ({@link ProductFilter}) are answered from precomputed
+     * facet bitsets; {@code facets=true} wraps the result with facet counts.
+     */
     @GetMapping
-    public List<Product> getAllProducts(
-            @RequestParam(name = "categoryId", required = false) Integer categoryId,
+    public ResponseEntity<?> getAllProducts(
+            @ModelAttribute ProductFilter filter,
             @RequestParam(name = "sortBy", required = false, defaultValue = "id") String sortBy,
-            @RequestParam(name = "order", required = false, defaultValue = "asc") String order) {
+            @RequestParam(name = "order", required = false, defaultValue = "asc") String order,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "view", required = false, defaultValue = "full") String view,
+            @RequestParam(name = "facets", required = false, defaultValue = "false") boolean facets) {
+
+        ProductSortKey sortKey;
+        try {
+            sortKey = ProductSortKey.fromProperty(sortBy);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        }
+        boolean descending = order.equalsIgnoreCase("desc");
+        boolean cardView = "card".equalsIgnoreCase(view);
+        Integer categoryId = filter.getCategoryId();
+        boolean paged = cursor != null || limit != null;
 
-        org.springframework.data.domain.Sort sort = order.equalsIgnoreCase("desc")
-                ? org.springframework.data.domain.Sort.by(sortBy).descending()
-                : org.springframework.data.domain.Sort.by(sortBy).ascending();
+        if (facets || filter.hasAttributeFilters()) {
+            Integer pageSize = paged ? pageSize(limit) : null;
+            try {
+                FacetedResult<?> result = cardView
+                        ? productService.filterProductCards(filter, sortKey, descending, cursor, pageSize, facets)
+                        : productService.filterProducts(filter, sortKey, descending, cursor, pageSize, facets);
+                if (facets) {
+                    return ResponseEntity.ok(result);
+                }
+                return ResponseEntity.ok(paged ? new CursorPage<>(result.getItems(), result.getNextCursor())
+                        : result.getItems());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+            }
+        }
 
+        if (paged) {
+            int pageSize = pageSize(limit);
+            try {
+                return ResponseEntity.ok(cardView
+                        ? productService.getProductCardPage(categoryId, sortKey, descending, cursor, pageSize)
+                        : productService.getProductPage(categoryId, sortKey, descending, cursor, pageSize));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+            }
+        }
+
+        if (cardView) {
+            return ResponseEntity.ok(productService.getProductCards(categoryId, sortKey, descending));
+        }
         if (categoryId != null) {
-            return productService.getProductsByCategory(categoryId, sort);
+            return ResponseEntity.ok(productService.getProductsByCategory(categoryId, sortKey, descending));
         }
-        return productService.getAllActiveProducts(sort);
+        return ResponseEntity.ok(productService.getAllActiveProducts(sortKey, descending));
+    }
+
+    private static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
     }
 
     @GetMapping("/{id}")
@@ -116,6 +181,9 @@ public class ProductController {
                     product.setBulkPrice(new BigDecimal(body.get("bulkPrice").toString()));
                 if (body.get("bulkMinQuantity") != null)
                     product.setBulkMinQuantity(Integer.parseInt(body.get("bulkMinQuantity").toString()));
+                if (body.get("stockQuantity") != null && flashStockPools.isFlash(id))
+                    // Part of the stock is held in memory; an absolute write would double-count it.
+                    throw new RuntimeException("End the flash sale for this product before editing its stock");
                 if (body.get("stockQuantity") != null)
                     product.setStockQuantity(Integer.parseInt(body.get("stockQuantity").toString()));
                 if (body.get("isActive") != null)
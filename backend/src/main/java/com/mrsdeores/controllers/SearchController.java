@@ -1,15 +1,18 @@
 package com.mrsdeores.controllers;
 
-import com.mrsdeores.models.Category;
-import com.mrsdeores.models.Product;
-import com.mrsdeores.models.ProductImage;
-import com.mrsdeores.repository.CategoryRepository;
-import com.mrsdeores.repository.ProductRepository;
+import com.mrsdeores.payload.request.ProductFilter;
+import com.mrsdeores.payload.response.FacetedResult;
+import com.mrsdeores.search.SearchAnalytics;
+import com.mrsdeores.search.SearchEngine;
+import com.mrsdeores.search.SuggestionIndex;
+import com.mrsdeores.services.CatalogSnapshotService;
+import com.mrsdeores.services.ProductFacets;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -17,86 +20,92 @@ import java.util.Map;
 @RequestMapping("/api/search")
 public class SearchController {
 
+    private static final int MAX_RESULTS = 12;
+    // Ranked matches considered when filtering or counting facets.
+    private static final int MAX_FILTER_CANDIDATES = 500;
+
+    @Autowired
+    private SearchEngine searchEngine;
+
+    @Autowired
+    private SuggestionIndex suggestionIndex;
+
     @Autowired
-    private ProductRepository productRepository;
+    private CatalogSnapshotService catalogSnapshotService;
 
     @Autowired
-    private CategoryRepository categoryRepository;
+    private SearchAnalytics searchAnalytics;
 
     /**
      * Intelligent search endpoint — matches against product names, descriptions,
      * and category names.
-     * Uses case-insensitive substring matching (equivalent to ILIKE) through Spring
-     * Data JPA naming.
-     * Results include both products and categories, ranked by match quality.
+     * Terms match whole words or word prefixes and results are ranked by
+     * relevance, categories first. The {@link SearchEngine} is either the
+     * in-memory index (no database access) or PostgreSQL full-text search,
+     * see {@code app.search.engine}.
+     * Accepts the same {@link ProductFilter} parameters as the product listing;
+     * {@code facets=true} wraps the results with facet counts over all matches.
+     * Every query is recorded asynchronously by {@link SearchAnalytics}.
      *
      * GET /api/search?q=ladoo
      */
     @GetMapping
-    public List<Map<String, Object>> search(@RequestParam(name = "q", defaultValue = "") String query) {
-        List<Map<String, Object>> results = new ArrayList<>();
-
+    public ResponseEntity<?> search(@RequestParam(name = "q", defaultValue = "") String query,
+            @ModelAttribute ProductFilter filter,
+            @RequestParam(name = "facets", required = false, defaultValue = "false") boolean facets) {
         if (query == null || query.trim().length() < 2) {
-            return results;
+            return ResponseEntity.ok(new ArrayList<>());
+        }
+        long started = System.nanoTime();
+        if (!facets && filter.isEmpty()) {
+            List<Map<String, Object>> results = searchEngine.search(query.trim(), MAX_RESULTS);
+            searchAnalytics.record(query, results.size(), System.nanoTime() - started);
+            return ResponseEntity.ok(results);
         }
 
-        String q = query.trim().toLowerCase();
-
-        // 1. Search categories by name (highest priority — shown first)
-        List<Category> categories = categoryRepository.findAll();
-        for (Category cat : categories) {
-            if (cat.getName() != null && cat.getName().toLowerCase().contains(q)) {
-                Map<String, Object> r = new HashMap<>();
-                r.put("type", "category");
-                r.put("id", cat.getId());
-                r.put("name", cat.getName());
-                r.put("description", cat.getDescription());
-                r.put("imageUrl", cat.getImageUrl());
-                r.put("path", "/category/" + cat.getId());
-                results.add(r);
+        List<Map<String, Object>> matches = searchEngine.search(query.trim(), MAX_FILTER_CANDIDATES);
+        List<Long> productIds = new ArrayList<>();
+        for (Map<String, Object> match : matches) {
+            if ("product".equals(match.get("type"))) {
+                productIds.add(((Number) match.get("id")).longValue());
             }
         }
+        ProductFacets productFacets = catalogSnapshotService.current().getFacets();
+        BitSet universe = productFacets.of(productIds);
+        BitSet mask = productFacets.match(filter);
+        mask.and(universe);
 
-        // 2. Search products by name, description (also match by category name for
-        // cross-category discovery)
-        List<Product> products = productRepository.findByIsActiveTrue();
-        for (Product p : products) {
-            boolean nameMatch = p.getName() != null && p.getName().toLowerCase().contains(q);
-            boolean descMatch = p.getDescription() != null && p.getDescription().toLowerCase().contains(q);
-            boolean catMatch = p.getCategory() != null && p.getCategory().getName() != null
-                    && p.getCategory().getName().toLowerCase().contains(q);
-
-            if (nameMatch || descMatch || catMatch) {
-                // Avoid duplicating if we already matched the category above
-                Map<String, Object> r = new HashMap<>();
-                r.put("type", "product");
-                r.put("id", p.getId());
-                r.put("name", p.getName());
-                r.put("description", p.getDescription() != null
-                        ? p.getDescription().substring(0, Math.min(80, p.getDescription().length())) + "..."
-                        : "");
-                r.put("price", p.getSellingPrice());
-                r.put("mrp", p.getMrp());
-                r.put("categoryName", p.getCategory() != null ? p.getCategory().getName() : "");
-                r.put("categoryId", p.getCategory() != null ? p.getCategory().getId() : null);
-                r.put("path", "/product/" + p.getId());
-
-                // Get primary image
-                String imageUrl = null;
-                if (p.getImages() != null) {
-                    imageUrl = p.getImages().stream()
-                            .filter(img -> Boolean.TRUE.equals(img.getIsPrimary()))
-                            .map(ProductImage::getImageUrl)
-                            .findFirst()
-                            .orElse(p.getImages().isEmpty() ? null : p.getImages().get(0).getImageUrl());
-                }
-                r.put("imageUrl", imageUrl);
-
-                results.add(r);
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Map<String, Object> match : matches) {
+            if (results.size() == MAX_RESULTS) {
+                break;
             }
+            boolean keep = "product".equals(match.get("type"))
+                    ? productFacets.contains(mask, ((Number) match.get("id")).longValue())
+                    : !filter.hasAttributeFilters()
+                            && (filter.getCategoryId() == null || filter.getCategoryId().equals(match.get("id")));
+            if (keep) {
+                results.add(match);
+            }
+        }
+
+        searchAnalytics.record(query, results.size(), System.nanoTime() - started);
+        if (!facets) {
+            return ResponseEntity.ok(results);
         }
+        return ResponseEntity.ok(new FacetedResult<>(results, null, mask.cardinality(),
+                productFacets.counts(universe, filter)));
+    }
 
-        // Limit to 12 results
-        return results.subList(0, Math.min(results.size(), 12));
+    /**
+     * Typeahead completions for product and category names, best sellers
+     * first. Answered from a prefix trie in memory.
+     *
+     * GET /api/search/suggest?q=bes
+     */
+    @GetMapping("/suggest")
+    public List<Map<String, Object>> suggest(@RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(name = "limit", defaultValue = "8") int limit) {
+        return suggestionIndex.suggest(query, Math.max(1, limit));
     }
 }
@@ -2,6 +2,7 @@ package com.mrsdeores.controllers;
 
 import com.mrsdeores.models.SiteSettings;
 import com.mrsdeores.repository.SiteSettingsRepository;
+import com.mrsdeores.search.SearchSynonyms;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,6 +21,9 @@ public class SiteSettingsController {
     @Autowired
     private SiteSettingsRepository repository;
 
+    @Autowired
+    private SearchSynonyms searchSynonyms;
+
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
 
@@ -56,6 +60,9 @@ public class SiteSettingsController {
             setting.setUpdatedAt(LocalDateTime.now());
             repository.save(setting);
         }
+        if (updates.containsKey(SearchSynonyms.SETTING_KEY)) {
+            searchSynonyms.update(updates.get(SearchSynonyms.SETTING_KEY));
+        }
         return ResponseEntity.ok(updates);
     }
 }
@@ -1,6 +1,8 @@
 package com.mrsdeores.controllers;
 
-import org.json.JSONObject;
+import com.mrsdeores.services.PaymentWebhooks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -8,36 +10,28 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/webhooks/razorpay")
 public class WebhookController {
 
+    @Autowired
+    private PaymentWebhooks paymentWebhooks;
+
+    /**
+     * Verifies and queues the event, then answers at once; the orders are
+     * updated in the background. The raw body is taken as bytes because the
+     * signature covers them exactly.
+     */
     @PostMapping
     public ResponseEntity<?> handleRazorpayWebhook(
-            @RequestHeader("X-Razorpay-Signature") String signature,
-            @RequestBody String payload) {
-
-        // Razorpay webhooks verify the signature differently (against a webhook secret,
-        // not key secret)
-        // But for this project scope, since we already do active frontend-based
-        // verification,
-        // we can log the webhook or verify if a webhook secret is configured.
-        // Assuming we rely primarily on frontend verification, we'll keep this endpoint
-        // minimal.
-
-        System.out.println("Razorpay Webhook Received: " + signature);
-
-        try {
-            JSONObject json = new JSONObject(payload);
-            String event = json.getString("event");
-
-            if ("payment.captured".equals(event)) {
-                // E.g.,
-                // json.getJSONObject("payload").getJSONObject("payment").getJSONObject("entity")
-                System.out.println("Payment Captured Event Processing...");
-                // Can trigger async order confirmations here
-            }
-
-            return ResponseEntity.ok().build();
-        } catch (Exception e) {
-            System.err.println("Webhook Verification Error: " + e.getMessage());
-            return ResponseEntity.badRequest().build();
+            @RequestHeader(PaymentWebhooks.SIGNATURE_HEADER) String signature,
+            @RequestHeader(value = PaymentWebhooks.EVENT_ID_HEADER, required = false) String eventId,
+            @RequestBody byte[] payload) {
+        switch (paymentWebhooks.accept(payload, signature, eventId)) {
+            case ACCEPTED:
+            case DUPLICATE:
+                return ResponseEntity.ok().build();
+            case BUSY:
+                // Razorpay redelivers on any non-2xx; better later than dropped.
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            default:
+                return ResponseEntity.badRequest().build();
         }
     }
 }
@@ -30,6 +30,9 @@ public class CartItem {
 
     private Integer quantity;
 
+    @Version
+    private Long version;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
@@ -37,7 +40,7 @@ public class CartItem {
     private LocalDateTime updatedAt = LocalDateTime.now();
 
     // Helper method to calculate price based on quantity (Transient = not stored in
-    // DB)
+    // DB). Quantity tiers are applied on top by CartPricingEngine, not here.
     @Transient
     public BigDecimal getEffectivePrice() {
         if (product == null)
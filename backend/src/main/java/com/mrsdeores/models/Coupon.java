@@ -38,6 +38,10 @@ public class Coupon {
     @Column(name = "usage_limit")
     private Integer usageLimit;
 
+    // Redemptions allowed per customer; null means unlimited.
+    @Column(name = "per_user_limit")
+    private Integer perUserLimit;
+
     @Column(name = "used_count")
     private Integer usedCount = 0;
 
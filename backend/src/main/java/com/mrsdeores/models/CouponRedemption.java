@@ -0,0 +1,36 @@
+package com.mrsdeores.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** Ledger row: {@code orderId} used coupon {@code couponId}. Written by {@code CouponService.redeem}. */
+@Entity
+@Table(name = "coupon_redemptions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponRedemption {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "coupon_id", nullable = false)
+    private Long couponId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "order_id", nullable = false, unique = true)
+    private Long orderId;
+
+    @Column(name = "discount_amount", nullable = false)
+    private BigDecimal discountAmount;
+
+    @Column(name = "redeemed_at")
+    private LocalDateTime redeemedAt = LocalDateTime.now();
+}
@@ -1,5 +1,6 @@
 package com.mrsdeores.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,7 +23,7 @@ public class PaymentDetails {
     private String transactionId;
 
     @Column(name = "status")
-    private String status; // "PENDING", "COMPLETED", "FAILED"
+    private String status; // "PENDING", "COMPLETED", "FAILED", "REFUND_DUE"
 
     @Column(name = "razorpay_order_id")
     private String razorpayOrderId;
@@ -37,5 +38,6 @@ public class PaymentDetails {
     private LocalDateTime paymentDate = LocalDateTime.now();
 
     @OneToOne(mappedBy = "paymentDetails")
+    @JsonIgnore
     private Order order;
 }
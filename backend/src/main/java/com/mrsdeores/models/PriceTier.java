@@ -0,0 +1,44 @@
+package com.mrsdeores.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Quantity tier for one product ({@code productId}) or a whole category
+ * ({@code categoryId}): from {@code minQuantity} units the unit price is
+ * {@code unitPrice}, or {@code discountPercent} off the selling price.
+ * Category tiers are always percentages.
+ */
+@Entity
+@Table(name = "price_tiers")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceTier {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "category_id")
+    private Integer categoryId;
+
+    @Column(name = "min_quantity", nullable = false)
+    private Integer minQuantity;
+
+    @Column(name = "unit_price")
+    private BigDecimal unitPrice;
+
+    @Column(name = "discount_percent")
+    private BigDecimal discountPercent;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
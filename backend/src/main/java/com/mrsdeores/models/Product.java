@@ -47,7 +47,7 @@ public class Product {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
-    @Column(name = "average_rating")
+    @Column(name = "average_rating", nullable = false)
     private Double averageRating = 5.0; // Default to 5 star for new products or as requested
 
     @Column(name = "total_reviews")
@@ -56,7 +56,7 @@ public class Product {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ProductImage> images = new ArrayList<>();
 
-    @Column(name = "created_at", updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @Column(name = "updated_at")
@@ -0,0 +1,30 @@
+package com.mrsdeores.payload.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of {@code POST /api/cart/items:batch}. Operations are applied in
+ * order: {@code add} (default) adds to the quantity, {@code set} sets it
+ * (creating the line if needed; zero or less removes it) and
+ * {@code remove} deletes the line.
+ */
+@Data
+public class CartBatchRequest {
+    @NotEmpty
+    @Valid
+    private List<Operation> items = new ArrayList<>();
+
+    @Data
+    public static class Operation {
+        @NotNull
+        private Long productId;
+        private Integer quantity;
+        private String op = "add";
+    }
+}
@@ -0,0 +1,23 @@
+package com.mrsdeores.payload.request;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/** A product tier sets {@code productId}, a category tier {@code categoryId}; exactly one price field is set. */
+@Data
+public class PriceTierRequest {
+    private Long productId;
+
+    private Integer categoryId;
+
+    @NotNull
+    @Min(2)
+    private Integer minQuantity;
+
+    private BigDecimal unitPrice;
+
+    private BigDecimal discountPercent;
+}
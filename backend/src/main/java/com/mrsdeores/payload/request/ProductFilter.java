@@ -0,0 +1,29 @@
+package com.mrsdeores.payload.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Listing and search filters, bound from query parameters. Unset fields do
+ * not filter; {@code inStock}/{@code bulkAvailable} only filter when true.
+ */
+@Data
+public class ProductFilter {
+    private Integer categoryId;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Integer minRating;
+    private Boolean inStock;
+    private Boolean bulkAvailable;
+
+    /** True when anything other than the category is constrained. */
+    public boolean hasAttributeFilters() {
+        return minPrice != null || maxPrice != null || minRating != null
+                || Boolean.TRUE.equals(inStock) || Boolean.TRUE.equals(bulkAvailable);
+    }
+
+    public boolean isEmpty() {
+        return categoryId == null && !hasAttributeFilters();
+    }
+}
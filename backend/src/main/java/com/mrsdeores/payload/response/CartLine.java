@@ -0,0 +1,81 @@
+package com.mrsdeores.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mrsdeores.pricing.Money;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One line of a {@link CartView}. The unit price switches to the bulk price
+ * once the quantity reaches the product's bulk minimum, as in
+ * {@code CartItem.getEffectivePrice()}; the pricing engine then applies any
+ * quantity tiers through {@link #applyUnitPrice(long)}.
+ *
+ * Prices are held in paise (the cart query reads them that way) and only
+ * become rupee {@link BigDecimal}s in the JSON getters.
+ */
+@Data
+@NoArgsConstructor
+public class CartLine {
+    private Long productId;
+    private String name;
+    private String imageUrl;
+    private Integer quantity;
+    @JsonIgnore
+    private long sellingPaise;
+    @JsonIgnore
+    private Long bulkPaise;
+    private Integer bulkMinQuantity;
+    @JsonIgnore
+    private long unitPaise;
+    @JsonIgnore
+    private long lineTotalPaise;
+    @JsonIgnore
+    private long bulkSavingsPaise;
+
+    /** Prices in paise; a null selling price counts as zero. */
+    public CartLine(Long productId, String name, String imageUrl, Integer quantity, Long sellingPaise,
+            Long bulkPaise, Integer bulkMinQuantity) {
+        this.productId = productId;
+        this.name = name;
+        this.imageUrl = imageUrl;
+        this.quantity = quantity;
+        this.sellingPaise = sellingPaise != null ? sellingPaise : 0;
+        this.bulkPaise = bulkPaise;
+        this.bulkMinQuantity = bulkMinQuantity;
+        boolean bulk = bulkPaise != null && bulkMinQuantity != null && quantity >= bulkMinQuantity;
+        applyUnitPrice(bulk ? bulkPaise : this.sellingPaise);
+    }
+
+    public CartLine(Long productId, String name, String imageUrl, Integer quantity, BigDecimal sellingPrice,
+            BigDecimal bulkPrice, Integer bulkMinQuantity) {
+        this(productId, name, imageUrl, quantity, Money.toPaise(sellingPrice),
+                bulkPrice != null ? Money.toPaise(bulkPrice) : null, bulkMinQuantity);
+    }
+
+    /** Reprices the line at {@code unitPaise} per unit; savings are against the selling price. */
+    public void applyUnitPrice(long unitPaise) {
+        this.unitPaise = unitPaise;
+        this.lineTotalPaise = Money.times(unitPaise, quantity);
+        long savedPerUnit = sellingPaise - unitPaise;
+        this.bulkSavingsPaise = savedPerUnit > 0 ? Money.times(savedPerUnit, quantity) : 0;
+    }
+
+    public BigDecimal getSellingPrice() {
+        return Money.toRupees(sellingPaise);
+    }
+
+    public BigDecimal getBulkPrice() {
+        return bulkPaise != null ? Money.toRupees(bulkPaise) : null;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return Money.toRupees(unitPaise);
+    }
+
+    public BigDecimal getLineTotal() {
+        return Money.toRupees(lineTotalPaise);
+    }
+}
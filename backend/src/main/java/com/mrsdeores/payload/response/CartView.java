@@ -0,0 +1,77 @@
+package com.mrsdeores.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mrsdeores.pricing.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Lean cart returned by cart mutations: flat lines with prices resolved,
+ * instead of the full Cart/CartItem/Product entity graph. {@code version}
+ * is the cart version the totals were computed for (null for carts that are
+ * not stored); {@code discount} and {@code total} reflect {@code couponCode}
+ * when one was applied. Amounts are kept in paise and converted to rupees
+ * only when serialised.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartView {
+    private Long cartId;
+    private Long version;
+    private List<CartLine> items;
+    private int totalQuantity;
+    @JsonIgnore
+    private long subtotalPaise;
+    @JsonIgnore
+    private long bulkSavingsPaise;
+    private String couponCode;
+    @JsonIgnore
+    private long discountPaise;
+    @JsonIgnore
+    private long totalPaise;
+
+    public static CartView of(Long cartId, List<CartLine> lines) {
+        return of(cartId, null, lines);
+    }
+
+    public static CartView of(Long cartId, Long version, List<CartLine> lines) {
+        int totalQuantity = 0;
+        long subtotalPaise = 0;
+        long bulkSavingsPaise = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            CartLine line = lines.get(i);
+            totalQuantity += line.getQuantity();
+            subtotalPaise = Money.plus(subtotalPaise, line.getLineTotalPaise());
+            bulkSavingsPaise = Money.plus(bulkSavingsPaise, line.getBulkSavingsPaise());
+        }
+        return new CartView(cartId, version, lines, totalQuantity, subtotalPaise, bulkSavingsPaise, null, 0,
+                subtotalPaise);
+    }
+
+    /** Copy of this view with a coupon discount (in paise) applied to the total. */
+    public CartView withDiscount(String couponCode, long discountPaise) {
+        return new CartView(cartId, version, items, totalQuantity, subtotalPaise, bulkSavingsPaise, couponCode,
+                discountPaise, Math.max(0, subtotalPaise - discountPaise));
+    }
+
+    public BigDecimal getSubtotal() {
+        return Money.toRupees(subtotalPaise);
+    }
+
+    public BigDecimal getBulkSavings() {
+        return Money.toRupees(bulkSavingsPaise);
+    }
+
+    public BigDecimal getDiscount() {
+        return Money.toRupees(discountPaise);
+    }
+
+    public BigDecimal getTotal() {
+        return Money.toRupees(totalPaise);
+    }
+}
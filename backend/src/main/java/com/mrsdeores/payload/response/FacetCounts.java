@@ -0,0 +1,32 @@
+package com.mrsdeores.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Facet counts for a listing or search. Each facet is counted with every
+ * other active filter applied but not its own, so the counts tell the
+ * shopper what they would get by changing that one filter.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCounts {
+    private List<FacetValue> categories;
+    private List<FacetValue> priceRanges;
+    private List<FacetValue> ratings;
+    private int inStock;
+    private int bulkAvailable;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetValue {
+        private String value;
+        private String label;
+        private int count;
+    }
+}
@@ -0,0 +1,20 @@
+package com.mrsdeores.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Filtered listing or search with facet counts. {@code total} is the number
+ * of products matching the filters; {@code nextCursor} is set only for
+ * paginated listings.
+ */
+@Data
+@AllArgsConstructor
+public class FacetedResult<T> {
+    private List<T> items;
+    private String nextCursor;
+    private int total;
+    private FacetCounts facets;
+}
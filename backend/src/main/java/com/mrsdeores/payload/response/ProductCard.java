@@ -0,0 +1,47 @@
+package com.mrsdeores.payload.response;
+
+import com.mrsdeores.models.Product;
+import com.mrsdeores.models.ProductImage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Listing-sized view of a product: what a product card renders and nothing
+ * else (no description, image collection or category entity).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCard {
+    private Long id;
+    private String name;
+    private BigDecimal mrp;
+    private BigDecimal sellingPrice;
+    private BigDecimal bulkPrice;
+    private String imageUrl;
+    private Double averageRating;
+    private Integer categoryId;
+    private String categoryName;
+
+    public static ProductCard from(Product product) {
+        return new ProductCard(product.getId(), product.getName(), product.getMrp(), product.getSellingPrice(),
+                product.getBulkPrice(), primaryImageUrl(product), product.getAverageRating(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getCategory() != null ? product.getCategory().getName() : null);
+    }
+
+    /** The image flagged primary, else the first image, else null. */
+    public static String primaryImageUrl(Product product) {
+        if (product.getImages() == null || product.getImages().isEmpty()) {
+            return null;
+        }
+        return product.getImages().stream()
+                .filter(img -> Boolean.TRUE.equals(img.getIsPrimary()))
+                .map(ProductImage::getImageUrl)
+                .findFirst()
+                .orElse(product.getImages().get(0).getImageUrl());
+    }
+}
@@ -0,0 +1,71 @@
+package com.mrsdeores.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rupee amounts as a {@code long} count of paise. Hot pricing paths (cart
+ * totals, coupon math, revenue sums) work on primitives so they allocate
+ * nothing; {@link BigDecimal} is only used at the persistence and JSON
+ * boundary via {@link #toPaise(BigDecimal)} and {@link #toRupees(long)}.
+ * Both conversions allocate, so hot paths convert once, up front: cart lines
+ * are read as paise by their query and coupons are converted when cached.
+ *
+ * Rounding: conversions into paise and percentages round half-up (away from
+ * zero) to the nearest paisa. Arithmetic is exact and throws
+ * {@link ArithmeticException} on overflow rather than wrapping.
+ */
+public final class Money {
+
+    public static final long PAISE_PER_RUPEE = 100;
+
+    private static final long BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    /** Rupees to paise, half-up to the nearest paisa; null is zero. */
+    public static long toPaise(BigDecimal rupees) {
+        if (rupees == null) {
+            return 0;
+        }
+        return rupees.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /** For the legacy {@code Double} columns (coupons); uses the shortest decimal form of the double. */
+    public static long toPaise(Double rupees) {
+        return rupees == null ? 0 : toPaise(BigDecimal.valueOf(rupees));
+    }
+
+    /** Paise to rupees with scale 2. */
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    public static long plus(long paise, long otherPaise) {
+        return Math.addExact(paise, otherPaise);
+    }
+
+    public static long times(long paise, long quantity) {
+        return Math.multiplyExact(paise, quantity);
+    }
+
+    /**
+     * {@code basisPoints}/10000 of {@code paise}, half-up; e.g. 12.5% is 1250
+     * basis points.
+     */
+    public static long percentOf(long paise, long basisPoints) {
+        long scaled = Math.multiplyExact(paise, basisPoints);
+        long rounded = (Math.abs(scaled) + BASIS_POINTS / 2) / BASIS_POINTS;
+        return scaled < 0 ? -rounded : rounded;
+    }
+
+    /** A percentage such as 12.5 as basis points (1250), half-up. */
+    public static long basisPoints(Double percent) {
+        return toPaise(percent); // same scaling: hundredths
+    }
+
+    public static long basisPoints(BigDecimal percent) {
+        return toPaise(percent);
+    }
+}
@@ -0,0 +1,128 @@
+package com.mrsdeores.pricing;
+
+import com.mrsdeores.models.PriceTier;
+import com.mrsdeores.repository.PriceTierRepository;
+import com.mrsdeores.services.CatalogChangedEvent;
+import com.mrsdeores.services.CatalogSnapshot;
+import com.mrsdeores.services.CatalogSnapshotService;
+import com.mrsdeores.services.ProductSortKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains the installed {@link PriceTiers} table: recompiled from the
+ * catalog snapshot and the {@code price_tiers} rows whenever the catalog
+ * changes (prices, categories, bulk pairs) or a tier is added or removed.
+ * Tier edits recompile after their transaction commits, so the table never
+ * holds a tier that was rolled back.
+ */
+@Service
+public class PriceTierService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceTierService.class);
+
+    @Autowired
+    private PriceTierRepository priceTierRepository;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    private final AtomicLong versions = new AtomicLong();
+    private long compiledCatalogVersion = -1;
+    private volatile PriceTiers current = PriceTiers.empty();
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        recompile(event.getSnapshot());
+    }
+
+    public PriceTiers current() {
+        return current;
+    }
+
+    public List<PriceTier> list(Long productId, Integer categoryId) {
+        if (productId != null) {
+            return priceTierRepository.findByProductIdOrderByMinQuantity(productId);
+        }
+        if (categoryId != null) {
+            return priceTierRepository.findByCategoryIdOrderByMinQuantity(categoryId);
+        }
+        return priceTierRepository.findAll();
+    }
+
+    @Transactional
+    public PriceTier create(PriceTier tier) {
+        validate(tier);
+        tier.setId(null);
+        PriceTier saved = priceTierRepository.save(tier);
+        recompileAfterCommit();
+        return saved;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        priceTierRepository.deleteById(id);
+        recompileAfterCommit();
+    }
+
+    /**
+     * Compiles and installs a new table. A {@code snapshot} older than the
+     * one last compiled is ignored; null means the current snapshot.
+     */
+    public synchronized void recompile(CatalogSnapshot snapshot) {
+        CatalogSnapshot source = snapshot != null ? snapshot : catalogSnapshotService.current();
+        if (source.getVersion() < compiledCatalogVersion) {
+            return;
+        }
+        PriceTiers tiers = PriceTiers.compile(versions.incrementAndGet(),
+                source.products(null, ProductSortKey.ID, false), priceTierRepository.findAll());
+        current = tiers;
+        compiledCatalogVersion = source.getVersion();
+        logger.debug("Price tiers v{} compiled for {} products", tiers.getVersion(), tiers.size());
+    }
+
+    private void recompileAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recompile(null);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recompile(null);
+            }
+        });
+    }
+
+    private static void validate(PriceTier tier) {
+        if ((tier.getProductId() == null) == (tier.getCategoryId() == null)) {
+            throw new RuntimeException("A price tier needs either a product or a category");
+        }
+        if ((tier.getUnitPrice() == null) == (tier.getDiscountPercent() == null)) {
+            throw new RuntimeException("A price tier needs either a unit price or a discount percent");
+        }
+        if (tier.getCategoryId() != null && tier.getUnitPrice() != null) {
+            throw new RuntimeException("Category tiers must use a discount percent");
+        }
+        if (tier.getMinQuantity() == null || tier.getMinQuantity() < 2) {
+            throw new RuntimeException("Minimum quantity must be at least 2");
+        }
+        if (tier.getUnitPrice() != null && tier.getUnitPrice().signum() < 0) {
+            throw new RuntimeException("Unit price cannot be negative");
+        }
+        if (tier.getDiscountPercent() != null && (tier.getDiscountPercent().signum() <= 0
+                || tier.getDiscountPercent().compareTo(BigDecimal.valueOf(100)) >= 0)) {
+            throw new RuntimeException("Discount percent must be between 0 and 100");
+        }
+    }
+}
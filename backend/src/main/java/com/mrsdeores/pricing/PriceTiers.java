@@ -0,0 +1,146 @@
+package com.mrsdeores.pricing;
+
+import com.mrsdeores.models.PriceTier;
+import com.mrsdeores.models.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled, immutable quantity-tier table. Every product with tiers gets
+ * two parallel primitive arrays: ascending minimum quantities and the unit
+ * price in paise from that quantity on. Prices are made non-increasing at
+ * compile time, so the effective price for a quantity is one binary search
+ * and no allocation.
+ *
+ * Tiers for a product are merged from, lowest precedence first: its
+ * category's percentage tiers, the legacy {@code bulkPrice} /
+ * {@code bulkMinQuantity} pair, and its own tiers. At equal minimum
+ * quantity the later source wins.
+ *
+ * {@code PriceTierService} holds the installed table and recompiles it when
+ * the catalog or the tiers change; pricing code gets it from there.
+ */
+public final class PriceTiers {
+
+    private static final PriceTiers EMPTY = new PriceTiers(0, Collections.emptyMap());
+
+    private final long version;
+    private final Map<Long, Table> byProduct;
+
+    private PriceTiers(long version, Map<Long, Table> byProduct) {
+        this.version = version;
+        this.byProduct = byProduct;
+    }
+
+    /** No tiers at all, version 0: what is installed until the first compile. */
+    public static PriceTiers empty() {
+        return EMPTY;
+    }
+
+    public static PriceTiers compile(long version, List<Product> products, List<PriceTier> tiers) {
+        Map<Long, List<PriceTier>> productTiers = new HashMap<>();
+        Map<Integer, List<PriceTier>> categoryTiers = new HashMap<>();
+        for (PriceTier tier : tiers) {
+            if (tier.getProductId() != null) {
+                productTiers.computeIfAbsent(tier.getProductId(), id -> new ArrayList<>()).add(tier);
+            } else if (tier.getCategoryId() != null) {
+                categoryTiers.computeIfAbsent(tier.getCategoryId(), id -> new ArrayList<>()).add(tier);
+            }
+        }
+
+        Map<Long, Table> byProduct = new HashMap<>();
+        for (Product product : products) {
+            long selling = Money.toPaise(product.getSellingPrice());
+            TreeMap<Integer, Long> points = new TreeMap<>();
+            if (product.getCategory() != null) {
+                for (PriceTier tier : categoryTiers.getOrDefault(product.getCategory().getId(), List.of())) {
+                    points.put(tier.getMinQuantity(), priceOf(tier, selling));
+                }
+            }
+            if (product.getBulkPrice() != null && product.getBulkMinQuantity() != null) {
+                points.put(product.getBulkMinQuantity(), Money.toPaise(product.getBulkPrice()));
+            }
+            for (PriceTier tier : productTiers.getOrDefault(product.getId(), List.of())) {
+                points.put(tier.getMinQuantity(), priceOf(tier, selling));
+            }
+            if (!points.isEmpty()) {
+                byProduct.put(product.getId(), Table.of(points, selling));
+            }
+        }
+        return new PriceTiers(version, Collections.unmodifiableMap(byProduct));
+    }
+
+    private static long priceOf(PriceTier tier, long sellingPaise) {
+        if (tier.getUnitPrice() != null) {
+            return Money.toPaise(tier.getUnitPrice());
+        }
+        return sellingPaise - Money.percentOf(sellingPaise, Money.basisPoints(tier.getDiscountPercent()));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return byProduct.size();
+    }
+
+    /**
+     * Unit price in paise for {@code quantity} units: the applicable tier,
+     * never more than {@code fallbackPaise} (the price without tiers).
+     */
+    public long unitPaise(Long productId, int quantity, long fallbackPaise) {
+        Table table = productId == null ? null : byProduct.get(productId);
+        if (table == null) {
+            return fallbackPaise;
+        }
+        int i = Arrays.binarySearch(table.minQuantities, quantity);
+        if (i < 0) {
+            i = -i - 2; // last tier whose minimum is below quantity
+        }
+        return i < 0 ? fallbackPaise : Math.min(fallbackPaise, table.unitPaise[i]);
+    }
+
+    /** Tier minimums and unit prices for a product, e.g. for display; empty when it has none. */
+    public Map<Integer, Long> describe(Long productId) {
+        Table table = byProduct.get(productId);
+        Map<Integer, Long> result = new TreeMap<>();
+        if (table != null) {
+            for (int i = 0; i < table.minQuantities.length; i++) {
+                result.put(table.minQuantities[i], table.unitPaise[i]);
+            }
+        }
+        return result;
+    }
+
+    private static final class Table {
+        private final int[] minQuantities;
+        private final long[] unitPaise;
+
+        private Table(int[] minQuantities, long[] unitPaise) {
+            this.minQuantities = minQuantities;
+            this.unitPaise = unitPaise;
+        }
+
+        /** Buying more never costs more per unit: each price is capped by the ones before it. */
+        static Table of(TreeMap<Integer, Long> points, long sellingPaise) {
+            int[] minQuantities = new int[points.size()];
+            long[] unitPaise = new long[points.size()];
+            long best = sellingPaise;
+            int i = 0;
+            for (Map.Entry<Integer, Long> point : points.entrySet()) {
+                best = Math.min(best, point.getValue());
+                minQuantities[i] = point.getKey();
+                unitPaise[i] = best;
+                i++;
+            }
+            return new Table(minQuantities, unitPaise);
+        }
+    }
+}
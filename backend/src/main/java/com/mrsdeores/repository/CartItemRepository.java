@@ -0,0 +1,89 @@
+package com.mrsdeores.repository;
+
+import com.mrsdeores.models.CartItem;
+import com.mrsdeores.payload.response.CartLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Single-statement cart line mutations keyed on the UNIQUE (cart_id,
+ * product_id) index, so changing one line never loads the cart aggregate.
+ * Updates bump the line's {@code version} so JPA writers of the same rows
+ * detect the change.
+ */
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    String ADD_QUANTITY = "INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) "
+            + "VALUES (:cartId, :productId, :quantity, now(), now()) "
+            + "ON CONFLICT (cart_id, product_id) DO UPDATE "
+            + "SET quantity = cart_items.quantity + EXCLUDED.quantity, updated_at = now(), "
+            + "version = cart_items.version + 1";
+
+    String UPSERT_QUANTITY = "INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) "
+            + "VALUES (:cartId, :productId, :quantity, now(), now()) "
+            + "ON CONFLICT (cart_id, product_id) DO UPDATE "
+            + "SET quantity = EXCLUDED.quantity, updated_at = now(), version = cart_items.version + 1";
+
+    // Guest-token lines at login: the larger quantity wins, so replaying a token is a no-op.
+    String MERGE_TOKEN_QUANTITY = "INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) "
+            + "VALUES (:cartId, :productId, :quantity, now(), now()) "
+            + "ON CONFLICT (cart_id, product_id) DO UPDATE "
+            + "SET quantity = GREATEST(cart_items.quantity, EXCLUDED.quantity), updated_at = now(), "
+            + "version = cart_items.version + 1 WHERE cart_items.quantity < EXCLUDED.quantity";
+
+    String SET_QUANTITY = "UPDATE cart_items SET quantity = :quantity, updated_at = now(), version = version + 1 "
+            + "WHERE cart_id = :cartId AND product_id = :productId";
+
+    String DELETE_ITEM = "DELETE FROM cart_items WHERE cart_id = :cartId AND product_id = :productId";
+
+    // Locks the guest cart rows first: a concurrent merge of the same session
+    // waits here, then finds them deleted and moves nothing.
+    String MERGE_GUEST_ITEMS = "WITH guest AS (SELECT id FROM carts "
+            + "WHERE session_id = :sessionId AND user_id IS NULL FOR UPDATE) "
+            + "INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at) "
+            + "SELECT :cartId, ci.product_id, SUM(ci.quantity), now(), now() "
+            + "FROM cart_items ci JOIN guest g ON g.id = ci.cart_id GROUP BY ci.product_id "
+            + "ON CONFLICT (cart_id, product_id) DO UPDATE "
+            + "SET quantity = cart_items.quantity + EXCLUDED.quantity, updated_at = now(), "
+            + "version = cart_items.version + 1";
+
+    // Prices are read as whole paise, so loading a cart creates no BigDecimal per price.
+    String LINES_QUERY = "SELECT new com.mrsdeores.payload.response.CartLine("
+            + "p.id, p.name, " + ProductRepository.PRIMARY_IMAGE_URL + ", "
+            + "ci.quantity, cast(round(p.sellingPrice * 100, 0) as Long), "
+            + "cast(round(p.bulkPrice * 100, 0) as Long), p.bulkMinQuantity) "
+            + "FROM CartItem ci JOIN ci.product p WHERE ci.cart.id = :cartId ORDER BY ci.id";
+
+    /** Adds to the line's quantity, creating the line if needed. */
+    @Modifying
+    @Query(value = ADD_QUANTITY, nativeQuery = true)
+    int addQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+            @Param("quantity") int quantity);
+
+    /** Sets the quantity of an existing line; returns 0 if the product is not in the cart. */
+    @Modifying
+    @Query(value = SET_QUANTITY, nativeQuery = true)
+    int setQuantity(@Param("cartId") Long cartId, @Param("productId") Long productId,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = DELETE_ITEM, nativeQuery = true)
+    int deleteItem(@Param("cartId") Long cartId, @Param("productId") Long productId);
+
+    /**
+     * Moves every line of the guest cart(s) for {@code sessionId} into
+     * {@code cartId}, summing quantities with lines already there. Returns the
+     * number of lines written.
+     */
+    @Modifying
+    @Query(value = MERGE_GUEST_ITEMS, nativeQuery = true)
+    int mergeGuestItems(@Param("cartId") Long cartId, @Param("sessionId") String sessionId);
+
+    @Query(LINES_QUERY)
+    List<CartLine> findLines(@Param("cartId") Long cartId);
+}
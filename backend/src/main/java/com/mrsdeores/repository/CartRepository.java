@@ -2,14 +2,60 @@ package com.mrsdeores.repository;
 
 import com.mrsdeores.models.Cart;
 import com.mrsdeores.models.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
+    // Items, their products and categories in one statement; product images are
+    // batch-fetched (a second bag cannot be join-fetched alongside items).
+    @EntityGraph(attributePaths = { "items", "items.product", "items.product.category" })
     Optional<Cart> findByUser(User user);
 
+    @EntityGraph(attributePaths = { "items", "items.product", "items.product.category" })
     Optional<Cart> findBySessionId(String sessionId);
+
+    // Resolves a user's cart id in one statement, creating the cart on first use
+    // (carts.user_id is UNIQUE).
+    @Query(value = "INSERT INTO carts (user_id, created_at, updated_at) VALUES (:userId, now(), now()) "
+            + "ON CONFLICT (user_id) DO UPDATE SET updated_at = now(), version = carts.version + 1 RETURNING id",
+            nativeQuery = true)
+    Long upsertUserCartId(@Param("userId") Long userId);
+
+    // Same for a guest cart; one per session (partial UNIQUE index on session_id).
+    @Query(value = "INSERT INTO carts (session_id, created_at, updated_at) VALUES (:sessionId, now(), now()) "
+            + "ON CONFLICT (session_id) WHERE user_id IS NULL "
+            + "DO UPDATE SET updated_at = now(), version = carts.version + 1 RETURNING id", nativeQuery = true)
+    Long upsertGuestCartId(@Param("sessionId") String sessionId);
+
+    @Query("SELECT c.version FROM Cart c WHERE c.id = :id")
+    Long findVersionById(@Param("id") Long id);
+
+    // Checkout locks the cart row until the order commits. Every cart mutation
+    // upserts this row first, so none can change the lines being ordered.
+    @Query(value = "SELECT id FROM carts WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockIdByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.sessionId = :sessionId ORDER BY c.id")
+    List<Long> findIdsBySessionId(@Param("sessionId") String sessionId);
+
+    // cart_items rows go with the cart (ON DELETE CASCADE).
+    @Modifying
+    @Query(value = "DELETE FROM carts WHERE session_id = :sessionId AND user_id IS NULL", nativeQuery = true)
+    int deleteGuestCarts(@Param("sessionId") String sessionId);
+
+    // Marks the cart as changed: native line writes bypass @Version, so they bump it here.
+    @Modifying
+    @Query(value = "UPDATE carts SET updated_at = now(), version = version + 1 WHERE id = :id", nativeQuery = true)
+    int touch(@Param("id") Long id);
 }
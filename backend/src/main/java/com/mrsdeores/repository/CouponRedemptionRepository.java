@@ -0,0 +1,32 @@
+package com.mrsdeores.repository;
+
+import com.mrsdeores.models.CouponRedemption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface CouponRedemptionRepository extends JpaRepository<CouponRedemption, Long> {
+    // Records the redemption unless the user already has :perUserLimit of them.
+    // Callers hold the coupon row lock (CouponRepository.claimUse), which
+    // serializes concurrent redemptions of the same coupon.
+    @Modifying
+    @Query(value = "INSERT INTO coupon_redemptions (coupon_id, user_id, order_id, discount_amount, redeemed_at) "
+            + "SELECT :couponId, :userId, :orderId, :discount, now() "
+            + "WHERE (SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = :couponId AND user_id = :userId) "
+            + "< :perUserLimit", nativeQuery = true)
+    int insertIfUnderLimit(@Param("couponId") Long couponId, @Param("userId") Long userId,
+            @Param("orderId") Long orderId, @Param("discount") BigDecimal discount,
+            @Param("perUserLimit") int perUserLimit);
+
+    // Not @Modifying: RETURNING makes it a row-returning statement (like the cart upserts).
+    @Query(value = "DELETE FROM coupon_redemptions WHERE order_id = :orderId RETURNING coupon_id", nativeQuery = true)
+    List<Long> deleteByOrderIdReturningCouponId(@Param("orderId") Long orderId);
+
+    long countByCouponIdAndUserId(Long couponId, Long userId);
+}
@@ -2,13 +2,33 @@ package com.mrsdeores.repository;
 
 import com.mrsdeores.models.Coupon;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CouponRepository extends JpaRepository<Coupon, Long> {
     Optional<Coupon> findByCodeIgnoreCaseAndIsActiveTrue(String code);
 
+    List<Coupon> findByIsActiveTrue();
+
     boolean existsByCodeIgnoreCase(String code);
+
+    // Claims one use in a single statement: 0 rows means the coupon is inactive,
+    // expired or used up. The updated row stays locked until the transaction ends.
+    @Modifying
+    @Query(value = "UPDATE coupons SET used_count = COALESCE(used_count, 0) + 1 "
+            + "WHERE id = :id AND is_active "
+            + "AND (expiry_date IS NULL OR expiry_date > LOCALTIMESTAMP) "
+            + "AND (usage_limit IS NULL OR COALESCE(used_count, 0) < usage_limit)", nativeQuery = true)
+    int claimUse(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "UPDATE coupons SET used_count = GREATEST(COALESCE(used_count, 0) - 1, 0) WHERE id = :id",
+            nativeQuery = true)
+    int releaseUse(@Param("id") Long id);
 }
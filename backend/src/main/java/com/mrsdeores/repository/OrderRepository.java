@@ -5,16 +5,41 @@ import com.mrsdeores.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import com.mrsdeores.models.Product;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    // Everything an order response serializes, except product images (batch-fetched).
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product", "orderItems.product.category",
+            "paymentDetails", "shippingAddress" })
     List<Order> findByUserOrderByCreatedAtDesc(User user);
 
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product", "orderItems.product.category",
+            "paymentDetails", "shippingAddress" })
+    Optional<Order> findWithDetailsById(Long id);
+
+    @EntityGraph(attributePaths = { "orderItems", "orderItems.product", "orderItems.product.category",
+            "paymentDetails", "shippingAddress", "user" })
+    @Query("SELECT o FROM Order o")
+    List<Order> findAllWithDetails();
+
+    // Orders behind a batch of gateway (Razorpay) order ids, for payment webhooks.
+    @EntityGraph(attributePaths = { "paymentDetails", "user" })
+    List<Order> findByPaymentDetailsRazorpayOrderIdIn(Collection<String> razorpayOrderIds);
+
+    // Units sold per product id across paid orders (the statuses AdminStatsController counts as
+    // paid); unpaid, failed, expired and cancelled orders are not sales. Feeds search suggestions.
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM Order o JOIN o.orderItems oi "
+            + "WHERE o.status IN ('MOCK_PAID', 'PAID', 'SHIPPED', 'DELIVERED') GROUP BY oi.product.id")
+    List<Object[]> sumQuantitiesByProduct();
+
     @Query("SELECT COUNT(o) > 0 FROM Order o JOIN o.orderItems oi WHERE o.user = :user AND oi.product = :product AND o.status IN ('PAID', 'DELIVERED', 'MOCK_PAID')")
     boolean hasUserPurchasedProduct(@Param("user") User user, @Param("product") Product product);
 }
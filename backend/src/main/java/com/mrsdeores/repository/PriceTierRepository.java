@@ -0,0 +1,14 @@
+package com.mrsdeores.repository;
+
+import com.mrsdeores.models.PriceTier;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PriceTierRepository extends JpaRepository<PriceTier, Long> {
+    List<PriceTier> findByProductIdOrderByMinQuantity(Long productId);
+
+    List<PriceTier> findByCategoryIdOrderByMinQuantity(Integer categoryId);
+}
@@ -0,0 +1,23 @@
+package com.mrsdeores.repository;
+
+import com.mrsdeores.payload.response.ProductCard;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+/**
+ * Keyset scrolling over the card projection. Spring Data only scrolls derived
+ * queries, so this is the {@link ProductRepository#CARD_QUERY} equivalent of
+ * {@code findByIsActiveTrue(ScrollPosition, Sort, Limit)}.
+ */
+public interface ProductCardScrolling {
+
+    /**
+     * Active product cards after {@code position} in {@code sort} order.
+     * {@code categoryId} may be null. Every sort property must be a non-null
+     * basic attribute of Product, and all orders must share one direction.
+     */
+    Window<ProductCard> scrollActiveCards(Integer categoryId, KeysetScrollPosition position, Sort sort,
+            Limit limit);
+}
@@ -0,0 +1,105 @@
+package com.mrsdeores.repository;
+
+import com.mrsdeores.payload.response.ProductCard;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+class ProductCardScrollingImpl implements ProductCardScrolling {
+
+    // Sort properties are spliced into JPQL, so only plain attribute names pass.
+    private static final Pattern PROPERTY = Pattern.compile("[A-Za-z][A-Za-z0-9]*");
+
+    // Same columns as ProductRepository.CARD_QUERY, selected as a tuple so the
+    // sort values come back alongside the card.
+    private static final String CARD_COLUMNS = "SELECT p.id, p.name, p.mrp, p.sellingPrice, p.bulkPrice, "
+            + ProductRepository.PRIMARY_IMAGE_URL + ", p.averageRating, c.id, c.name";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Window<ProductCard> scrollActiveCards(Integer categoryId, KeysetScrollPosition position, Sort sort,
+            Limit limit) {
+        List<Sort.Order> orders = sort.toList();
+        boolean descending = orders.get(0).isDescending();
+
+        StringBuilder jpql = new StringBuilder(CARD_COLUMNS);
+        for (Sort.Order order : orders) {
+            if (!PROPERTY.matcher(order.getProperty()).matches() || order.isDescending() != descending) {
+                throw new IllegalArgumentException("Unsupported card sort: " + sort);
+            }
+            jpql.append(", p.").append(order.getProperty());
+        }
+        jpql.append(" FROM Product p JOIN p.category c WHERE p.isActive = true");
+        if (categoryId != null) {
+            jpql.append(" AND c.id = :categoryId");
+        }
+
+        // (k0, k1, ...) after the position, spelled out as
+        // k0 > :k0 OR (k0 = :k0 AND k1 > :k1) OR ... for the sort direction.
+        Map<String, Object> keys = position.getKeys();
+        if (!keys.isEmpty()) {
+            String after = descending ? " < " : " > ";
+            jpql.append(" AND (");
+            for (int i = 0; i < orders.size(); i++) {
+                jpql.append(i == 0 ? "(" : " OR (");
+                for (int j = 0; j < i; j++) {
+                    jpql.append("p.").append(orders.get(j).getProperty()).append(" = :k").append(j).append(" AND ");
+                }
+                jpql.append("p.").append(orders.get(i).getProperty()).append(after).append(":k").append(i)
+                        .append(")");
+            }
+            jpql.append(")");
+        }
+
+        jpql.append(" ORDER BY ");
+        for (int i = 0; i < orders.size(); i++) {
+            jpql.append(i == 0 ? "p." : ", p.").append(orders.get(i).getProperty())
+                    .append(descending ? " DESC" : " ASC");
+        }
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+        if (categoryId != null) {
+            query.setParameter("categoryId", categoryId);
+        }
+        if (!keys.isEmpty()) {
+            for (int i = 0; i < orders.size(); i++) {
+                String property = orders.get(i).getProperty();
+                if (!keys.containsKey(property)) {
+                    throw new IllegalArgumentException("Scroll position has no value for " + property);
+                }
+                query.setParameter("k" + i, keys.get(property));
+            }
+        }
+        // One extra row tells whether there is a next window.
+        List<Object[]> rows = query.setMaxResults(limit.max() + 1).getResultList();
+
+        boolean hasNext = rows.size() > limit.max();
+        List<Object[]> page = hasNext ? rows.subList(0, limit.max()) : rows;
+        List<ProductCard> cards = new ArrayList<>(page.size());
+        for (Object[] row : page) {
+            cards.add(new ProductCard((Long) row[0], (String) row[1], (BigDecimal) row[2], (BigDecimal) row[3],
+                    (BigDecimal) row[4], (String) row[5], (Double) row[6], (Integer) row[7], (String) row[8]));
+        }
+        return Window.from(cards, index -> {
+            Map<String, Object> rowKeys = new LinkedHashMap<>();
+            for (int i = 0; i < orders.size(); i++) {
+                rowKeys.put(orders.get(i).getProperty(), page.get(index)[9 + i]);
+            }
+            return ScrollPosition.forward(rowKeys);
+        }, hasNext);
+    }
+}
@@ -1,20 +1,120 @@
 package com.mrsdeores.repository;
 
 import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.response.ProductCard;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductCardScrolling {
+    // JPQL expression for the primary image (else first image) of product alias "p".
+    String PRIMARY_IMAGE_URL = "COALESCE("
+            + "(SELECT pi.imageUrl FROM ProductImage pi WHERE pi.id = "
+            + "(SELECT MIN(x.id) FROM ProductImage x WHERE x.product = p AND x.isPrimary = true)), "
+            + "(SELECT pi2.imageUrl FROM ProductImage pi2 WHERE pi2.id = "
+            + "(SELECT MIN(y.id) FROM ProductImage y WHERE y.product = p)))";
+
+    // Card projection: one statement, primary image resolved in SQL.
+    String CARD_QUERY = "SELECT new com.mrsdeores.payload.response.ProductCard("
+            + "p.id, p.name, p.mrp, p.sellingPrice, p.bulkPrice, "
+            + PRIMARY_IMAGE_URL + ", "
+            + "p.averageRating, c.id, c.name) "
+            + "FROM Product p JOIN p.category c WHERE p.isActive = true";
+
+    // Read paths fetch the category with the product; images are either fetched
+    // here too or loaded in batches (hibernate.default_batch_fetch_size) so a
+    // listing never costs one SELECT per product.
+    @EntityGraph(attributePaths = { "category", "images" })
     List<Product> findByCategoryIdAndIsActiveTrue(Integer categoryId, org.springframework.data.domain.Sort sort);
 
+    @EntityGraph(attributePaths = { "category", "images" })
     List<Product> findByIsActiveTrue();
 
+    @EntityGraph(attributePaths = { "category", "images" })
+    List<Product> findByIsActiveTrue(org.springframework.data.domain.Sort sort);
+
+    @EntityGraph(attributePaths = { "category", "images" })
+    Optional<Product> findWithDetailsById(Long id);
+
+    // Keyset scrolling; the sort always ends in "id" (see ProductSortKey) and is
+    // backed by the partial listing indexes from V14. Only to-one associations
+    // are fetched so the limit stays in SQL.
+    @EntityGraph(attributePaths = { "category" })
+    Window<Product> findByIsActiveTrue(ScrollPosition position, Sort sort, Limit limit);
+
+    @EntityGraph(attributePaths = { "category" })
+    Window<Product> findByCategoryIdAndIsActiveTrue(Integer categoryId, ScrollPosition position, Sort sort,
+            Limit limit);
+
+    @Query("SELECT DISTINCT p FROM Product p JOIN FETCH p.category LEFT JOIN FETCH p.images WHERE p.isActive = true")
+    List<Product> findAllActiveWithDetails();
+
+    @Query(CARD_QUERY)
+    List<ProductCard> findActiveCards(Sort sort);
+
+    @Query(CARD_QUERY + " AND c.id = :categoryId")
+    List<ProductCard> findActiveCardsByCategory(@Param("categoryId") Integer categoryId, Sort sort);
+
+    // Ranked full-text search (V15): categories first, then products, each by
+    // ts_rank plus trigram similarity on the name. Only the requested top rows
+    // leave the database.
+    @Query(value = "WITH q AS (SELECT to_tsquery('simple', :tsquery) AS query) "
+            + "SELECT * FROM ("
+            + " SELECT 'category' AS \"type\", CAST(c.id AS BIGINT) AS \"id\", c.name AS \"name\","
+            + "  c.description AS \"description\", c.image_url AS \"imageUrl\","
+            + "  CAST(NULL AS NUMERIC) AS \"price\", CAST(NULL AS NUMERIC) AS \"mrp\","
+            + "  CAST(NULL AS INTEGER) AS \"categoryId\", CAST(NULL AS VARCHAR) AS \"categoryName\","
+            + "  0 AS kind, ts_rank(c.search_vector, q.query) + similarity(c.name, :text) AS rank"
+            + " FROM categories c, q"
+            + " WHERE c.search_vector @@ q.query OR c.name % :text"
+            + " UNION ALL"
+            + " SELECT 'product', p.id, p.name, p.description,"
+            + "  (SELECT pi.image_url FROM product_images pi WHERE pi.product_id = p.id"
+            + "   ORDER BY COALESCE(pi.is_primary, FALSE) DESC, pi.id LIMIT 1),"
+            + "  p.selling_price, p.mrp, c.id, c.name,"
+            + "  1, ts_rank(p.search_vector, q.query) + 0.5 * ts_rank(c.search_vector, q.query)"
+            + "  + similarity(p.name, :text)"
+            + " FROM products p JOIN categories c ON c.id = p.category_id, q"
+            + " WHERE p.is_active AND (p.search_vector @@ q.query OR p.name % :text"
+            + "  OR p.category_id IN (SELECT sc.id FROM categories sc WHERE sc.search_vector @@ q.query))"
+            + ") hits ORDER BY kind, rank DESC, \"id\" LIMIT :limit", nativeQuery = true)
+    List<SearchHit> searchRanked(@Param("tsquery") String tsquery, @Param("text") String text,
+            @Param("limit") int limit);
+
+    /** Row of {@link #searchRanked}; product-only columns are null for categories. */
+    interface SearchHit {
+        String getType();
+
+        Long getId();
+
+        String getName();
+
+        String getDescription();
+
+        String getImageUrl();
+
+        BigDecimal getPrice();
+
+        BigDecimal getMrp();
+
+        Integer getCategoryId();
+
+        String getCategoryName();
+    }
+
+    @EntityGraph(attributePaths = { "category" })
     @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId AND p.id != :productId AND p.isActive = true")
     List<Product> findRelatedProducts(@Param("productId") Long productId, @Param("categoryId") Integer categoryId,
             Pageable pageable);
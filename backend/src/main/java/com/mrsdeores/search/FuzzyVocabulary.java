@@ -0,0 +1,139 @@
+package com.mrsdeores.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram index over the indexed vocabulary, used to find terms within a small
+ * edit distance of a misspelled query term. Candidates are first narrowed by
+ * shared trigrams and length, so Levenshtein is computed (with a band and an
+ * early exit) for a handful of terms instead of the whole vocabulary.
+ */
+final class FuzzyVocabulary {
+
+    static final FuzzyVocabulary EMPTY = new FuzzyVocabulary(List.of());
+
+    private static final int MIN_LENGTH = 3;
+    private static final int MAX_MATCHES = 8;
+
+    private final String[] terms;
+    private final Map<String, int[]> trigrams;
+
+    FuzzyVocabulary(Collection<String> vocabulary) {
+        this.terms = vocabulary.toArray(new String[0]);
+        Map<String, List<Integer>> building = new HashMap<>();
+        for (int i = 0; i < terms.length; i++) {
+            for (String gram : trigrams(terms[i])) {
+                building.computeIfAbsent(gram, g -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> compact = new HashMap<>(building.size() * 2);
+        building.forEach((gram, ids) -> compact.put(gram, ids.stream().mapToInt(Integer::intValue).toArray()));
+        this.trigrams = compact;
+    }
+
+    /** Maximum edits tolerated for a term of this length (0 = too short to guess). */
+    static int maxEdits(String term) {
+        if (term.length() < MIN_LENGTH) {
+            return 0;
+        }
+        return term.length() <= 4 ? 1 : 2;
+    }
+
+    /** Vocabulary terms within {@link #maxEdits(String)} of {@code term}, closest first. */
+    List<Match> near(String term) {
+        int maxEdits = maxEdits(term);
+        if (maxEdits == 0 || terms.length == 0) {
+            return List.of();
+        }
+
+        Set<String> grams = trigrams(term);
+        // Each edit destroys at most three trigrams.
+        int minShared = Math.max(1, grams.size() - 3 * maxEdits);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            int[] ids = trigrams.get(gram);
+            if (ids != null) {
+                for (int id : ids) {
+                    shared.merge(id, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            String candidate = terms[entry.getKey()];
+            if (entry.getValue() < minShared || Math.abs(candidate.length() - term.length()) > maxEdits) {
+                continue;
+            }
+            int distance = distance(term, candidate, maxEdits);
+            if (distance > 0 && distance <= maxEdits) {
+                matches.add(new Match(candidate, distance));
+            }
+        }
+        matches.sort((a, b) -> a.distance != b.distance ? Integer.compare(a.distance, b.distance)
+                : a.term.compareTo(b.term));
+        return matches.size() > MAX_MATCHES ? matches.subList(0, MAX_MATCHES) : matches;
+    }
+
+    static Set<String> trigrams(String term) {
+        String padded = "$" + term + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Levenshtein distance restricted to a diagonal band of width
+     * {@code max}; returns {@code max + 1} as soon as the bound is exceeded.
+     */
+    static int distance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = max + 1;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < b.length()) {
+                current[to + 1] = max + 1;
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    static final class Match {
+        final String term;
+        final int distance;
+
+        Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mrsdeores.search;
+
+import com.mrsdeores.repository.ProductRepository;
+import com.mrsdeores.repository.ProductRepository.SearchHit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Search served by PostgreSQL full-text search (V15 tsvector columns, GIN and
+ * pg_trgm indexes). Keeps no per-node state, so every instance of a
+ * multi-node deployment returns the same results immediately after a write.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "postgres")
+public class PostgresSearchEngine implements SearchEngine {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SearchSynonyms synonyms;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> search(String query, int limit) {
+        List<String> terms = SearchTokenizer.tokenize(query);
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Tokens are letters/digits only, so they are safe tsquery operands.
+        Set<String> operands = new LinkedHashSet<>();
+        for (String term : terms) {
+            operands.add(term);
+            for (String synonym : synonyms.expand(term)) {
+                operands.add(synonym);
+            }
+        }
+        String tsquery = operands.stream().map(term -> term + ":*").collect(Collectors.joining(" | "));
+        String text = String.join(" ", terms);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (SearchHit hit : productRepository.searchRanked(tsquery, text, limit)) {
+            results.add("category".equals(hit.getType()) ? categoryResult(hit) : productResult(hit));
+        }
+        return results;
+    }
+
+    private Map<String, Object> categoryResult(SearchHit hit) {
+        Map<String, Object> r = new HashMap<>();
+        r.put("type", "category");
+        r.put("id", hit.getId().intValue());
+        r.put("name", hit.getName());
+        r.put("description", hit.getDescription());
+        r.put("imageUrl", hit.getImageUrl());
+        r.put("path", "/category/" + hit.getId());
+        return r;
+    }
+
+    private Map<String, Object> productResult(SearchHit hit) {
+        String description = hit.getDescription();
+        Map<String, Object> r = new HashMap<>();
+        r.put("type", "product");
+        r.put("id", hit.getId());
+        r.put("name", hit.getName());
+        r.put("description", description != null
+                ? description.substring(0, Math.min(80, description.length())) + "..."
+                : "");
+        r.put("price", hit.getPrice());
+        r.put("mrp", hit.getMrp());
+        r.put("categoryName", hit.getCategoryName() != null ? hit.getCategoryName() : "");
+        r.put("categoryId", hit.getCategoryId());
+        r.put("path", "/product/" + hit.getId());
+        r.put("imageUrl", hit.getImageUrl());
+        return r;
+    }
+}
@@ -0,0 +1,210 @@
+package com.mrsdeores.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records what shoppers search for without slowing the search itself.
+ * {@link #record} appends to a bounded lock-free queue and never blocks:
+ * when the queue is full the event is dropped and counted. A scheduled
+ * drainer batch-inserts the raw events and upserts the per-day aggregates
+ * that {@link #report} reads, both in one transaction so the aggregates never
+ * count events that were not stored (or miss ones that were).
+ */
+@Component
+public class SearchAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchAnalytics.class);
+
+    private static final int MAX_QUERY_LENGTH = 200;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_EVENT = "INSERT INTO search_queries "
+            + "(query, normalized, result_count, latency_micros, searched_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPSERT_DAILY = "INSERT INTO search_query_daily "
+            + "(day, normalized, searches, zero_results, total_latency_micros) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (day, normalized) DO UPDATE SET "
+            + "searches = search_query_daily.searches + EXCLUDED.searches, "
+            + "zero_results = search_query_daily.zero_results + EXCLUDED.zero_results, "
+            + "total_latency_micros = search_query_daily.total_latency_micros + EXCLUDED.total_latency_micros";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.search.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.search.analytics.queue-capacity:10000}")
+    private int capacity;
+
+    @Value("${app.search.analytics.retention-days:30}")
+    private int retentionDays;
+
+    private final ConcurrentLinkedQueue<SearchEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Enqueues one search; returns immediately and drops the event if the queue is full. */
+    public void record(String query, int resultCount, long latencyNanos) {
+        if (!enabled || query == null) {
+            return;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(new SearchEvent(truncate(query.trim()), normalize(query), resultCount,
+                (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1_000), LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.analytics.flush-ms:5000}")
+    public void drain() {
+        List<SearchEvent> batch = new ArrayList<>(BATCH_SIZE);
+        SearchEvent event;
+        while ((event = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(event);
+            if (batch.size() == BATCH_SIZE) {
+                flush(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(List<SearchEvent> batch) {
+        // searches, zero results, total latency per (day, query)
+        Map<LocalDate, Map<String, long[]>> daily = new LinkedHashMap<>();
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (SearchEvent e : batch) {
+            rows.add(new Object[] { e.query, e.normalized, e.resultCount, e.latencyMicros,
+                    Timestamp.valueOf(e.searchedAt) });
+            long[] totals = daily.computeIfAbsent(e.searchedAt.toLocalDate(), d -> new HashMap<>())
+                    .computeIfAbsent(e.normalized, q -> new long[3]);
+            totals[0]++;
+            totals[1] += e.resultCount == 0 ? 1 : 0;
+            totals[2] += e.latencyMicros;
+        }
+
+        List<Object[]> upserts = new ArrayList<>();
+        daily.forEach((day, queries) -> queries.forEach((normalized, totals) -> upserts.add(new Object[] {
+                Date.valueOf(day), normalized, (int) totals[0], (int) totals[1], totals[2] })));
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+                jdbcTemplate.batchUpdate(UPSERT_DAILY, upserts);
+            });
+        } catch (Exception e) {
+            // Analytics are best effort; never let a DB hiccup back up into requests.
+            logger.warn("Dropping {} search analytics events: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.search.analytics.prune-cron:0 30 3 * * *}")
+    public void prune() {
+        int deleted = jdbcTemplate.update("DELETE FROM search_queries WHERE searched_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays)));
+        logger.info("Pruned {} search analytics events older than {} days", deleted, retentionDays);
+    }
+
+    /**
+     * Aggregates over the last {@code days} days: top queries, zero-result
+     * queries per day, daily totals and the state of the in-memory queue.
+     */
+    public Map<String, Object> report(int days, int limit) {
+        Date since = Date.valueOf(LocalDate.now().minusDays(Math.max(0, days - 1)));
+
+        List<Map<String, Object>> topQueries = jdbcTemplate.queryForList(
+                "SELECT normalized AS query, SUM(searches) AS searches, SUM(zero_results) AS \"zeroResults\", "
+                        + "SUM(total_latency_micros) / NULLIF(SUM(searches), 0) AS \"avgLatencyMicros\" "
+                        + "FROM search_query_daily WHERE day >= ? "
+                        + "GROUP BY normalized ORDER BY SUM(searches) DESC, normalized LIMIT ?",
+                since, limit);
+
+        List<Map<String, Object>> zeroResultQueries = jdbcTemplate.queryForList(
+                "SELECT day, query, \"zeroResults\" FROM ("
+                        + "SELECT day, normalized AS query, zero_results AS \"zeroResults\", "
+                        + "ROW_NUMBER() OVER (PARTITION BY day ORDER BY zero_results DESC, normalized) AS rn "
+                        + "FROM search_query_daily WHERE day >= ? AND zero_results > 0) ranked "
+                        + "WHERE rn <= ? ORDER BY day DESC, \"zeroResults\" DESC, query",
+                since, limit);
+
+        List<Map<String, Object>> dailyTotals = jdbcTemplate.queryForList(
+                "SELECT day, SUM(searches) AS searches, SUM(zero_results) AS \"zeroResults\" "
+                        + "FROM search_query_daily WHERE day >= ? GROUP BY day ORDER BY day",
+                since);
+
+        Map<String, Object> queueState = new HashMap<>();
+        queueState.put("pending", getPending());
+        queueState.put("capacity", capacity);
+        queueState.put("dropped", getDropped());
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("topQueries", topQueries);
+        report.put("zeroResultQueries", zeroResultQueries);
+        report.put("daily", dailyTotals);
+        report.put("queue", queueState);
+        return report;
+    }
+
+    public int getPending() {
+        return queued.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    static String normalize(String query) {
+        return truncate(String.join(" ", SearchTokenizer.tokenize(query)).toLowerCase(Locale.ROOT));
+    }
+
+    private static String truncate(String text) {
+        return text.length() <= MAX_QUERY_LENGTH ? text : text.substring(0, MAX_QUERY_LENGTH);
+    }
+
+    private static final class SearchEvent {
+        private final String query;
+        private final String normalized;
+        private final int resultCount;
+        private final int latencyMicros;
+        private final LocalDateTime searchedAt;
+
+        private SearchEvent(String query, String normalized, int resultCount, int latencyMicros,
+                LocalDateTime searchedAt) {
+            this.query = query;
+            this.normalized = normalized;
+            this.resultCount = resultCount;
+            this.latencyMicros = latencyMicros;
+            this.searchedAt = searchedAt;
+        }
+    }
+}
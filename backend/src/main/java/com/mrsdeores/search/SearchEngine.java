@@ -0,0 +1,18 @@
+package com.mrsdeores.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backend for {@code /api/search}. Selected with {@code app.search.engine}:
+ * {@code memory} (default, {@link SearchIndex}) or {@code postgres}
+ * ({@link PostgresSearchEngine}).
+ */
+public interface SearchEngine {
+
+    /**
+     * Ranked matches for {@code query}, categories before products, at most
+     * {@code limit} rows shaped as the search endpoint returns them.
+     */
+    List<Map<String, Object>> search(String query, int limit);
+}
@@ -0,0 +1,383 @@
+package com.mrsdeores.search;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.response.ProductCard;
+import com.mrsdeores.services.CatalogChangedEvent;
+import com.mrsdeores.services.CatalogSnapshot;
+import com.mrsdeores.services.ProductSortKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-process inverted index over product names, descriptions and category
+ * names, plus the categories themselves. Queries are answered entirely from
+ * memory with prefix matching and BM25 ranking.
+ *
+ * Matching is forgiving: terms are folded for transliteration variants
+ * ({@link SearchTokenizer#fold}), adjacent name words are also indexed joined
+ * ("puranpoli"), query words expand through {@link SearchSynonyms}, and a word
+ * with no hit at all falls back to near spellings from a precomputed
+ * {@link FuzzyVocabulary}.
+ *
+ * The index follows the {@link CatalogSnapshot}: on every
+ * {@link CatalogChangedEvent} only documents whose indexed content changed are
+ * re-tokenized and their postings swapped. Readers always see an immutable
+ * {@link IndexState}; writers are serialized.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.engine", havingValue = "memory", matchIfMissing = true)
+public class SearchIndex implements SearchEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndex.class);
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field boosts applied to term frequency
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    /** Score multiplier for a prefix expansion versus an exact term. */
+    private static final double PREFIX_PENALTY = 0.8;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double SYNONYM_PENALTY = 0.9;
+    /** Divided by the edit distance for fuzzy matches. */
+    private static final double FUZZY_PENALTY = 0.6;
+
+    @Autowired
+    private SearchSynonyms synonyms;
+
+    private volatile IndexState state = IndexState.EMPTY;
+    private long indexedVersion = -1;
+
+    @EventListener
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        CatalogSnapshot snapshot = event.getSnapshot();
+        if (snapshot.getVersion() <= indexedVersion) {
+            return; // an older rebuild finished late
+        }
+
+        Map<String, IndexedDoc> incoming = new LinkedHashMap<>();
+        for (Category category : snapshot.getCategories()) {
+            IndexedDoc doc = IndexedDoc.of(category);
+            incoming.put(doc.key, doc);
+        }
+        for (Product product : snapshot.products(null, ProductSortKey.ID, false)) {
+            IndexedDoc doc = IndexedDoc.of(product);
+            incoming.put(doc.key, doc);
+        }
+
+        IndexState current = state;
+        List<IndexedDoc> removed = new ArrayList<>();
+        List<IndexedDoc> added = new ArrayList<>();
+        for (IndexedDoc existing : current.docs.values()) {
+            IndexedDoc replacement = incoming.get(existing.key);
+            if (replacement == null || !replacement.fingerprint.equals(existing.fingerprint)) {
+                removed.add(existing);
+            }
+        }
+        for (IndexedDoc doc : incoming.values()) {
+            IndexedDoc existing = current.docs.get(doc.key);
+            if (existing == null || !existing.fingerprint.equals(doc.fingerprint)) {
+                added.add(doc);
+            }
+        }
+
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            state = current.apply(removed, added);
+            logger.debug("Search index updated to catalog v{}: -{} +{} documents", snapshot.getVersion(),
+                    removed.size(), added.size());
+        }
+        indexedVersion = snapshot.getVersion();
+    }
+
+    /**
+     * Ranked matches for {@code query}: categories first, then products, each
+     * by descending BM25 score. Every query term also matches as a prefix so
+     * partially typed words still hit; synonyms score slightly lower, fuzzy
+     * matches lower still.
+     */
+    @Override
+    public List<Map<String, Object>> search(String query, int limit) {
+        List<String> words = SearchTokenizer.tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        IndexState snapshot = state;
+        Map<IndexedDoc, double[]> scores = new HashMap<>();
+        for (int t = 0; t < words.size(); t++) {
+            String word = words.get(t);
+            String term = SearchTokenizer.fold(word);
+            boolean hit = accumulatePrefix(snapshot, scores, words.size(), t, term, 1.0);
+            for (String synonym : synonyms.expand(word)) {
+                hit |= accumulatePrefix(snapshot, scores, words.size(), t, SearchTokenizer.fold(synonym),
+                        SYNONYM_PENALTY);
+            }
+            if (!hit) {
+                for (FuzzyVocabulary.Match match : snapshot.vocabulary.near(term)) {
+                    accumulate(snapshot, scores, words.size(), t, snapshot.postings.get(match.term),
+                            FUZZY_PENALTY / match.distance);
+                }
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(scores.size());
+        for (Map.Entry<IndexedDoc, double[]> entry : scores.entrySet()) {
+            double sum = 0;
+            int matched = 0;
+            for (double s : entry.getValue()) {
+                if (s > 0) {
+                    sum += s;
+                    matched++;
+                }
+            }
+            // Coordination: documents matching more of the query rank higher.
+            ranked.add(new Scored(entry.getKey(), sum * matched / words.size()));
+        }
+        ranked.sort((a, b) -> {
+            if (a.doc.category != b.doc.category) {
+                return a.doc.category ? -1 : 1;
+            }
+            int byScore = Double.compare(b.score, a.score);
+            return byScore != 0 ? byScore : a.doc.key.compareTo(b.doc.key);
+        });
+
+        List<Map<String, Object>> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            results.add(ranked.get(i).doc.result);
+        }
+        return results;
+    }
+
+    public int size() {
+        return state.docs.size();
+    }
+
+    /** Scores exact and prefix matches of {@code term}; false if nothing matched. */
+    private static boolean accumulatePrefix(IndexState snapshot, Map<IndexedDoc, double[]> scores, int slots,
+            int slot, String term, double boost) {
+        int expansions = 0;
+        for (Map.Entry<String, Posting[]> entry : snapshot.postings
+                .subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            double penalty = entry.getKey().equals(term) ? 1.0 : PREFIX_PENALTY;
+            accumulate(snapshot, scores, slots, slot, entry.getValue(), boost * penalty);
+        }
+        return expansions > 0;
+    }
+
+    private static void accumulate(IndexState snapshot, Map<IndexedDoc, double[]> scores, int slots, int slot,
+            Posting[] postings, double boost) {
+        double idf = snapshot.idf(postings.length);
+        for (Posting posting : postings) {
+            double[] perSlot = scores.computeIfAbsent(posting.doc, d -> new double[slots]);
+            double score = boost * snapshot.bm25(idf, posting.tf, posting.doc.length);
+            perSlot[slot] = Math.max(perSlot[slot], score);
+        }
+    }
+
+    private static final class Scored {
+        private final IndexedDoc doc;
+        private final double score;
+
+        private Scored(IndexedDoc doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    private static final class Posting {
+        private final IndexedDoc doc;
+        private final float tf;
+
+        private Posting(IndexedDoc doc, float tf) {
+            this.doc = doc;
+            this.tf = tf;
+        }
+    }
+
+    /** A searchable product or category with its precomputed response row. */
+    private static final class IndexedDoc {
+        private final String key;
+        private final boolean category;
+        private final String fingerprint;
+        private final Map<String, Float> termWeights;
+        private final float length;
+        private final Map<String, Object> result;
+
+        private IndexedDoc(String key, boolean category, String fingerprint, Map<String, Float> termWeights,
+                Map<String, Object> result) {
+            this.key = key;
+            this.category = category;
+            this.fingerprint = fingerprint;
+            this.termWeights = termWeights;
+            float total = 0;
+            for (float weight : termWeights.values()) {
+                total += weight;
+            }
+            this.length = total;
+            this.result = result;
+        }
+
+        static IndexedDoc of(Category cat) {
+            Map<String, Float> weights = new HashMap<>();
+            addName(weights, cat.getName());
+
+            Map<String, Object> r = new HashMap<>();
+            r.put("type", "category");
+            r.put("id", cat.getId());
+            r.put("name", cat.getName());
+            r.put("description", cat.getDescription());
+            r.put("imageUrl", cat.getImageUrl());
+            r.put("path", "/category/" + cat.getId());
+
+            String fingerprint = String.join("\u0000", Objects.toString(cat.getName(), ""),
+                    Objects.toString(cat.getDescription(), ""), Objects.toString(cat.getImageUrl(), ""));
+            return new IndexedDoc("c:" + cat.getId(), true, fingerprint, weights, Collections.unmodifiableMap(r));
+        }
+
+        static IndexedDoc of(Product p) {
+            String categoryName = p.getCategory() != null ? p.getCategory().getName() : "";
+            Map<String, Float> weights = new HashMap<>();
+            addName(weights, p.getName());
+            addField(weights, categoryName, CATEGORY_WEIGHT);
+            addField(weights, p.getDescription(), DESCRIPTION_WEIGHT);
+
+            String imageUrl = ProductCard.primaryImageUrl(p);
+            Map<String, Object> r = new HashMap<>();
+            r.put("type", "product");
+            r.put("id", p.getId());
+            r.put("name", p.getName());
+            r.put("description", p.getDescription() != null
+                    ? p.getDescription().substring(0, Math.min(80, p.getDescription().length())) + "..."
+                    : "");
+            r.put("price", p.getSellingPrice());
+            r.put("mrp", p.getMrp());
+            r.put("categoryName", categoryName);
+            r.put("categoryId", p.getCategory() != null ? p.getCategory().getId() : null);
+            r.put("path", "/product/" + p.getId());
+            r.put("imageUrl", imageUrl);
+
+            String fingerprint = String.join("\u0000", Objects.toString(p.getName(), ""),
+                    Objects.toString(p.getDescription(), ""), categoryName, String.valueOf(p.getSellingPrice()),
+                    String.valueOf(p.getMrp()), Objects.toString(imageUrl, ""));
+            return new IndexedDoc("p:" + p.getId(), false, fingerprint, weights, Collections.unmodifiableMap(r));
+        }
+
+        private static void addField(Map<String, Float> weights, String text, float weight) {
+            for (String term : SearchTokenizer.terms(text)) {
+                weights.merge(term, weight, Float::sum);
+            }
+        }
+
+        /** Name words, plus each adjacent pair joined, since "Puran Poli" is often typed "puranpoli". */
+        private static void addName(Map<String, Float> weights, String name) {
+            addField(weights, name, NAME_WEIGHT);
+            List<String> words = SearchTokenizer.tokenize(name);
+            for (int i = 0; i + 1 < words.size(); i++) {
+                weights.merge(SearchTokenizer.fold(words.get(i) + words.get(i + 1)), NAME_WEIGHT, Float::sum);
+            }
+        }
+    }
+
+    /** Immutable index generation; replaced wholesale on every update. */
+    private static final class IndexState {
+        static final IndexState EMPTY = new IndexState(Map.of(), new TreeMap<>(), 0, FuzzyVocabulary.EMPTY);
+
+        private final Map<String, IndexedDoc> docs;
+        private final NavigableMap<String, Posting[]> postings;
+        private final double totalLength;
+        private final FuzzyVocabulary vocabulary;
+
+        private IndexState(Map<String, IndexedDoc> docs, NavigableMap<String, Posting[]> postings,
+                double totalLength, FuzzyVocabulary vocabulary) {
+            this.docs = docs;
+            this.postings = postings;
+            this.totalLength = totalLength;
+            this.vocabulary = vocabulary;
+        }
+
+        /** Copy-on-write update touching only the postings of changed documents. */
+        IndexState apply(List<IndexedDoc> removed, List<IndexedDoc> added) {
+            Map<String, IndexedDoc> nextDocs = new HashMap<>(docs);
+            TreeMap<String, Posting[]> nextPostings = new TreeMap<>(postings);
+            double nextLength = totalLength;
+
+            for (IndexedDoc doc : removed) {
+                nextDocs.remove(doc.key);
+                nextLength -= doc.length;
+                for (String term : doc.termWeights.keySet()) {
+                    Posting[] list = nextPostings.get(term);
+                    if (list == null) {
+                        continue;
+                    }
+                    Posting[] pruned = Arrays.stream(list).filter(p -> p.doc != doc).toArray(Posting[]::new);
+                    if (pruned.length == 0) {
+                        nextPostings.remove(term);
+                    } else {
+                        nextPostings.put(term, pruned);
+                    }
+                }
+            }
+
+            Set<String> touched = new HashSet<>();
+            Map<String, List<Posting>> additions = new HashMap<>();
+            for (IndexedDoc doc : added) {
+                nextDocs.put(doc.key, doc);
+                nextLength += doc.length;
+                doc.termWeights.forEach((term, tf) -> {
+                    additions.computeIfAbsent(term, t -> new ArrayList<>()).add(new Posting(doc, tf));
+                    touched.add(term);
+                });
+            }
+            for (String term : touched) {
+                Posting[] existing = nextPostings.getOrDefault(term, new Posting[0]);
+                List<Posting> extra = additions.get(term);
+                Posting[] merged = Arrays.copyOf(existing, existing.length + extra.size());
+                for (int i = 0; i < extra.size(); i++) {
+                    merged[existing.length + i] = extra.get(i);
+                }
+                nextPostings.put(term, merged);
+            }
+
+            FuzzyVocabulary nextVocabulary = nextPostings.keySet().equals(postings.keySet())
+                    ? vocabulary
+                    : new FuzzyVocabulary(nextPostings.keySet());
+            return new IndexState(Collections.unmodifiableMap(nextDocs), nextPostings, Math.max(0, nextLength),
+                    nextVocabulary);
+        }
+
+        double idf(int documentFrequency) {
+            int n = docs.size();
+            return Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        }
+
+        double bm25(double idf, float tf, float docLength) {
+            double avgLength = docs.isEmpty() ? 1 : Math.max(1e-6, totalLength / docs.size());
+            return idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * docLength / avgLength));
+        }
+    }
+}
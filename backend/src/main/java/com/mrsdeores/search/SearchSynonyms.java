@@ -0,0 +1,105 @@
+package com.mrsdeores.search;
+
+import com.mrsdeores.repository.SiteSettingsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Admin-editable synonym dictionary, stored in site_settings under
+ * {@value #SETTING_KEY}. One rule per line:
+ *
+ * <pre>
+ * chakli, chakali          # equivalent words, each expands to the others
+ * laddu, ladu => ladoo     # one-way: the left words also search for the right
+ * </pre>
+ *
+ * Rules are single words; lookups go through {@link SearchTokenizer#fold},
+ * so spelling variants of a key share its expansions.
+ */
+@Component
+public class SearchSynonyms {
+
+    public static final String SETTING_KEY = "search_synonyms";
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchSynonyms.class);
+
+    @Autowired
+    private SiteSettingsRepository siteSettingsRepository;
+
+    private volatile Map<String, List<String>> expansions = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        update(siteSettingsRepository.findBySettingKey(SETTING_KEY).map(s -> s.getSettingValue()).orElse(""));
+    }
+
+    /** Replaces the dictionary with the parsed {@code rules}. */
+    public void update(String rules) {
+        expansions = parse(rules);
+        logger.debug("Loaded {} search synonym keys", expansions.size());
+    }
+
+    /** Other words to search for alongside {@code term}; never contains the term itself. */
+    public List<String> expand(String term) {
+        return expansions.getOrDefault(SearchTokenizer.fold(term), List.of());
+    }
+
+    static Map<String, List<String>> parse(String rules) {
+        Map<String, Set<String>> building = new HashMap<>();
+        if (rules != null) {
+            for (String line : rules.split("\\R")) {
+                int comment = line.indexOf('#');
+                String rule = comment >= 0 ? line.substring(0, comment) : line;
+                int arrow = rule.indexOf("=>");
+                if (arrow >= 0) {
+                    List<String> from = words(rule.substring(0, arrow));
+                    List<String> to = words(rule.substring(arrow + 2));
+                    for (String word : from) {
+                        for (String target : to) {
+                            link(building, word, target);
+                        }
+                    }
+                } else {
+                    List<String> group = words(rule);
+                    for (String word : group) {
+                        for (String other : group) {
+                            link(building, word, other);
+                        }
+                    }
+                }
+            }
+        }
+        Map<String, List<String>> result = new HashMap<>();
+        building.forEach((key, values) -> result.put(key, List.copyOf(values)));
+        return Map.copyOf(result);
+    }
+
+    private static void link(Map<String, Set<String>> building, String word, String target) {
+        String key = SearchTokenizer.fold(word);
+        if (!key.equals(SearchTokenizer.fold(target))) {
+            building.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(target);
+        }
+    }
+
+    private static List<String> words(String list) {
+        List<String> words = new ArrayList<>();
+        for (String item : list.split(",")) {
+            List<String> tokens = SearchTokenizer.tokenize(item);
+            if (tokens.size() == 1) {
+                words.add(tokens.get(0));
+            }
+        }
+        return words;
+    }
+}
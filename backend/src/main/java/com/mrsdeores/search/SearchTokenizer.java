@@ -0,0 +1,68 @@
+package com.mrsdeores.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into lowercase terms on anything that is not a letter or digit.
+ * Used for both indexing and querying so the two always agree.
+ *
+ * {@link #fold(String)} additionally maps the common spelling variants of
+ * transliterated Marathi/Hindi words onto one form ("laddoo", "ladoo" and
+ * "ladu" all become "ladu"), so they match without any fuzzy lookup.
+ */
+public final class SearchTokenizer {
+
+    static final int MIN_TERM_LENGTH = 2;
+
+    private SearchTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) {
+                    terms.add(lower.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /** {@link #tokenize(String)} followed by {@link #fold(String)} on every term. */
+    public static List<String> terms(String text) {
+        List<String> terms = tokenize(text);
+        terms.replaceAll(SearchTokenizer::fold);
+        return terms;
+    }
+
+    /**
+     * Folds transliteration variants: long vowels written double ("ee", "oo",
+     * "aa") become single, "w" becomes "v", "ph" becomes "f", and doubled
+     * letters collapse. Digits are left alone.
+     */
+    public static String fold(String term) {
+        String folded = term.replace("ph", "f").replace('w', 'v')
+                .replace("ee", "i").replace("oo", "u").replace("aa", "a");
+        StringBuilder out = new StringBuilder(folded.length());
+        for (int i = 0; i < folded.length(); i++) {
+            char ch = folded.charAt(i);
+            if (i > 0 && ch == folded.charAt(i - 1) && Character.isLetter(ch)) {
+                continue;
+            }
+            out.append(ch);
+        }
+        return out.toString();
+    }
+}
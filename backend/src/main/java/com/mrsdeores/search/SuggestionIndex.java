@@ -0,0 +1,82 @@
+package com.mrsdeores.search;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.repository.OrderRepository;
+import com.mrsdeores.services.CatalogChangedEvent;
+import com.mrsdeores.services.CatalogSnapshot;
+import com.mrsdeores.services.ProductSortKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typeahead completions for product and category names. A new
+ * {@link SuggestionTrie} is built from each catalog snapshot, weighted by
+ * units sold (categories by the units of their products), and swapped in
+ * atomically; lookups never touch the database.
+ */
+@Component
+public class SuggestionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionIndex.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private volatile SuggestionTrie trie = SuggestionTrie.EMPTY;
+    private long indexedVersion = -1;
+
+    @EventListener
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        CatalogSnapshot snapshot = event.getSnapshot();
+        if (snapshot.getVersion() <= indexedVersion) {
+            return;
+        }
+
+        Map<Long, Long> unitsSold = new HashMap<>();
+        for (Object[] row : orderRepository.sumQuantitiesByProduct()) {
+            unitsSold.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder();
+        Map<Integer, Long> categoryUnits = new HashMap<>();
+        for (Product p : snapshot.products(null, ProductSortKey.ID, false)) {
+            long units = unitsSold.getOrDefault(p.getId(), 0L);
+            Map<String, Object> r = new HashMap<>();
+            r.put("type", "product");
+            r.put("id", p.getId());
+            r.put("name", p.getName());
+            r.put("categoryName", p.getCategory() != null ? p.getCategory().getName() : "");
+            r.put("path", "/product/" + p.getId());
+            builder.add(p.getName(), units, Collections.unmodifiableMap(r));
+            if (p.getCategory() != null) {
+                categoryUnits.merge(p.getCategory().getId(), units, Long::sum);
+            }
+        }
+        for (Category cat : snapshot.getCategories()) {
+            Map<String, Object> r = new HashMap<>();
+            r.put("type", "category");
+            r.put("id", cat.getId());
+            r.put("name", cat.getName());
+            r.put("path", "/category/" + cat.getId());
+            builder.add(cat.getName(), categoryUnits.getOrDefault(cat.getId(), 0L), Collections.unmodifiableMap(r));
+        }
+
+        trie = builder.build();
+        indexedVersion = snapshot.getVersion();
+        logger.debug("Suggestion trie for catalog v{}: {} entries, {} nodes", snapshot.getVersion(), trie.size(),
+                trie.nodeCount());
+    }
+
+    public List<Map<String, Object>> suggest(String query, int limit) {
+        return trie.complete(query, Math.min(limit, SuggestionTrie.MAX_RESULTS));
+    }
+}
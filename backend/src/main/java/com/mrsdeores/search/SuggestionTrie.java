@@ -0,0 +1,244 @@
+package com.mrsdeores.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix trie for typeahead completions, flattened into parallel
+ * arrays. Children of a node are stored contiguously and sorted by character,
+ * so each step of a lookup is a binary search; every node carries its
+ * precomputed top-{@link #MAX_RESULTS} completions, so a lookup is a walk of
+ * at most {@code query.length()} nodes and allocates only the result list.
+ *
+ * Keys are normalised names (lowercase, runs of non-alphanumerics collapsed to
+ * one space) inserted from the start and from every word start, so "lad"
+ * completes "Besan Ladoo" as well as "Ladoo Mix".
+ */
+public final class SuggestionTrie {
+
+    public static final int MAX_RESULTS = 10;
+
+    static final SuggestionTrie EMPTY = new Builder().build();
+
+    private final char[] label;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final int[] topOffset;
+    private final int[] topCount;
+    private final int[] topEntries;
+    private final List<Map<String, Object>> entries;
+
+    private SuggestionTrie(char[] label, int[] firstChild, int[] childCount, int[] topOffset, int[] topCount,
+            int[] topEntries, List<Map<String, Object>> entries) {
+        this.label = label;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.topOffset = topOffset;
+        this.topCount = topCount;
+        this.topEntries = topEntries;
+        this.entries = entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int nodeCount() {
+        return label.length;
+    }
+
+    /**
+     * Best completions for the typed prefix, highest weight first. The query
+     * is normalised on the fly while walking, without building a new string.
+     */
+    public List<Map<String, Object>> complete(CharSequence query, int limit) {
+        int node = 0;
+        boolean pendingSpace = false;
+        boolean started = false;
+        for (int i = 0; i < query.length(); i++) {
+            char ch = query.charAt(i);
+            if (!Character.isLetterOrDigit(ch)) {
+                pendingSpace = started;
+                continue;
+            }
+            if (pendingSpace) {
+                node = child(node, ' ');
+                if (node < 0) {
+                    return new ArrayList<>(0);
+                }
+                pendingSpace = false;
+            }
+            node = child(node, Character.toLowerCase(ch));
+            if (node < 0) {
+                return new ArrayList<>(0);
+            }
+            started = true;
+        }
+        if (!started) {
+            return new ArrayList<>(0);
+        }
+
+        int count = Math.min(limit, topCount[node]);
+        List<Map<String, Object>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(entries.get(topEntries[topOffset[node] + i]));
+        }
+        return results;
+    }
+
+    private int child(int node, char ch) {
+        int low = firstChild[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midLabel = label[mid];
+            if (midLabel < ch) {
+                low = mid + 1;
+            } else if (midLabel > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    static String normalize(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (!Character.isLetterOrDigit(ch)) {
+                pendingSpace = key.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                key.append(' ');
+                pendingSpace = false;
+            }
+            key.append(Character.toLowerCase(ch));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Collects weighted entries, then builds the flattened trie. Entries are
+     * ranked once by weight (ties by name) so per-node top lists can be merged
+     * by comparing ranks only.
+     */
+    public static final class Builder {
+
+        private final List<Candidate> candidates = new ArrayList<>();
+
+        public Builder add(String name, long weight, Map<String, Object> payload) {
+            if (name != null && !normalize(name).isEmpty()) {
+                candidates.add(new Candidate(normalize(name), weight, payload));
+            }
+            return this;
+        }
+
+        public SuggestionTrie build() {
+            candidates.sort((a, b) -> {
+                int byWeight = Long.compare(b.weight, a.weight);
+                return byWeight != 0 ? byWeight : a.key.compareTo(b.key);
+            });
+
+            Node root = new Node('\0');
+            List<Map<String, Object>> entries = new ArrayList<>(candidates.size());
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                Candidate candidate = candidates.get(rank);
+                entries.add(candidate.payload);
+                String key = candidate.key;
+                for (int start = 0; start < key.length(); start++) {
+                    if (start == 0 || key.charAt(start - 1) == ' ') {
+                        insert(root, key, start, rank);
+                    }
+                }
+            }
+            computeTop(root);
+
+            // Breadth-first numbering keeps every node's children contiguous.
+            List<Node> order = new ArrayList<>();
+            order.add(root);
+            for (int i = 0; i < order.size(); i++) {
+                order.addAll(order.get(i).children.values());
+            }
+
+            int n = order.size();
+            char[] label = new char[n];
+            int[] firstChild = new int[n];
+            int[] childCount = new int[n];
+            int[] topOffset = new int[n];
+            int[] topCount = new int[n];
+            int totalTop = 0;
+            for (Node node : order) {
+                totalTop += node.top.length;
+            }
+            int[] topEntries = new int[totalTop];
+
+            int nextChild = 1;
+            int nextTop = 0;
+            for (int i = 0; i < n; i++) {
+                Node node = order.get(i);
+                label[i] = node.label;
+                firstChild[i] = nextChild;
+                childCount[i] = node.children.size();
+                nextChild += node.children.size();
+                topOffset[i] = nextTop;
+                topCount[i] = node.top.length;
+                System.arraycopy(node.top, 0, topEntries, nextTop, node.top.length);
+                nextTop += node.top.length;
+            }
+            return new SuggestionTrie(label, firstChild, childCount, topOffset, topCount, topEntries,
+                    Collections.unmodifiableList(entries));
+        }
+
+        private static void insert(Node root, String key, int start, int rank) {
+            Node node = root;
+            for (int i = start; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), Node::new);
+            }
+            node.terminal.add(rank);
+        }
+
+        /** Top ranks of a subtree: its own terminals merged with its children's tops. */
+        private static int[] computeTop(Node node) {
+            int[] merged = node.terminal.stream().mapToInt(Integer::intValue).toArray();
+            for (Node child : node.children.values()) {
+                int[] childTop = computeTop(child);
+                int[] combined = Arrays.copyOf(merged, merged.length + childTop.length);
+                System.arraycopy(childTop, 0, combined, merged.length, childTop.length);
+                merged = combined;
+            }
+            node.top = Arrays.stream(merged).sorted().distinct().limit(MAX_RESULTS).toArray();
+            return node.top;
+        }
+    }
+
+    private static final class Candidate {
+        private final String key;
+        private final long weight;
+        private final Map<String, Object> payload;
+
+        private Candidate(String key, long weight, Map<String, Object> payload) {
+            this.key = key;
+            this.weight = weight;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Node {
+        private final char label;
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private final List<Integer> terminal = new ArrayList<>(1);
+        private int[] top;
+
+        private Node(char label) {
+            this.label = label;
+        }
+    }
+}
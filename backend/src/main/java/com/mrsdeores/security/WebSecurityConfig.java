@@ -22,7 +22,9 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import com.mrsdeores.security.jwt.AuthEntryPointJwt;
 import com.mrsdeores.security.jwt.AuthTokenFilter;
+import com.mrsdeores.security.jwt.GuestCartTokens;
 import com.mrsdeores.security.services.UserDetailsServiceImpl;
+import com.mrsdeores.services.IdempotencyStore;
 
 import java.util.Arrays;
 import java.util.List;
@@ -42,6 +44,9 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @Value("${app.cart.guest-token.enabled:false}")
+    private boolean guestCartTokensEnabled;
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -76,6 +81,14 @@ public class WebSecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> {
+                    // Guest carts live in a signed X-Guest-Cart token; without tokens every cart call
+                    // needs a login. Merge always does.
+                    if (guestCartTokensEnabled) {
+                        auth.requestMatchers("/api/cart", "/api/cart/summary", "/api/cart/items",
+                                "/api/cart/items/**", "/api/cart/items:batch").permitAll();
+                    }
+                })
                 .authorizeHttpRequests(auth -> auth
                         // Allow Spring Boot Error dispatching
                         .dispatcherTypeMatchers(jakarta.servlet.DispatcherType.ERROR).permitAll()
@@ -90,10 +103,12 @@ public class WebSecurityConfig {
                         // Public API Endpoints
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/test/**").permitAll()
+                        // Gateway callbacks; authenticated by their HMAC signature instead of a JWT
+                        .requestMatchers(HttpMethod.POST, "/api/webhooks/razorpay").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/products", "/api/products/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/categories", "/api/categories/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/settings").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/search").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/search", "/api/search/suggest").permitAll()
 
                         // Admin Restrictions
                         .requestMatchers("/api/users/**").hasRole("ADMIN")
@@ -116,9 +131,11 @@ public class WebSecurityConfig {
         // Allow all methods
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         // Allow specific headers
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "x-auth-token"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "x-auth-token",
+                GuestCartTokens.HEADER, IdempotencyStore.HEADER));
         // Expost headers if needed
-        configuration.setExposedHeaders(List.of("x-auth-token"));
+        configuration.setExposedHeaders(List.of("x-auth-token", GuestCartTokens.HEADER,
+                IdempotencyStore.REPLAYED_HEADER));
         // Allow credentials
         configuration.setAllowCredentials(true);
 
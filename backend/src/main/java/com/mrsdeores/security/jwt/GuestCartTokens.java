@@ -0,0 +1,102 @@
+package com.mrsdeores.security.jwt;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.*;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Stateless guest carts: the lines travel in a compact HS256 token
+ * ({@code "c": "productId:quantity,..."}) signed with the same secret as
+ * {@link JwtUtils}, so browsing and small guest carts never write to the
+ * database. The cart is persisted when the guest logs in.
+ */
+@Component
+public class GuestCartTokens {
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartTokens.class);
+
+    public static final String HEADER = "X-Guest-Cart";
+
+    private static final String LINES_CLAIM = "c";
+
+    @Value("${app.jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${app.cart.guest-token.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cart.guest-token.max-lines:20}")
+    private int maxLines;
+
+    @Value("${app.cart.guest-token.expiration-ms:2592000000}")
+    private long expirationMs;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    public String encode(Map<Long, Integer> lines) {
+        StringJoiner joiner = new StringJoiner(",");
+        lines.forEach((productId, quantity) -> joiner.add(productId + ":" + quantity));
+        return Jwts.builder()
+                .claim(LINES_CLAIM, joiner.toString())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
+                .signWith(key(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * Lines of a guest cart token in insertion order. A missing, expired or
+     * tampered token yields an empty cart rather than an error.
+     */
+    public Map<Long, Integer> decode(String token) {
+        if (token == null || token.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            String encoded = Jwts.parserBuilder().setSigningKey(key()).build()
+                    .parseClaimsJws(token).getBody().get(LINES_CLAIM, String.class);
+            return parseLines(encoded);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.warn("Ignoring invalid guest cart token: {}", e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    static Map<Long, Integer> parseLines(String encoded) {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return lines;
+        }
+        for (String line : encoded.split(",")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Malformed guest cart line: " + line);
+            }
+            int quantity = Integer.parseInt(line.substring(colon + 1));
+            if (quantity > 0) {
+                lines.merge(Long.valueOf(line.substring(0, colon)), quantity, Integer::sum);
+            }
+        }
+        return lines;
+    }
+
+    private Key key() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    }
+}
@@ -0,0 +1,198 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Coupon;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
+import com.mrsdeores.pricing.PriceTierService;
+import com.mrsdeores.pricing.PriceTiers;
+import com.mrsdeores.repository.CartItemRepository;
+import com.mrsdeores.repository.CartRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prices carts once per version. Totals (subtotal, bulk savings, quantities)
+ * are computed from the cart's lines and cached against the cart version,
+ * the catalog snapshot version and the {@link PriceTiers} version, so a cart
+ * is repriced only after it, a product price or a quantity tier changed.
+ * Cart mutations hand their freshly read lines to
+ * {@link #price(Long, Long, List)}, which replaces the cached entry once the
+ * mutation commits. Coupon discounts are applied on top of the cached totals
+ * per call, since coupons can expire or run out independently of the cart.
+ *
+ * The cache holds at most {@code max-cached-carts} entries in lock stripes
+ * that each drop their least recently used cart when full.
+ *
+ * Cart display and checkout both go through here, so they always agree.
+ */
+@Service
+public class CartPricingEngine {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private PriceTierService priceTierService;
+
+    @Value("${app.cart.pricing.max-cached-carts:10000}")
+    private int maxCachedCarts = 10000;
+
+    private static final int STRIPES = 32;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CartPricingEngine() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Priced view of the stored cart at its current version: one primary-key
+     * read when cached, otherwise the lines are loaded and priced.
+     */
+    public CartView price(Long cartId) {
+        Long version = cartRepository.findVersionById(cartId);
+        if (version == null) {
+            return CartView.of(null, List.of());
+        }
+        long catalogVersion = catalogSnapshotService.current().getVersion();
+        long tiersVersion = priceTierService.current().getVersion();
+        Stripe stripe = stripeFor(cartId);
+        Priced cached;
+        synchronized (stripe) {
+            cached = stripe.get(cartId);
+        }
+        if (cached != null && cached.version == version && cached.catalogVersion == catalogVersion
+                && cached.tiersVersion == tiersVersion) {
+            hits.incrementAndGet();
+            return cached.view;
+        }
+        misses.incrementAndGet();
+        return price(cartId, version, cartItemRepository.findLines(cartId));
+    }
+
+    /**
+     * Prices {@code lines}, read at {@code version}, and caches the result.
+     * Each line's unit price is lowered to its quantity tier, if any. Inside a
+     * transaction the entry is only stored after commit, so a rolled back
+     * mutation never leaves totals for a version that does not exist. A null
+     * {@code version} (a cart that is not stored) is priced but not cached.
+     */
+    public CartView price(Long cartId, Long version, List<CartLine> lines) {
+        long catalogVersion = catalogSnapshotService.current().getVersion();
+        PriceTiers tiers = priceTierService.current();
+        for (CartLine line : lines) {
+            long unitPaise = line.getUnitPaise();
+            long tierPaise = tiers.unitPaise(line.getProductId(), line.getQuantity(), unitPaise);
+            if (tierPaise != unitPaise) {
+                line.applyUnitPrice(tierPaise);
+            }
+        }
+        CartView view = CartView.of(cartId, version, lines);
+        if (version != null) {
+            remember(cartId, new Priced(version, catalogVersion, tiers.getVersion(), view));
+        }
+        return view;
+    }
+
+    /**
+     * {@code view} with {@code couponCode} applied. Throws the coupon's
+     * validation error (invalid, expired, used up, below minimum order).
+     */
+    public CartView applyCoupon(CartView view, String couponCode) {
+        if (couponCode == null || couponCode.isBlank()) {
+            return view;
+        }
+        long subtotalPaise = view.getSubtotalPaise();
+        Coupon coupon = couponService.validateCoupon(couponCode.trim(), subtotalPaise);
+        return view.withDiscount(coupon.getCode(), couponService.discountPaise(coupon, subtotalPaise));
+    }
+
+    public void evict(Long cartId) {
+        Stripe stripe = stripeFor(cartId);
+        synchronized (stripe) {
+            stripe.remove(cartId);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private void remember(Long cartId, Priced priced) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            store(cartId, priced);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                store(cartId, priced);
+            }
+        });
+    }
+
+    private void store(Long cartId, Priced priced) {
+        Stripe stripe = stripeFor(cartId);
+        synchronized (stripe) {
+            // A slower, older mutation must not overwrite a newer version's totals.
+            stripe.merge(cartId, priced, (existing, candidate) -> candidate.version >= existing.version
+                    ? candidate
+                    : existing);
+        }
+    }
+
+    private Stripe stripeFor(Long cartId) {
+        return stripes[Math.floorMod(cartId.hashCode(), STRIPES)];
+    }
+
+    /** One lock stripe: an access-ordered map that drops its least recently used cart when full. */
+    private final class Stripe extends LinkedHashMap<Long, Priced> {
+        private Stripe() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Priced> eldest) {
+            return size() > Math.max(1, maxCachedCarts / STRIPES);
+        }
+    }
+
+    private static final class Priced {
+        private final long version;
+        private final long catalogVersion;
+        private final long tiersVersion;
+        private final CartView view;
+
+        private Priced(long version, long catalogVersion, long tiersVersion, CartView view) {
+            this.version = version;
+            this.catalogVersion = catalogVersion;
+            this.tiersVersion = tiersVersion;
+            this.view = view;
+        }
+    }
+}
@@ -1,18 +1,41 @@
 package com.mrsdeores.services;
 
 import com.mrsdeores.models.Cart;
-import com.mrsdeores.models.CartItem;
 import com.mrsdeores.models.Product;
 import com.mrsdeores.models.User;
+import com.mrsdeores.payload.request.CartBatchRequest;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
+import com.mrsdeores.payload.response.ProductCard;
+import com.mrsdeores.repository.CartItemRepository;
 import com.mrsdeores.repository.CartRepository;
 import com.mrsdeores.repository.ProductRepository;
+import com.mrsdeores.security.jwt.GuestCartTokens;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Service
 public class CartService {
@@ -20,97 +43,365 @@ public class CartService {
     @Autowired
     private CartRepository cartRepository;
 
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
     @Autowired
     private ProductRepository productRepository;
 
-    @Transactional
-    public Cart getOrCreateCart(User user, String sessionId) {
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    private GuestCartTokens guestCartTokens;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CartPricingEngine cartPricingEngine;
+
+    @Value("${app.cart.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${app.cart.retry.backoff-ms:10}")
+    private long retryBackoffMs = 10;
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    /**
+     * The caller's cart for display. Viewing never creates a cart: when there
+     * is none yet an empty, unsaved cart is returned and the row is only
+     * inserted by the first add.
+     */
+    @Transactional(readOnly = true)
+    public Cart getCart(User user, String sessionId) {
+        Optional<Cart> existing = user != null
+                ? cartRepository.findByUser(user)
+                : cartRepository.findBySessionId(sessionId);
+        return existing.orElseGet(() -> {
+            Cart cart = new Cart();
+            cart.setUser(user);
+            cart.setSessionId(user == null ? sessionId : null);
+            return cart;
+        });
+    }
+
+    /** Id of the caller's existing cart, without creating one. */
+    public Optional<Long> findCartId(User user, String sessionId) {
         if (user != null) {
-            return cartRepository.findByUser(user)
-                    .orElseGet(() -> {
-                        Cart cart = new Cart();
-                        cart.setUser(user);
-                        return cartRepository.save(cart);
-                    });
-        } else {
-            return cartRepository.findBySessionId(sessionId)
-                    .orElseGet(() -> {
-                        Cart cart = new Cart();
-                        cart.setSessionId(sessionId);
-                        return cartRepository.save(cart);
-                    });
+            return cartRepository.findIdByUserId(user.getId());
         }
+        if (sessionId == null || sessionId.isBlank()) {
+            return Optional.empty();
+        }
+        return cartRepository.findIdsBySessionId(sessionId).stream().findFirst();
     }
 
+    /**
+     * Id of the caller's cart, creating the cart if needed, without loading
+     * the cart or its items. Bumps the cart version: call it only to mutate.
+     */
     @Transactional
-    public Cart addToCart(User user, String sessionId, Long productId, Integer quantity) {
-        Cart cart = getOrCreateCart(user, sessionId);
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+    public Long resolveCartId(User user, String sessionId) {
+        if (user != null) {
+            return cartRepository.upsertUserCartId(user.getId());
+        }
+        if (sessionId == null || sessionId.isBlank()) {
+            throw new IllegalArgumentException("Session id is required for a guest cart");
+        }
+        return cartRepository.upsertGuestCartId(sessionId);
+    }
 
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
+    /** Reprices the cart from its lines; called by mutations with the lines they just changed. */
+    @Transactional(readOnly = true)
+    public CartView getCartView(Long cartId) {
+        return cartPricingEngine.price(cartId, cartRepository.findVersionById(cartId),
+                cartItemRepository.findLines(cartId));
+    }
+
+    /**
+     * Priced summary of the caller's cart, from the pricing cache when the
+     * cart has not changed, with {@code couponCode} applied if given.
+     */
+    @Transactional(readOnly = true)
+    public CartView getPricedCart(User user, String sessionId, String couponCode) {
+        CartView view = findCartId(user, sessionId)
+                .map(cartPricingEngine::price)
+                .orElseGet(() -> CartView.of(null, List.of()));
+        return cartPricingEngine.applyCoupon(view, couponCode);
+    }
 
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            item.setUpdatedAt(LocalDateTime.now());
-        } else {
-            CartItem newItem = new CartItem();
-            newItem.setCart(cart);
-            newItem.setProduct(product);
-            newItem.setQuantity(quantity);
-            cart.getItems().add(newItem);
+    public CartView addToCart(User user, String sessionId, Long productId, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be at least 1");
         }
+        return retryOnConflict(() -> {
+            Long cartId = resolveCartId(user, sessionId);
+            try {
+                cartItemRepository.addQuantity(cartId, productId, quantity);
+            } catch (DataIntegrityViolationException e) {
+                throw new IllegalArgumentException("Product not found");
+            }
+            return getCartView(cartId);
+        });
+    }
+
+    public CartView updateItemQuantity(User user, String sessionId, Long productId, Integer quantity) {
+        return retryOnConflict(() -> {
+            Optional<Long> existing = findCartId(user, sessionId);
+            if (existing.isEmpty()) {
+                return CartView.of(null, List.of());
+            }
+            Long cartId = existing.get();
+            cartRepository.touch(cartId); // cart row first, like every other mutation
+            if (quantity == null || quantity <= 0) {
+                cartItemRepository.deleteItem(cartId, productId);
+            } else {
+                cartItemRepository.setQuantity(cartId, productId, quantity);
+            }
+            return getCartView(cartId);
+        });
+    }
 
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+    public CartView removeItem(User user, String sessionId, Long productId) {
+        return retryOnConflict(() -> {
+            Optional<Long> existing = findCartId(user, sessionId);
+            if (existing.isEmpty()) {
+                return CartView.of(null, List.of());
+            }
+            Long cartId = existing.get();
+            cartRepository.touch(cartId);
+            cartItemRepository.deleteItem(cartId, productId);
+            return getCartView(cartId);
+        });
     }
 
-    @Transactional
-    public Cart updateItemQuantity(User user, String sessionId, Long productId, Integer quantity) {
-        Cart cart = getOrCreateCart(user, sessionId);
+    /**
+     * Runs one cart mutation in its own transaction, retrying it from the
+     * start (re-reading only the rows it touches) when it loses a race: a
+     * stale {@code @Version}, a lock timeout or a deadlock. Line writes are
+     * single statements, so conflicts are rare and a few attempts suffice.
+     */
+    private <T> T retryOnConflict(Supplier<T> mutation) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int attempt = 1;; attempt++) {
+            try {
+                return tx.execute(status -> mutation.get());
+            } catch (ConcurrencyFailureException e) {
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
 
-        Optional<CartItem> itemOpt = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
+    private void backOff(int attempt) {
+        if (retryBackoffMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(retryBackoffMs * attempt, 2 * retryBackoffMs * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying cart update", e);
+        }
+    }
 
-        if (itemOpt.isPresent()) {
-            CartItem item = itemOpt.get();
-            if (quantity <= 0) {
-                cart.getItems().remove(item);
-            } else {
-                item.setQuantity(quantity);
-                item.setUpdatedAt(LocalDateTime.now());
+    /** Cart mutations that hit a concurrency conflict (and were retried or failed). */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * Applies several line operations in one transaction with one product
+     * lookup and at most one JDBC batch per statement kind. Operations on the
+     * same product are folded in order first, so each line is written once.
+     */
+    public CartView applyBatch(User user, String sessionId, List<CartBatchRequest.Operation> operations) {
+        // Ordered by product id so concurrent batches lock lines in the same order.
+        Map<Long, LineChange> changes = new TreeMap<>();
+        for (CartBatchRequest.Operation operation : operations) {
+            changes.computeIfAbsent(operation.getProductId(), id -> new LineChange()).apply(operation);
+        }
+
+        Set<Long> known = new HashSet<>();
+        productRepository.findAllById(changes.keySet()).forEach(product -> known.add(product.getId()));
+        for (Long productId : changes.keySet()) {
+            if (!known.contains(productId)) {
+                throw new IllegalArgumentException("Product not found: " + productId);
             }
         }
 
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+        return retryOnConflict(() -> {
+            Long cartId = resolveCartId(user, sessionId);
+            List<SqlParameterSource> adds = new ArrayList<>();
+            List<SqlParameterSource> sets = new ArrayList<>();
+            List<SqlParameterSource> deletes = new ArrayList<>();
+            changes.forEach((productId, change) -> {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("cartId", cartId)
+                        .addValue("productId", productId)
+                        .addValue("quantity", change.quantity);
+                if (change.delete) {
+                    deletes.add(params);
+                } else if (change.absolute) {
+                    sets.add(params);
+                } else if (change.quantity > 0) {
+                    adds.add(params);
+                }
+            });
+            batch(CartItemRepository.ADD_QUANTITY, adds);
+            batch(CartItemRepository.UPSERT_QUANTITY, sets);
+            batch(CartItemRepository.DELETE_ITEM, deletes);
+
+            return getCartView(cartId);
+        });
     }
 
-    @Transactional
-    public Cart removeItem(User user, String sessionId, Long productId) {
-        Cart cart = getOrCreateCart(user, sessionId);
-        cart.getItems().removeIf(item -> item.getProduct().getId().equals(productId));
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartRepository.save(cart);
+    /**
+     * Applies cart operations to the lines of a stateless guest cart (see
+     * {@link GuestCartTokens}) and returns the new lines. Same folding and
+     * validation as {@link #applyBatch}, but nothing is written.
+     */
+    public Map<Long, Integer> applyGuestOperations(Map<Long, Integer> lines,
+            List<CartBatchRequest.Operation> operations) {
+        Map<Long, LineChange> changes = new LinkedHashMap<>();
+        for (CartBatchRequest.Operation operation : operations) {
+            changes.computeIfAbsent(operation.getProductId(), id -> new LineChange()).apply(operation);
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        Map<Long, Integer> result = new LinkedHashMap<>(lines);
+        changes.forEach((productId, change) -> {
+            if (change.delete) {
+                result.remove(productId);
+                return;
+            }
+            if (snapshot.getProduct(productId) == null) {
+                throw new IllegalArgumentException("Product not found: " + productId);
+            }
+            if (change.absolute) {
+                result.put(productId, change.quantity);
+            } else if (change.quantity > 0) {
+                result.merge(productId, change.quantity, Integer::sum);
+            }
+        });
+        result.values().removeIf(quantity -> quantity <= 0);
+        if (result.size() > guestCartTokens.getMaxLines()) {
+            throw new IllegalArgumentException("Guest cart is limited to " + guestCartTokens.getMaxLines()
+                    + " products; please sign in to add more");
+        }
+        return result;
     }
 
-    @Transactional
-    public void mergeCarts(User user, String sessionId) {
-        Optional<Cart> sessionCartOpt = cartRepository.findBySessionId(sessionId);
-        if (sessionCartOpt.isPresent()) {
-            Cart sessionCart = sessionCartOpt.get();
-            // Cart userCart = getOrCreateCart(user, null); // Unused, addToCart handles
-            // retrieval
-
-            for (CartItem sessionItem : sessionCart.getItems()) {
-                addToCart(user, null, sessionItem.getProduct().getId(), sessionItem.getQuantity());
+    /**
+     * Prices a stateless guest cart from the catalog snapshot; products that
+     * are no longer active are left out.
+     */
+    public CartView getGuestCartView(Map<Long, Integer> lines) {
+        CatalogSnapshot snapshot = catalogSnapshotService.current();
+        List<CartLine> items = new ArrayList<>(lines.size());
+        lines.forEach((productId, quantity) -> {
+            Product product = snapshot.getProduct(productId);
+            if (product != null) {
+                items.add(new CartLine(product.getId(), product.getName(), ProductCard.primaryImageUrl(product),
+                        quantity, product.getSellingPrice(), product.getBulkPrice(), product.getBulkMinQuantity()));
             }
+        });
+        return cartPricingEngine.price(null, null, items);
+    }
 
-            cartRepository.delete(sessionCart);
+    /**
+     * Persists a stateless guest cart into the user's cart at login. Each line
+     * keeps the larger of the two quantities rather than adding them, so a
+     * replayed merge of the same token leaves the cart unchanged.
+     */
+    public void mergeGuestLines(User user, Map<Long, Integer> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Set<Long> known = new HashSet<>();
+        productRepository.findAllById(lines.keySet()).forEach(product -> known.add(product.getId()));
+
+        retryOnConflict(() -> {
+            Long cartId = resolveCartId(user, null);
+            List<SqlParameterSource> adds = new ArrayList<>();
+            new TreeMap<>(lines).forEach((productId, quantity) -> {
+                if (known.contains(productId)) {
+                    adds.add(new MapSqlParameterSource()
+                            .addValue("cartId", cartId)
+                            .addValue("productId", productId)
+                            .addValue("quantity", quantity));
+                }
+            });
+            batch(CartItemRepository.MERGE_TOKEN_QUANTITY, adds);
+            return null;
+        });
+    }
+
+    private void batch(String sql, List<SqlParameterSource> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows.toArray(new SqlParameterSource[0]));
+        }
+    }
+
+    /** Net effect of a product's operations within one batch. */
+    private static final class LineChange {
+        private boolean delete;
+        private boolean absolute;
+        private int quantity;
+
+        void apply(CartBatchRequest.Operation operation) {
+            String op = operation.getOp() == null ? "add" : operation.getOp().toLowerCase(Locale.ROOT);
+            int amount = operation.getQuantity() == null ? 0 : operation.getQuantity();
+            switch (op) {
+                case "add" -> {
+                    if (amount <= 0) {
+                        throw new IllegalArgumentException("Quantity must be at least 1");
+                    }
+                    if (delete) {
+                        delete = false;
+                        absolute = true;
+                        quantity = 0;
+                    }
+                    quantity += amount;
+                }
+                case "set" -> {
+                    delete = amount <= 0;
+                    absolute = !delete;
+                    quantity = Math.max(0, amount);
+                }
+                case "remove" -> {
+                    delete = true;
+                    absolute = false;
+                    quantity = 0;
+                }
+                default -> throw new IllegalArgumentException("Unknown cart operation: " + operation.getOp());
+            }
+        }
+    }
+
+    /**
+     * Folds the guest cart for {@code sessionId} into the user's cart with one
+     * upsert and one delete. The user's cart row is locked first by
+     * {@link #resolveCartId}, so concurrent merges (two tabs logging in at
+     * once) run one after the other and the second finds nothing to move.
+     */
+    public void mergeCarts(User user, String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            return;
         }
+        retryOnConflict(() -> {
+            Long userCartId = resolveCartId(user, null);
+            cartItemRepository.mergeGuestItems(userCartId, sessionId);
+            cartRepository.deleteGuestCarts(sessionId);
+            return null;
+        });
     }
 }
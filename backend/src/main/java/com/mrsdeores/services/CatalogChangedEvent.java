@@ -0,0 +1,17 @@
+package com.mrsdeores.services;
+
+/**
+ * Published after a new {@link CatalogSnapshot} has been swapped in, so
+ * derived read models (search index, suggestions, facets) can refresh.
+ */
+public class CatalogChangedEvent {
+    private final CatalogSnapshot snapshot;
+
+    public CatalogChangedEvent(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,205 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.response.ProductCard;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, versioned view of the active catalog. Product lists are sorted
+ * once per supported {@link ProductSortKey} (both directions, globally and per
+ * category) when the snapshot is built, so listings are served without any
+ * sorting or database work.
+ *
+ * The entities held here are detached and fully initialised (category and
+ * images). They must be treated as read-only. A {@link ProductCard} is
+ * precomputed for every product for the lightweight listing view, and
+ * {@link ProductFacets} for filtering.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final LocalDateTime builtAt;
+    private final Map<Long, Product> productsById;
+    private final Map<Long, ProductCard> cardsById;
+    private final List<Category> categories;
+    private final Map<ProductSortKey, Ordering> orderings;
+    private final Map<Integer, Map<ProductSortKey, Ordering>> categoryOrderings;
+    private final ProductFacets facets;
+
+    private CatalogSnapshot(long version, Map<Long, Product> productsById, Map<Long, ProductCard> cardsById,
+            List<Category> categories, Map<ProductSortKey, Ordering> orderings,
+            Map<Integer, Map<ProductSortKey, Ordering>> categoryOrderings, ProductFacets facets) {
+        this.version = version;
+        this.builtAt = LocalDateTime.now();
+        this.productsById = productsById;
+        this.cardsById = cardsById;
+        this.categories = categories;
+        this.orderings = orderings;
+        this.categoryOrderings = categoryOrderings;
+        this.facets = facets;
+    }
+
+    public static CatalogSnapshot build(long version, List<Product> activeProducts, List<Category> categories) {
+        Map<Long, Product> byId = new LinkedHashMap<>();
+        Map<Long, ProductCard> cards = new HashMap<>();
+        Map<Integer, List<Product>> byCategory = new HashMap<>();
+        for (Product product : activeProducts) {
+            byId.put(product.getId(), product);
+            cards.put(product.getId(), ProductCard.from(product));
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(product.getCategory().getId(), id -> new ArrayList<>()).add(product);
+            }
+        }
+
+        Map<ProductSortKey, Ordering> orderings = sortAll(activeProducts, cards);
+        Map<Integer, Map<ProductSortKey, Ordering>> categoryOrderings = new HashMap<>();
+        byCategory.forEach((categoryId, products) -> categoryOrderings.put(categoryId, sortAll(products, cards)));
+
+        return new CatalogSnapshot(version, Collections.unmodifiableMap(byId), Collections.unmodifiableMap(cards),
+                List.copyOf(categories), orderings, Collections.unmodifiableMap(categoryOrderings),
+                ProductFacets.build(orderings.get(ProductSortKey.ID).ascending));
+    }
+
+    private static Map<ProductSortKey, Ordering> sortAll(List<Product> products, Map<Long, ProductCard> cards) {
+        Map<ProductSortKey, Ordering> result = new EnumMap<>(ProductSortKey.class);
+        for (ProductSortKey key : ProductSortKey.values()) {
+            List<Product> ascending = new ArrayList<>(products);
+            ascending.sort(key::compare);
+            List<Product> descending = new ArrayList<>(ascending);
+            Collections.reverse(descending);
+            result.put(key, new Ordering(List.copyOf(ascending), List.copyOf(descending),
+                    toCards(ascending, cards), toCards(descending, cards)));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static List<ProductCard> toCards(List<Product> products, Map<Long, ProductCard> cards) {
+        List<ProductCard> result = new ArrayList<>(products.size());
+        for (Product product : products) {
+            result.add(cards.get(product.getId()));
+        }
+        return List.copyOf(result);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return productsById.size();
+    }
+
+    public Product getProduct(Long id) {
+        return productsById.get(id);
+    }
+
+    public ProductCard getCard(Long id) {
+        return cardsById.get(id);
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public ProductFacets getFacets() {
+        return facets;
+    }
+
+    /**
+     * Active products in the requested order; {@code categoryId} may be null
+     * for the whole catalog. Unknown categories yield an empty list.
+     */
+    public List<Product> products(Integer categoryId, ProductSortKey sortKey, boolean descending) {
+        Map<ProductSortKey, Ordering> source = categoryId == null ? orderings : categoryOrderings.get(categoryId);
+        if (source == null) {
+            return List.of();
+        }
+        Ordering ordering = source.get(sortKey);
+        return descending ? ordering.descending : ordering.ascending;
+    }
+
+    /** Card view of {@link #products(Integer, ProductSortKey, boolean)}, same order. */
+    public List<ProductCard> cards(Integer categoryId, ProductSortKey sortKey, boolean descending) {
+        Map<ProductSortKey, Ordering> source = categoryId == null ? orderings : categoryOrderings.get(categoryId);
+        if (source == null) {
+            return List.of();
+        }
+        Ordering ordering = source.get(sortKey);
+        return descending ? ordering.descendingCards : ordering.ascendingCards;
+    }
+
+    /**
+     * Keyset page: up to {@code limit} products strictly after {@code cursor}
+     * (or from the start when null). The start position is found by binary
+     * search, so deep pages cost the same as the first one.
+     */
+    public List<Product> page(Integer categoryId, ProductSortKey sortKey, boolean descending, ProductCursor cursor,
+            int limit) {
+        List<Product> products = products(categoryId, sortKey, descending);
+        int from = cursor == null ? 0 : firstAfter(products, sortKey, descending, cursor);
+        return products.subList(from, Math.min(products.size(), from + limit));
+    }
+
+    /**
+     * Keyset page over the whole catalog keeping only products in
+     * {@code mask} (see {@link ProductFacets#match}).
+     */
+    public List<Product> page(ProductSortKey sortKey, boolean descending, ProductCursor cursor, int limit,
+            BitSet mask) {
+        List<Product> products = products(null, sortKey, descending);
+        int from = cursor == null ? 0 : firstAfter(products, sortKey, descending, cursor);
+        List<Product> result = new ArrayList<>(Math.min(limit, mask.cardinality()));
+        for (int i = from; i < products.size() && result.size() < limit; i++) {
+            Product product = products.get(i);
+            if (facets.contains(mask, product.getId())) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    private static int firstAfter(List<Product> products, ProductSortKey sortKey, boolean descending,
+            ProductCursor cursor) {
+        int direction = descending ? -1 : 1;
+        int low = 0;
+        int high = products.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (direction * sortKey.compare(products.get(mid), cursor.getValue(), cursor.getId()) > 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static final class Ordering {
+        private final List<Product> ascending;
+        private final List<Product> descending;
+        private final List<ProductCard> ascendingCards;
+        private final List<ProductCard> descendingCards;
+
+        private Ordering(List<Product> ascending, List<Product> descending, List<ProductCard> ascendingCards,
+                List<ProductCard> descendingCards) {
+            this.ascending = ascending;
+            this.descending = descending;
+            this.ascendingCards = ascendingCards;
+            this.descendingCards = descendingCards;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Product;
+import com.mrsdeores.repository.CategoryRepository;
+import com.mrsdeores.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Owns the in-memory {@link CatalogSnapshot} that backs the storefront
+ * listings. Writers call {@link #invalidate()} after changing products or
+ * categories; the snapshot is then rebuilt from the database and swapped in
+ * atomically, so readers always see one complete, consistent version.
+ *
+ * Stock moves on every checkout and is not rebuilt for each one, so the
+ * snapshot's stock counts are approximate. Whether a product is in stock at
+ * all is kept exact: {@link #stockChanged} rebuilds when a product crosses
+ * zero in either direction.
+ */
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    public CatalogSnapshot current() {
+        CatalogSnapshot snapshot = current.get();
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    /**
+     * Schedules a rebuild. Inside a transaction the rebuild runs once, after
+     * commit, so the snapshot never contains uncommitted or rolled-back data.
+     */
+    public void invalidate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return; // already scheduled for this transaction
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CatalogSnapshotService.this);
+            }
+        });
+    }
+
+    /**
+     * Called by the stock writers with whether each product they touched now
+     * has stock left. Schedules a rebuild (see {@link #invalidate()}) only if
+     * that differs from the snapshot, i.e. a product sold out or came back.
+     */
+    public void stockChanged(Map<Long, Boolean> inStock) {
+        CatalogSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            return; // the first build reads the current stock anyway
+        }
+        for (Map.Entry<Long, Boolean> entry : inStock.entrySet()) {
+            Product product = snapshot.getProduct(entry.getKey());
+            if (product == null) {
+                continue; // inactive products are not listed
+            }
+            boolean listedInStock = product.getStockQuantity() != null && product.getStockQuantity() > 0;
+            if (listedInStock != entry.getValue()) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
+    public CatalogSnapshot rebuild() {
+        long version = versions.incrementAndGet();
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.setReadOnly(true);
+        CatalogSnapshot next = tx.execute(status -> CatalogSnapshot.build(version,
+                productRepository.findAllActiveWithDetails(), categoryRepository.findAll()));
+
+        // Concurrent rebuilds may finish out of order; keep the one that started last.
+        CatalogSnapshot previous = current.getAndAccumulate(next,
+                (existing, candidate) -> existing == null || candidate.getVersion() > existing.getVersion()
+                        ? candidate
+                        : existing);
+        if (previous != null && previous.getVersion() > next.getVersion()) {
+            return previous;
+        }
+
+        logger.debug("Catalog snapshot v{} built with {} active products", next.getVersion(), next.size());
+        eventPublisher.publishEvent(new CatalogChangedEvent(next));
+        return next;
+    }
+}
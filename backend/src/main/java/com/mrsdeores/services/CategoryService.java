@@ -13,6 +13,9 @@ public class CategoryService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
@@ -22,7 +25,9 @@ public class CategoryService {
     }
 
     public Category createCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        catalogSnapshotService.invalidate();
+        return saved;
     }
 
     public Optional<Category> updateCategory(Integer id, Category updatedData) {
@@ -33,13 +38,16 @@ public class CategoryService {
             existing.setDisplayOrder(updatedData.getDisplayOrder());
             existing.setGridSize(updatedData.getGridSize());
             existing.setViewMode(updatedData.getViewMode());
-            return categoryRepository.save(existing);
+            Category saved = categoryRepository.save(existing);
+            catalogSnapshotService.invalidate();
+            return saved;
         });
     }
 
     public boolean deleteCategory(Integer id) {
         if (categoryRepository.existsById(id)) {
             categoryRepository.deleteById(id);
+            catalogSnapshotService.invalidate();
             return true;
         }
         return false;
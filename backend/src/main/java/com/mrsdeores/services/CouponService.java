@@ -1,41 +1,79 @@
 package com.mrsdeores.services;
 
 import com.mrsdeores.models.Coupon;
+import com.mrsdeores.models.Order;
+import com.mrsdeores.models.User;
+import com.mrsdeores.pricing.Money;
+import com.mrsdeores.repository.CouponRedemptionRepository;
 import com.mrsdeores.repository.CouponRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Coupon validation, discounts and redemption.
+ *
+ * Validation reads an in-memory map of the active coupons keyed by
+ * normalized code, so pricing a cart never queries the database. The map is
+ * reloaded after coupons are edited here and at most every
+ * {@code app.coupons.cache-ttl-ms} otherwise (edits on other instances).
+ * Its usage counts may be stale; they only give early feedback.
+ *
+ * The authoritative checks happen at redemption: one conditional UPDATE
+ * claims a use only while the coupon is active, unexpired and under its
+ * usage limit, and the per-user limit is enforced against the
+ * {@code coupon_redemptions} ledger in the same transaction.
+ */
 @Service
 public class CouponService {
 
     @Autowired
     private CouponRepository couponRepository;
 
+    @Autowired
+    private CouponRedemptionRepository couponRedemptionRepository;
+
+    @Value("${app.coupons.cache-ttl-ms:60000}")
+    private long cacheTtlMs = 60000;
+
+    private volatile ActiveCoupons active;
+
     public Coupon validateCoupon(String code, Double orderTotal) {
-        Optional<Coupon> couponOpt = couponRepository.findByCodeIgnoreCaseAndIsActiveTrue(code);
+        return validateCoupon(code, Money.toPaise(orderTotal));
+    }
+
+    public Coupon validateCoupon(String code, long orderTotalPaise) {
+        Optional<Coupon> couponOpt = findActive(code);
 
         if (couponOpt.isEmpty()) {
-            throw new RuntimeException("Invalid or inactive coupon code.");
+            throw new IllegalArgumentException("Invalid or inactive coupon code.");
         }
 
         Coupon coupon = couponOpt.get();
 
         // Check expiry
         if (coupon.getExpiryDate() != null && coupon.getExpiryDate().isBefore(LocalDateTime.now())) {
-            throw new RuntimeException("This coupon has expired.");
+            throw new IllegalArgumentException("This coupon has expired.");
         }
 
         // Check usage limit
         if (coupon.getUsageLimit() != null && coupon.getUsedCount() >= coupon.getUsageLimit()) {
-            throw new RuntimeException("This coupon has reached its usage limit.");
+            throw new IllegalArgumentException("This coupon has reached its usage limit.");
         }
 
         // Check min order value
-        if (orderTotal < coupon.getMinOrderValue()) {
-            throw new RuntimeException(
+        if (orderTotalPaise < terms(coupon).minOrderPaise) {
+            throw new IllegalArgumentException(
                     "Order total must be at least ₹" + coupon.getMinOrderValue() + " to use this coupon.");
         }
 
@@ -43,25 +81,227 @@ public class CouponService {
     }
 
     public Double calculateDiscount(Coupon coupon, Double orderTotal) {
-        Double discount = 0.0;
+        return Money.toRupees(discountPaise(coupon, Money.toPaise(orderTotal))).doubleValue();
+    }
 
-        if ("PERCENTAGE".equalsIgnoreCase(coupon.getDiscountType())) {
-            discount = (orderTotal * coupon.getDiscountValue()) / 100.0;
-            if (coupon.getMaxDiscount() != null && discount > coupon.getMaxDiscount()) {
-                discount = coupon.getMaxDiscount();
+    /** Discount in paise: percentages round half-up, capped by maxDiscount and the order total. */
+    public long discountPaise(Coupon coupon, long orderTotalPaise) {
+        Terms terms = terms(coupon);
+        long discount = 0;
+
+        if (terms.percentBasisPoints >= 0) {
+            discount = Money.percentOf(orderTotalPaise, terms.percentBasisPoints);
+            if (terms.maxDiscountPaise >= 0) {
+                discount = Math.min(discount, terms.maxDiscountPaise);
             }
-        } else if ("FIXED".equalsIgnoreCase(coupon.getDiscountType())) {
-            discount = coupon.getDiscountValue();
+        } else if (terms.fixedPaise >= 0) {
+            discount = terms.fixedPaise;
         }
 
         // Ensure discount doesn't exceed order total
-        return Math.min(discount, orderTotal);
+        return Math.min(discount, orderTotalPaise);
     }
 
-    public void incrementUsedCount(String code) {
-        couponRepository.findByCodeIgnoreCaseAndIsActiveTrue(code).ifPresent(coupon -> {
-            coupon.setUsedCount(coupon.getUsedCount() + 1);
-            couponRepository.save(coupon);
+    /**
+     * Claims one use of {@code coupon} for {@code orderId}. Must run in the
+     * transaction that creates the order, so a failed checkout gives the use
+     * back by rolling back, and as late in it as possible: the claim locks the
+     * coupon row until commit, serializing every checkout using the coupon.
+     */
+    @Transactional
+    public void redeem(Coupon coupon, User user, Long orderId, long discountPaise) {
+        if (couponRepository.claimUse(coupon.getId()) == 0) {
+            invalidate(); // the cached copy still looks usable
+            throw new RuntimeException("This coupon has reached its usage limit.");
+        }
+        int perUserLimit = coupon.getPerUserLimit() != null ? coupon.getPerUserLimit() : Integer.MAX_VALUE;
+        if (couponRedemptionRepository.insertIfUnderLimit(coupon.getId(), user.getId(), orderId,
+                Money.toRupees(discountPaise), perUserLimit) == 0) {
+            throw new RuntimeException("You have already used this coupon the maximum number of times.");
+        }
+    }
+
+    /**
+     * Claims the use again for an order that expired unpaid, which gave its
+     * use back, and was then paid after all. Returns false, claiming
+     * nothing, when the coupon is no longer usable or the buyer is over the
+     * per-user limit.
+     */
+    @Transactional
+    public boolean reclaim(Order order) {
+        Optional<Coupon> found = couponRepository.findByCodeIgnoreCaseAndIsActiveTrue(order.getCouponCode());
+        if (found.isEmpty() || couponRepository.claimUse(found.get().getId()) == 0) {
+            return false;
+        }
+        Coupon coupon = found.get();
+        int perUserLimit = coupon.getPerUserLimit() != null ? coupon.getPerUserLimit() : Integer.MAX_VALUE;
+        if (couponRedemptionRepository.insertIfUnderLimit(coupon.getId(), order.getUser().getId(), order.getId(),
+                order.getDiscountAmount(), perUserLimit) == 0) {
+            couponRepository.releaseUse(coupon.getId());
+            return false;
+        }
+        return true;
+    }
+
+    /** Gives back the use claimed for {@code orderId}, if any (unpaid or cancelled orders). */
+    @Transactional
+    public void release(Long orderId) {
+        List<Long> couponIds = couponRedemptionRepository.deleteByOrderIdReturningCouponId(orderId);
+        for (Long couponId : couponIds) {
+            couponRepository.releaseUse(couponId);
+        }
+        if (!couponIds.isEmpty()) {
+            invalidate();
+        }
+    }
+
+    public List<Coupon> getAllCoupons() {
+        return couponRepository.findAll();
+    }
+
+    @Transactional
+    public Coupon createCoupon(Coupon coupon) {
+        validateDefinition(coupon);
+        if (couponRepository.existsByCodeIgnoreCase(normalize(coupon.getCode()))) {
+            throw new RuntimeException("A coupon with this code already exists.");
+        }
+        coupon.setId(null);
+        coupon.setCode(normalize(coupon.getCode()));
+        coupon.setUsedCount(0);
+        invalidate();
+        return couponRepository.save(coupon);
+    }
+
+    /** Updates the definition; the used count is only changed by redemptions. */
+    @Transactional
+    public Optional<Coupon> updateCoupon(Long id, Coupon details) {
+        validateDefinition(details);
+        return couponRepository.findById(id).map(coupon -> {
+            coupon.setCode(normalize(details.getCode()));
+            coupon.setDiscountType(details.getDiscountType());
+            coupon.setDiscountValue(details.getDiscountValue());
+            coupon.setExpiryDate(details.getExpiryDate());
+            coupon.setMinOrderValue(details.getMinOrderValue());
+            coupon.setMaxDiscount(details.getMaxDiscount());
+            coupon.setUsageLimit(details.getUsageLimit());
+            coupon.setPerUserLimit(details.getPerUserLimit());
+            coupon.setIsActive(details.getIsActive());
+            invalidate();
+            return couponRepository.save(coupon);
         });
     }
+
+    @Transactional
+    public boolean deleteCoupon(Long id) {
+        if (!couponRepository.existsById(id)) {
+            return false;
+        }
+        couponRepository.deleteById(id);
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Drops the cached coupons. Inside a transaction they are dropped again
+     * after commit, so a reload racing the edit cannot keep the old data.
+     */
+    public void invalidate() {
+        active = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    active = null;
+                }
+            });
+        }
+    }
+
+    static String normalize(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private Optional<Coupon> findActive(String code) {
+        ActiveCoupons coupons = active;
+        if (coupons == null || System.currentTimeMillis() - coupons.loadedAt > cacheTtlMs) {
+            coupons = reload();
+        }
+        return Optional.ofNullable(coupons.byCode.get(normalize(code)));
+    }
+
+    private synchronized ActiveCoupons reload() {
+        ActiveCoupons coupons = active;
+        if (coupons != null && System.currentTimeMillis() - coupons.loadedAt <= cacheTtlMs) {
+            return coupons; // another thread just reloaded
+        }
+        Map<String, Coupon> byCode = new HashMap<>();
+        Map<Long, Terms> terms = new HashMap<>();
+        for (Coupon coupon : couponRepository.findByIsActiveTrue()) {
+            byCode.put(normalize(coupon.getCode()), coupon);
+            terms.put(coupon.getId(), new Terms(coupon));
+        }
+        coupons = new ActiveCoupons(Map.copyOf(byCode), Map.copyOf(terms), System.currentTimeMillis());
+        active = coupons;
+        return coupons;
+    }
+
+    private static void validateDefinition(Coupon coupon) {
+        if (normalize(coupon.getCode()).isEmpty()) {
+            throw new RuntimeException("Coupon code is required.");
+        }
+        if (!"PERCENTAGE".equalsIgnoreCase(coupon.getDiscountType())
+                && !"FIXED".equalsIgnoreCase(coupon.getDiscountType())) {
+            throw new RuntimeException("Discount type must be PERCENTAGE or FIXED.");
+        }
+        if (coupon.getDiscountValue() == null || coupon.getDiscountValue() <= 0) {
+            throw new RuntimeException("Discount value must be positive.");
+        }
+        if (coupon.getPerUserLimit() != null && coupon.getPerUserLimit() < 1) {
+            throw new RuntimeException("Per-user limit must be at least 1.");
+        }
+    }
+
+    /** The cached terms of a cached coupon; other instances (e.g. just loaded by id) are converted here. */
+    private Terms terms(Coupon coupon) {
+        ActiveCoupons coupons = active;
+        Terms terms = coupons != null && coupon.getId() != null ? coupons.terms.get(coupon.getId()) : null;
+        return terms != null && terms.coupon == coupon ? terms : new Terms(coupon);
+    }
+
+    private static final class ActiveCoupons {
+        private final Map<String, Coupon> byCode;
+        private final Map<Long, Terms> terms;
+        private final long loadedAt;
+
+        private ActiveCoupons(Map<String, Coupon> byCode, Map<Long, Terms> terms, long loadedAt) {
+            this.byCode = byCode;
+            this.terms = terms;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * A coupon's amounts in paise (percentages in basis points), converted
+     * from its {@code Double} columns once per reload rather than per cart.
+     * -1 marks an amount that does not apply.
+     */
+    private static final class Terms {
+        private final Coupon coupon;
+        private final long minOrderPaise;
+        private final long percentBasisPoints;
+        private final long maxDiscountPaise;
+        private final long fixedPaise;
+
+        private Terms(Coupon coupon) {
+            this.coupon = coupon;
+            this.minOrderPaise = Money.toPaise(coupon.getMinOrderValue());
+            boolean percentage = "PERCENTAGE".equalsIgnoreCase(coupon.getDiscountType());
+            boolean fixed = "FIXED".equalsIgnoreCase(coupon.getDiscountType());
+            this.percentBasisPoints = percentage ? Money.basisPoints(coupon.getDiscountValue()) : -1;
+            this.maxDiscountPaise = percentage && coupon.getMaxDiscount() != null
+                    ? Money.toPaise(coupon.getMaxDiscount())
+                    : -1;
+            this.fixedPaise = fixed ? Money.toPaise(coupon.getDiscountValue()) : -1;
+        }
+    }
 }
@@ -0,0 +1,338 @@
+package com.mrsdeores.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flash-sale mode: stock for SKUs listed in {@code flash_sale_skus} is
+ * claimed from in-memory {@link TokenPool}s instead of locking the product
+ * row for every checkout.
+ *
+ * A pool holds units leased from {@code products.stock_quantity}: one
+ * conditional UPDATE moves up to {@code lease-size} units into memory, so the
+ * row is locked once per chunk rather than once per order, and several
+ * instances can each hold a share without selling the same unit twice.
+ * {@link InventoryService#reserve} claims from the pool without touching the
+ * database; an empty pool falls back to the row and asks for a refill.
+ *
+ * The reconciler runs every {@code reconcile-ms}. It picks up SKUs added or
+ * removed on other instances, tops up pools that run low, and writes surplus
+ * tokens back to {@code stock_quantity} in one batch: anything above
+ * {@code max-held}, and everything held by a pool that has been idle for
+ * {@code idle-return-ms}, so the storefront stops showing a sold-out SKU that
+ * still has stock in memory. Units in memory are never sold twice; if the
+ * instance dies they are lost to the count (undersold, never oversold) until
+ * an admin corrects the stock.
+ */
+@Component
+public class FlashStockPools {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashStockPools.class);
+
+    // Moves up to ? units from the row into memory; returns how many moved. The last unit stays in
+    // the row, so the storefront's in-stock flag (read from the row) holds while memory has stock.
+    static final String LEASE = "UPDATE products p SET stock_quantity = p.stock_quantity - l.n "
+            + "FROM (SELECT id, LEAST(stock_quantity - 1, ?) AS n FROM products "
+            + "WHERE id = ? AND stock_quantity > 1 FOR UPDATE) l WHERE p.id = l.id RETURNING l.n";
+
+    private static final String LIST_SKUS = "SELECT product_id FROM flash_sale_skus";
+
+    private static final String ADD_SKU = "INSERT INTO flash_sale_skus (product_id) VALUES (?) "
+            + "ON CONFLICT (product_id) DO NOTHING";
+
+    private static final String REMOVE_SKU = "DELETE FROM flash_sale_skus WHERE product_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${app.inventory.flash.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.inventory.flash.lease-size:100}")
+    private int leaseSize = 100;
+
+    @Value("${app.inventory.flash.max-held:500}")
+    private int maxHeld = 500;
+
+    @Value("${app.inventory.flash.reconcile-ms:1000}")
+    private long reconcileMs = 1000;
+
+    @Value("${app.inventory.flash.idle-return-ms:60000}")
+    private long idleReturnMs = 60000;
+
+    private final Map<Long, TokenPool> pools = new ConcurrentHashMap<>();
+    private final Set<Long> refillWanted = ConcurrentHashMap.newKeySet();
+    private ExecutorService refiller;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leasedUnits = new AtomicLong();
+    private final AtomicLong returnedUnits = new AtomicLong();
+    private final AtomicLong lostUnits = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        refiller = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1), runnable -> {
+            Thread thread = new Thread(runnable, "flash-stock-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Hands every pool's tokens back to the rows, so a clean shutdown loses nothing. */
+    @PreDestroy
+    public void stop() {
+        refiller.shutdownNow();
+        Map<Long, Long> returns = new TreeMap<>();
+        for (TokenPool pool : pools.values()) {
+            returns.merge(pool.productId(), pool.close(), Long::sum);
+        }
+        pools.clear();
+        returnToRows(returns);
+    }
+
+    /**
+     * Claims {@code quantity} units of a flash SKU from memory. False when the
+     * product is not a flash SKU or its pool is short; the caller then takes
+     * from the row. Inside a transaction the units go back to the pool if it
+     * rolls back.
+     */
+    public boolean claim(long productId, int quantity) {
+        TokenPool pool = pools.get(productId);
+        if (pool == null) {
+            return false;
+        }
+        if (!pool.tryClaim(quantity)) {
+            refillSoon(productId);
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        giveBack(productId, quantity);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    public boolean isFlash(long productId) {
+        return pools.containsKey(productId);
+    }
+
+    /**
+     * Returns released units of a flash SKU to its pool once the caller's
+     * transaction commits (straight away without one). False when the product
+     * is not a flash SKU; the caller adds the units back to the row itself.
+     */
+    public boolean returnAfterCommit(long productId, int quantity) {
+        if (!pools.containsKey(productId)) {
+            return false;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            giveBack(productId, quantity);
+            return true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                giveBack(productId, quantity);
+            }
+        });
+        return true;
+    }
+
+    /** Marks {@code productId} as a flash SKU and preloads its pool. */
+    public Map<String, Object> enable(long productId) {
+        jdbcTemplate.update(ADD_SKU, productId);
+        TokenPool pool = open(productId);
+        lease(pool, leaseSize);
+        return describe(pool);
+    }
+
+    /** Ends flash mode for {@code productId}; its tokens go back to the row. */
+    public void disable(long productId) {
+        jdbcTemplate.update(REMOVE_SKU, productId);
+        TokenPool pool = pools.remove(productId);
+        if (pool != null) {
+            returnToRows(Map.of(productId, pool.close()));
+        }
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        pools.values().stream().sorted(Comparator.comparingLong(TokenPool::productId))
+                .forEach(pool -> list.add(describe(pool)));
+        return list;
+    }
+
+    /** Runs a reconcile soon for a pool that ran dry; a busy refiller is caught up by the next scheduled run. */
+    void refillSoon(long productId) {
+        refillWanted.add(productId);
+        if (!wakeQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refiller.execute(() -> {
+                wakeQueued.set(false);
+                reconcile();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeQueued.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.flash.reconcile-ms:1000}")
+    public void reconcile() {
+        if (!enabled || !reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        Map<Long, Long> returns = new TreeMap<>();
+        try {
+            refreshSkus(returns);
+            long idleRounds = Math.max(1, idleReturnMs / Math.max(1, reconcileMs));
+            for (TokenPool pool : pools.values()) {
+                long available = pool.available();
+                long idle = pool.noteReconcile();
+                if (refillWanted.remove(pool.productId())) {
+                    lease(pool, Math.max(leaseSize - available, 1));
+                } else if (idle >= idleRounds) {
+                    returns.merge(pool.productId(), pool.drain(Long.MAX_VALUE), Long::sum);
+                } else if (available > maxHeld) {
+                    returns.merge(pool.productId(), pool.drain(available - maxHeld), Long::sum);
+                } else if (idle == 0 && available < leaseSize / 2) {
+                    lease(pool, leaseSize - available);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Flash stock reconcile stopped early: {}", e.getMessage());
+        } finally {
+            returnToRows(returns);
+            reconciling.set(false);
+        }
+    }
+
+    /** Counters since startup plus per-pool state, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("leases", leases.get());
+        stats.put("leasedUnits", leasedUnits.get());
+        stats.put("returnedUnits", returnedUnits.get());
+        stats.put("lostUnits", lostUnits.get());
+        stats.put("pools", list());
+        return stats;
+    }
+
+    private void refreshSkus(Map<Long, Long> returns) {
+        Set<Long> skus = new HashSet<>(jdbcTemplate.queryForList(LIST_SKUS, Long.class));
+        for (Long productId : skus) {
+            if (!pools.containsKey(productId)) {
+                open(productId);
+                refillWanted.add(productId); // preload on this instance too
+            }
+        }
+        for (Long productId : new ArrayList<>(pools.keySet())) {
+            if (!skus.contains(productId)) {
+                TokenPool pool = pools.remove(productId);
+                if (pool != null) {
+                    returns.merge(productId, pool.close(), Long::sum);
+                }
+            }
+        }
+    }
+
+    private TokenPool open(long productId) {
+        return pools.computeIfAbsent(productId, TokenPool::new);
+    }
+
+    /** Moves up to {@code quantity} units from the row into the pool; the statement commits on its own. */
+    private void lease(TokenPool pool, long quantity) {
+        List<Long> moved = jdbcTemplate.query(LEASE, (rs, i) -> rs.getLong(1), quantity, pool.productId());
+        long units = moved.isEmpty() ? 0 : moved.get(0);
+        if (units == 0) {
+            return;
+        }
+        if (!pool.give(units)) {
+            returnToRows(Map.of(pool.productId(), units)); // closed while leasing
+            return;
+        }
+        leases.incrementAndGet();
+        leasedUnits.addAndGet(units);
+    }
+
+    private void giveBack(long productId, int quantity) {
+        TokenPool pool = pools.get(productId);
+        if (pool != null && pool.give(quantity)) {
+            return;
+        }
+        returnToRows(Map.of(productId, (long) quantity));
+    }
+
+    /** One batch of stock increments, in product id order like the checkout path. */
+    private void returnToRows(Map<Long, Long> quantities) {
+        List<Object[]> returns = new ArrayList<>(quantities.size());
+        new TreeMap<>(quantities).forEach((productId, units) -> {
+            if (units > 0) {
+                returns.add(new Object[] { units, productId });
+            }
+        });
+        if (returns.isEmpty()) {
+            return;
+        }
+        long units = returns.stream().mapToLong(row -> (Long) row[0]).sum();
+        try {
+            jdbcTemplate.batchUpdate(InventoryService.RETURN_STOCK, returns);
+            returnedUnits.addAndGet(units);
+            Map<Long, Boolean> restocked = new HashMap<>();
+            returns.forEach(row -> restocked.put((Long) row[1], Boolean.TRUE));
+            catalogSnapshotService.stockChanged(restocked);
+        } catch (RuntimeException e) {
+            lostUnits.addAndGet(units);
+            logger.error("Could not return {} flash-sale units to stock for products {}: {}", units,
+                    quantities.keySet(), e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> describe(TokenPool pool) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("productId", pool.productId());
+        state.put("available", pool.available());
+        state.put("claimed", pool.claimed());
+        state.put("misses", pool.misses());
+        return state;
+    }
+}
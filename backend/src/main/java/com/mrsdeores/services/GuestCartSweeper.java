@@ -0,0 +1,115 @@
+package com.mrsdeores.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes guest carts (no user) that have not been touched for
+ * {@code ttl-days}. Each statement removes at most {@code batch-size} carts,
+ * oldest first, and commits on its own, with a pause between batches, so the
+ * sweep never holds locks for long. Rows already locked by a live request are
+ * skipped and picked up by a later run. Cart lines go with their cart
+ * (ON DELETE CASCADE).
+ */
+@Component
+public class GuestCartSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartSweeper.class);
+
+    private static final String DELETE_BATCH = "DELETE FROM carts WHERE id IN ("
+            + "SELECT id FROM carts WHERE user_id IS NULL AND updated_at < ? "
+            + "ORDER BY updated_at, id LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.cart.sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cart.sweeper.ttl-days:30}")
+    private int ttlDays;
+
+    @Value("${app.cart.sweeper.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.cart.sweeper.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${app.cart.sweeper.max-batches:500}")
+    private int maxBatches;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong cartsSwept = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private volatile long lastSwept;
+    private volatile long lastMillis;
+    private volatile LocalDateTime lastRunAt;
+
+    @Scheduled(cron = "${app.cart.sweeper.cron:0 15 * * * *}")
+    public void sweep() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        long started = System.nanoTime();
+        long swept = 0;
+        try {
+            Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(ttlDays));
+            for (int i = 0; i < maxBatches; i++) {
+                int deleted = jdbcTemplate.update(DELETE_BATCH, cutoff, batchSize);
+                batches.incrementAndGet();
+                swept += deleted;
+                cartsSwept.addAndGet(deleted);
+                if (deleted < batchSize) {
+                    break;
+                }
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Guest cart sweep stopped after {} carts: {}", swept, e.getMessage());
+        } finally {
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            runs.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            lastSwept = swept;
+            lastMillis = millis;
+            lastRunAt = LocalDateTime.now();
+            running.set(false);
+        }
+        if (swept > 0) {
+            logger.info("Swept {} guest carts older than {} days in {} ms", swept, ttlDays, lastMillis);
+        }
+    }
+
+    /** Counters since startup, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ttlDays", ttlDays);
+        stats.put("batchSize", batchSize);
+        stats.put("running", running.get());
+        stats.put("runs", runs.get());
+        stats.put("batches", batches.get());
+        stats.put("cartsSwept", cartsSwept.get());
+        stats.put("totalMillis", totalMillis.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastSwept", lastSwept);
+        stats.put("lastMillis", lastMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,307 @@
+package com.mrsdeores.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mrsdeores.payload.response.MessageResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Makes POST endpoints safe to retry with an {@code Idempotency-Key} header.
+ * The first request with a key runs and its response is stored; a repeat
+ * with the same key and body gets the stored response back (marked with
+ * {@code Idempotent-Replayed: true}) without running again. A repeat while
+ * the first is still running gets 409, and reusing a key for a different
+ * body gets 422. Keys are scoped per user and endpoint.
+ *
+ * Recent keys live in a striped in-memory map, so double-clicks on the same
+ * instance are answered without touching the database. The
+ * {@code idempotency_keys} table is the shared record: a key is claimed there
+ * with one conditional upsert before the request runs, so retries that land
+ * on another instance (or after a restart) are caught too. Records expire
+ * after {@code ttl-hours}; a claim whose request never finished can be taken
+ * over after {@code lease-ms}. Server errors are not stored, so they can be
+ * retried.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final int STRIPES = 64;
+
+    // 1 row: claimed (new, expired, or abandoned); 0 rows: a live record exists.
+    static final String CLAIM = "INSERT INTO idempotency_keys "
+            + "(user_id, endpoint, idem_key, request_hash, status, created_at, expires_at) "
+            + "VALUES (?, ?, ?, ?, 'IN_PROGRESS', LOCALTIMESTAMP, LOCALTIMESTAMP + ? * INTERVAL '1 millisecond') "
+            + "ON CONFLICT (user_id, endpoint, idem_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, "
+            + "status = 'IN_PROGRESS', response_status = NULL, response_body = NULL, "
+            + "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at "
+            + "WHERE idempotency_keys.expires_at < LOCALTIMESTAMP OR (idempotency_keys.status = 'IN_PROGRESS' "
+            + "AND idempotency_keys.created_at < LOCALTIMESTAMP - ? * INTERVAL '1 millisecond')";
+
+    static final String FIND = "SELECT request_hash, status, response_status, response_body FROM idempotency_keys "
+            + "WHERE user_id = ? AND endpoint = ? AND idem_key = ? AND expires_at >= LOCALTIMESTAMP";
+
+    static final String COMPLETE = "UPDATE idempotency_keys SET status = 'DONE', response_status = ?, "
+            + "response_body = ? WHERE user_id = ? AND endpoint = ? AND idem_key = ? AND status = 'IN_PROGRESS'";
+
+    static final String RELEASE = "DELETE FROM idempotency_keys "
+            + "WHERE user_id = ? AND endpoint = ? AND idem_key = ? AND status = 'IN_PROGRESS'";
+
+    private static final String PURGE_BATCH = "DELETE FROM idempotency_keys WHERE ctid IN ("
+            + "SELECT ctid FROM idempotency_keys WHERE expires_at < LOCALTIMESTAMP LIMIT ?)";
+
+    private static final RowMapper<Record> RECORD = (rs, i) -> new Record(rs.getString("request_hash"),
+            "DONE".equals(rs.getString("status")), rs.getInt("response_status"), rs.getString("response_body"),
+            Long.MAX_VALUE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours = 24;
+
+    @Value("${app.idempotency.lease-ms:60000}")
+    private long leaseMs = 60000;
+
+    @Value("${app.idempotency.max-cached-keys:50000}")
+    private int maxCachedKeys = 50000;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong memoryReplays = new AtomicLong();
+    private final AtomicLong storedReplays = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public IdempotencyStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Runs {@code action} once per {@code key}, replaying its response for
+     * repeats. Without a key the action simply runs.
+     */
+    public ResponseEntity<?> execute(Long userId, String endpoint, String key, Object request,
+            Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(new MessageResponse(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters."));
+        }
+        String requestHash = hash(request);
+        String id = userId + ":" + endpoint + ":" + key;
+        Stripe stripe = stripes[Math.floorMod(id.hashCode(), STRIPES)];
+        long now = System.currentTimeMillis();
+
+        Record known;
+        synchronized (stripe) {
+            known = stripe.live(id, now);
+            if (known == null) {
+                stripe.put(id, new Record(requestHash, false, 0, null, now + leaseMs));
+            }
+        }
+        if (known != null) {
+            memoryReplays.incrementAndGet();
+            return respond(known, requestHash);
+        }
+
+        boolean claimed;
+        try {
+            claimed = jdbcTemplate.update(CLAIM, userId, endpoint, key, requestHash,
+                    ttlHours * 3_600_000, leaseMs) == 1;
+        } catch (RuntimeException e) {
+            forget(stripe, id);
+            throw e;
+        }
+        if (!claimed) {
+            List<Record> stored = jdbcTemplate.query(FIND, RECORD, userId, endpoint, key);
+            synchronized (stripe) {
+                if (!stored.isEmpty() && stored.get(0).done) {
+                    stripe.put(id, stored.get(0).expiringAt(now + leaseMs));
+                } else {
+                    stripe.remove(id);
+                }
+            }
+            storedReplays.incrementAndGet();
+            return stored.isEmpty() ? inProgress() : respond(stored.get(0), requestHash);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(stripe, id, userId, endpoint, key);
+            throw e;
+        }
+        executed.incrementAndGet();
+        if (response.getStatusCode().is5xxServerError()) {
+            release(stripe, id, userId, endpoint, key);
+            return response;
+        }
+        String body = toJson(response.getBody());
+        int status = response.getStatusCode().value();
+        try {
+            jdbcTemplate.update(COMPLETE, status, body, userId, endpoint, key);
+        } catch (RuntimeException e) {
+            // The response stands; this instance still replays it, others re-claim after the lease.
+            logger.warn("Could not store idempotent response for {}: {}", endpoint, e.getMessage());
+        }
+        synchronized (stripe) {
+            stripe.put(id, new Record(requestHash, true, status, body, now + ttlHours * 3_600_000));
+        }
+        return response;
+    }
+
+    /** Deletes expired records in batches. */
+    @Scheduled(cron = "${app.idempotency.purge-cron:0 45 * * * *}")
+    public void purgeExpired() {
+        long purged = 0;
+        try {
+            for (int i = 0; i < 100; i++) {
+                int deleted = jdbcTemplate.update(PURGE_BATCH, 1000);
+                purged += deleted;
+                if (deleted < 1000) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Idempotency key purge stopped after {} rows: {}", purged, e.getMessage());
+        }
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /** Counters since startup, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executed", executed.get());
+        stats.put("memoryReplays", memoryReplays.get());
+        stats.put("storedReplays", storedReplays.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private ResponseEntity<?> respond(Record record, String requestHash) {
+        if (!record.requestHash.equals(requestHash)) {
+            rejected.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new MessageResponse("This " + HEADER + " was already used for a different request."));
+        }
+        if (!record.done) {
+            return inProgress();
+        }
+        ResponseEntity.BodyBuilder replay = ResponseEntity.status(record.status).header(REPLAYED_HEADER, "true");
+        return record.body == null ? replay.build() : replay.contentType(MediaType.APPLICATION_JSON).body(record.body);
+    }
+
+    private ResponseEntity<?> inProgress() {
+        rejected.incrementAndGet();
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse("A request with this " + HEADER + " is still being processed."));
+    }
+
+    private void release(Stripe stripe, String id, Long userId, String endpoint, String key) {
+        forget(stripe, id);
+        try {
+            jdbcTemplate.update(RELEASE, userId, endpoint, key);
+        } catch (RuntimeException e) {
+            logger.warn("Could not release idempotency key for {}: {}", endpoint, e.getMessage());
+        }
+    }
+
+    private static void forget(Stripe stripe, String id) {
+        synchronized (stripe) {
+            stripe.remove(id);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Could not hash request", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not store response", e);
+        }
+    }
+
+    /** One lock stripe: a small insertion-ordered map that drops its oldest keys when full. */
+    private final class Stripe extends LinkedHashMap<String, Record> {
+        Record live(String id, long now) {
+            Record record = get(id);
+            if (record != null && record.expiresAt < now) {
+                remove(id);
+                return null;
+            }
+            return record;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+            return size() > Math.max(1, maxCachedKeys / STRIPES);
+        }
+    }
+
+    private static final class Record {
+        private final String requestHash;
+        private final boolean done;
+        private final int status;
+        private final String body;
+        private final long expiresAt;
+
+        private Record(String requestHash, boolean done, int status, String body, long expiresAt) {
+            this.requestHash = requestHash;
+            this.done = done;
+            this.status = status;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        Record expiringAt(long expiresAt) {
+            return new Record(requestHash, done, status, body, expiresAt);
+        }
+    }
+}
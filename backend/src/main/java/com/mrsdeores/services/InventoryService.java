@@ -0,0 +1,224 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.payload.response.CartLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock reservations for orders.
+ *
+ * Checkout takes stock with a conditional decrement per product, sent as one
+ * JDBC batch per cart: a line only succeeds while enough stock is left, so
+ * stock never goes negative and nothing is read first. Only the product rows
+ * in the cart are locked, and only until the checkout transaction commits;
+ * lines are sorted by product id so two carts sharing products always lock
+ * them in the same order and cannot deadlock. If any line is short the whole
+ * checkout rolls back, returning the stock taken by the other lines.
+ *
+ * Flash-sale SKUs ({@link FlashStockPools}) are claimed from memory first and
+ * only fall back to the row when their pool is empty.
+ *
+ * When a take sells a product out, or a release brings one back, the
+ * catalog snapshot is told ({@link CatalogSnapshotService#stockChanged}) so
+ * listings and the in-stock facet follow after commit.
+ *
+ * What was taken is recorded in {@code stock_reservations}: committed when
+ * the payment is verified, released (stock added back) when the order is
+ * cancelled or its payment order cannot be created, and expired by
+ * {@link StockReservationSweeper} when payment never completes.
+ */
+@Service
+public class InventoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryService.class);
+
+    static final String TAKE_STOCK = "UPDATE products SET stock_quantity = stock_quantity - ? "
+            + "WHERE id = ? AND stock_quantity >= ?";
+
+    static final String RETURN_STOCK = "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
+
+    static final String INSERT_RESERVATION = "INSERT INTO stock_reservations "
+            + "(order_id, product_id, quantity, status, expires_at, created_at) VALUES (?, ?, ?, 'RESERVED', ?, ?)";
+
+    private static final String STOCK_LEFT = "SELECT id, stock_quantity FROM products WHERE id IN (%s)";
+
+    private static final String COMMIT = "UPDATE stock_reservations SET status = 'COMMITTED' "
+            + "WHERE order_id = ? AND status = 'RESERVED'";
+
+    private static final String FIND_RELEASED = "SELECT product_id, quantity FROM stock_reservations "
+            + "WHERE order_id = ? AND status = 'RELEASED' ORDER BY product_id";
+
+    private static final String MARK_RELEASED_COMMITTED = "UPDATE stock_reservations SET status = 'COMMITTED' "
+            + "WHERE order_id = ? AND status = 'RELEASED'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FlashStockPools flashStockPools;
+
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${app.inventory.reservation-ttl-minutes:30}")
+    private long reservationTtlMinutes = 30;
+
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong shortages = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong oversold = new AtomicLong();
+    private final AtomicLong flashClaims = new AtomicLong();
+
+    /**
+     * Takes stock for every line of the order, all or nothing. Throws when a
+     * line asks for more than is left; the caller's transaction must then
+     * roll back, which returns the stock taken for the other lines.
+     */
+    @Transactional
+    public void reserve(Long orderId, List<CartLine> lines) {
+        List<CartLine> sorted = new ArrayList<>(lines);
+        sorted.sort(Comparator.comparing(CartLine::getProductId));
+
+        // Flash SKUs come out of memory (given back if this transaction rolls back).
+        List<CartLine> fromRows = new ArrayList<>(sorted.size());
+        List<Object[]> takes = new ArrayList<>(sorted.size());
+        for (CartLine line : sorted) {
+            if (flashStockPools.claim(line.getProductId(), line.getQuantity())) {
+                flashClaims.incrementAndGet();
+                continue;
+            }
+            fromRows.add(line);
+            takes.add(new Object[] { line.getQuantity(), line.getProductId(), line.getQuantity() });
+        }
+        int[] taken = takes.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(TAKE_STOCK, takes);
+
+        List<String> shortLines = new ArrayList<>();
+        for (int i = 0; i < taken.length; i++) {
+            if (taken[i] == 0) {
+                shortLines.add(fromRows.get(i).getName());
+            }
+        }
+        if (!shortLines.isEmpty()) {
+            shortages.incrementAndGet();
+            throw new RuntimeException("Not enough stock left for: " + String.join(", ", shortLines)
+                    + ". Please reduce the quantity and try again.");
+        }
+        publishStockLeft(fromRows.stream().map(CartLine::getProductId).toList());
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp expiresAt = Timestamp.valueOf(now.plusMinutes(reservationTtlMinutes));
+        List<Object[]> reservations = new ArrayList<>(sorted.size());
+        for (CartLine line : sorted) {
+            reservations.add(new Object[] { orderId, line.getProductId(), line.getQuantity(), expiresAt,
+                    Timestamp.valueOf(now) });
+        }
+        jdbcTemplate.batchUpdate(INSERT_RESERVATION, reservations);
+        reserved.incrementAndGet();
+    }
+
+    /**
+     * Makes the order's reservations permanent once it is paid. If they had
+     * already expired, the stock is taken again; a payment is never refused
+     * here, so a shortfall is only logged for follow-up.
+     */
+    @Transactional
+    public void commit(Long orderId) {
+        if (jdbcTemplate.update(COMMIT, orderId) > 0) {
+            return;
+        }
+        List<Map<String, Object>> expired = jdbcTemplate.queryForList(FIND_RELEASED, orderId);
+        List<Long> retaken = new ArrayList<>(expired.size());
+        for (Map<String, Object> row : expired) {
+            int quantity = ((Number) row.get("quantity")).intValue();
+            long productId = ((Number) row.get("product_id")).longValue();
+            if (flashStockPools.claim(productId, quantity)) {
+                continue;
+            }
+            if (jdbcTemplate.update(TAKE_STOCK, quantity, productId, quantity) > 0) {
+                retaken.add(productId);
+            } else {
+                oversold.incrementAndGet();
+                logger.warn("Order {} was paid after its reservation expired; product {} is oversold by up to {}",
+                        orderId, productId, quantity);
+            }
+        }
+        publishStockLeft(retaken);
+        jdbcTemplate.update(MARK_RELEASED_COMMITTED, orderId);
+    }
+
+    /** Gives back stock the order still holds: RESERVED only, or COMMITTED too (a cancelled paid order). */
+    @Transactional
+    public int release(Long orderId, boolean includeCommitted) {
+        String statuses = includeCommitted ? "'RESERVED', 'COMMITTED'" : "'RESERVED'";
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, product_id, quantity "
+                + "FROM stock_reservations WHERE order_id = ? AND status IN (" + statuses + ") "
+                + "ORDER BY product_id FOR UPDATE", orderId);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        // Sum per product (product id order, like reserve) before touching product rows.
+        Map<Long, Integer> quantities = new TreeMap<>();
+        List<Object[]> ids = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            quantities.merge(((Number) row.get("product_id")).longValue(),
+                    ((Number) row.get("quantity")).intValue(), Integer::sum);
+            ids.add(new Object[] { ((Number) row.get("id")).longValue() });
+        }
+        List<Object[]> returns = new ArrayList<>(quantities.size());
+        Map<Long, Boolean> restocked = new HashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (!flashStockPools.returnAfterCommit(productId, quantity)) {
+                returns.add(new Object[] { quantity, productId });
+                restocked.put(productId, Boolean.TRUE);
+            }
+        });
+        if (!returns.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETURN_STOCK, returns);
+            catalogSnapshotService.stockChanged(restocked);
+        }
+        jdbcTemplate.batchUpdate("UPDATE stock_reservations SET status = 'RELEASED' WHERE id = ?", ids);
+        released.incrementAndGet();
+        return rows.size();
+    }
+
+    /** Reads back the rows just decremented (already locked by this transaction) to spot sell-outs. */
+    private void publishStockLeft(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Boolean> inStock = new HashMap<>();
+        jdbcTemplate.query(String.format(STOCK_LEFT, String.join(", ", Collections.nCopies(productIds.size(), "?"))),
+                rs -> {
+                    inStock.put(rs.getLong(1), rs.getInt(2) > 0);
+                }, productIds.toArray());
+        catalogSnapshotService.stockChanged(inStock);
+    }
+
+    /** Counters since startup, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reserved", reserved.get());
+        stats.put("shortages", shortages.get());
+        stats.put("released", released.get());
+        stats.put("oversold", oversold.get());
+        stats.put("flashClaims", flashClaims.get());
+        return stats;
+    }
+}
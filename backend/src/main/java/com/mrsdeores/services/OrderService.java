@@ -1,17 +1,38 @@
 package com.mrsdeores.services;
 
 import com.mrsdeores.models.*;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
 import com.mrsdeores.repository.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class OrderService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+
+    // Orders a captured payment can still settle; a cancelled or already paid one needs a refund instead.
+    private static final Set<String> PAYABLE = Set.of("CREATED", "PAYMENT_FAILED", "EXPIRED");
+
+    // Payment statuses that hold captured money: settled, or waiting to be refunded.
+    private static final Set<String> CAPTURED = Set.of("COMPLETED", "REFUND_DUE");
+
+    /** What {@link #settlePayment} did with a captured payment. */
+    public enum Settlement {
+        PAID, ALREADY_PAID, REFUND_DUE, REJECTED
+    }
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -22,25 +43,66 @@ public class OrderService {
     private AddressRepository addressRepository;
 
     @Autowired
-    private RazorpayService razorpayService;
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private PaymentOutbox paymentOutbox;
+
+    @Autowired
+    private CartPricingEngine cartPricingEngine;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private InventoryService inventoryService;
 
     public List<Order> getUserOrders(User user) {
         return orderRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
     public Order getOrder(Long orderId) {
-        return orderRepository.findById(orderId).orElse(null);
+        return orderRepository.findWithDetailsById(orderId).orElse(null);
+    }
+
+    /**
+     * Where the order's payment stands after checkout: PENDING while the
+     * gateway order is being created, READY once {@code razorpayOrderId} can
+     * be handed to the payment widget, FAILED if it could not be created.
+     */
+    public Map<String, Object> getPaymentStatus(Order order) {
+        PaymentDetails payment = order.getPaymentDetails();
+        String status = "PENDING";
+        if (payment != null && "FAILED".equals(payment.getStatus())) {
+            status = "FAILED";
+        } else if (payment != null && payment.getRazorpayOrderId() != null) {
+            status = "READY";
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("orderId", order.getId());
+        result.put("status", status);
+        result.put("razorpayOrderId", payment != null ? payment.getRazorpayOrderId() : null);
+        result.put("amount", order.getTotalAmount());
+        return result;
     }
 
     @Transactional
     public Order createOrder(User user, Long addressId) {
-        // 1. Get Cart
-        Cart cart = cartRepository.findByUser(user)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        return createOrder(user, addressId, null);
+    }
 
-        if (cart.getItems().isEmpty()) {
-            throw new RuntimeException("Cart is empty");
-        }
+    /**
+     * Creates the order from the cart priced by {@link CartPricingEngine}, so
+     * the amount charged matches the cart summary the customer saw.
+     */
+    @Transactional
+    public Order createOrder(User user, Long addressId, String couponCode) {
+        // 1. Lock the cart: add/update/remove wait until this order commits
+        Long cartId = cartRepository.lockIdByUserId(user.getId())
+                .orElseThrow(() -> new RuntimeException("Cart not found"));
 
         // 2. Get Address
         Address address = addressRepository.findById(addressId)
@@ -50,31 +112,30 @@ public class OrderService {
             throw new RuntimeException("Invalid address");
         }
 
-        // 3. Create Order
+        // 3. Price the locked cart (cached per cart version) and create the order
+        CartView priced = cartPricingEngine.applyCoupon(cartPricingEngine.price(cartId), couponCode);
+        if (priced.getItems().isEmpty()) {
+            throw new RuntimeException("Cart is empty");
+        }
+
         Order order = new Order();
         order.setUser(user);
         order.setShippingAddress(address);
         order.setStatus("CREATED");
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        int totalItems = 0;
-
-        for (CartItem cartItem : cart.getItems()) {
+        for (CartLine line : priced.getItems()) {
             OrderItem orderItem = new OrderItem();
-            orderItem.setProduct(cartItem.getProduct());
-            orderItem.setQuantity(cartItem.getQuantity());
-            // Calculate effective price (Bulk logic)
-            BigDecimal price = cartItem.getEffectivePrice();
-            orderItem.setPriceAtPurchase(price);
-
+            orderItem.setProduct(productRepository.getReferenceById(line.getProductId()));
+            orderItem.setQuantity(line.getQuantity());
+            orderItem.setPriceAtPurchase(line.getUnitPrice());
             order.addOrderItem(orderItem);
-
-            totalAmount = totalAmount.add(price.multiply(BigDecimal.valueOf(cartItem.getQuantity())));
-            totalItems += cartItem.getQuantity();
         }
 
+        BigDecimal totalAmount = priced.getTotal();
         order.setTotalAmount(totalAmount);
-        order.setTotalItems(totalItems);
+        order.setTotalItems(priced.getTotalQuantity());
+        order.setCouponCode(priced.getCouponCode());
+        order.setDiscountAmount(priced.getDiscount());
 
         // 4. Create Pending Payment Record
         PaymentDetails payment = new PaymentDetails();
@@ -87,14 +148,18 @@ public class OrderService {
         // 5. Save Order initially to generate an ID
         Order savedOrder = orderRepository.save(order);
 
-        // 6. Generate Razorpay Order
-        try {
-            com.razorpay.Order rzpOrder = razorpayService.createOrder(totalAmount, "rcpt_" + savedOrder.getId());
-            payment.setRazorpayOrderId(rzpOrder.get("id"));
-            // Update the record with the RZP order ID
-            savedOrder = orderRepository.save(savedOrder);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize payment gateway: " + e.getMessage(), e);
+        // Take the stock (all lines or none); a failure below rolls it back with the order.
+        inventoryService.reserve(savedOrder.getId(), priced.getItems());
+
+        // 6. Queue the Razorpay order; PaymentOutbox creates it after commit, so
+        // this transaction never waits on the gateway. Clients poll getPaymentStatus.
+        paymentOutbox.enqueue(savedOrder.getId(), priced.getTotalPaise(), "rcpt_" + savedOrder.getId());
+
+        // 7. Claim the coupon use last: the claim locks the coupon row until commit,
+        // and every checkout with this coupon queues on that lock.
+        if (priced.getCouponCode() != null) {
+            Coupon coupon = couponService.validateCoupon(priced.getCouponCode(), priced.getSubtotalPaise());
+            couponService.redeem(coupon, user, savedOrder.getId(), priced.getDiscountPaise());
         }
 
         // Note: Cart is NO LONGER cleared here. It will be cleared upon successful
@@ -104,13 +169,19 @@ public class OrderService {
     }
 
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return orderRepository.findAllWithDetails();
     }
 
     @Transactional
     public Order updateOrderStatus(Long orderId, String status, String trackingNumber, String carrier) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findWithDetailsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
+        // Statuses are stored upper case; "cancelled" must release like "CANCELLED".
+        status = status.trim().toUpperCase(Locale.ROOT);
+        if ("CANCELLED".equals(status) && !"CANCELLED".equalsIgnoreCase(order.getStatus())) {
+            couponService.release(orderId);
+            inventoryService.release(orderId, true);
+        }
         order.setStatus(status);
         if (trackingNumber != null)
             order.setTrackingNumber(trackingNumber);
@@ -120,35 +191,99 @@ public class OrderService {
     }
 
     @Transactional
-    public boolean verifyPayment(Long orderId, String rzpOrderId, String paymentId, String signature, User user) {
-        boolean isValid = razorpayService.verifySignature(rzpOrderId, paymentId, signature);
+    public Settlement verifyPayment(Long orderId, String rzpOrderId, String paymentId, String signature,
+            User user) {
+        boolean isValid = paymentGateway.verifySignature(rzpOrderId, paymentId, signature);
         if (!isValid) {
-            return false;
+            return Settlement.REJECTED;
         }
 
         Order order = orderRepository.findById(orderId).orElse(null);
         if (order == null || !order.getUser().getId().equals(user.getId())) {
-            return false;
+            return Settlement.REJECTED;
         }
 
-        // Update Payment Details
+        // Update Payment Details; the signature must be for this order's gateway order
+        PaymentDetails payment = order.getPaymentDetails();
+        if (payment != null && !rzpOrderId.equals(payment.getRazorpayOrderId())) {
+            return Settlement.REJECTED;
+        }
+        return settlePayment(order, paymentId, signature);
+    }
+
+    /**
+     * Applies a captured payment to its order. Shared by client-side
+     * verification and the payment webhook; runs in the caller's transaction.
+     *
+     * Only an order still awaiting payment is marked paid. An EXPIRED order
+     * gave its coupon use back when it expired and must claim it again. If
+     * that fails, or the order was cancelled or paid by another payment, the
+     * payment is recorded as REFUND_DUE instead.
+     */
+    public Settlement settlePayment(Order order, String paymentId, String signature) {
+        if (!PAYABLE.contains(order.getStatus())) {
+            PaymentDetails payment = order.getPaymentDetails();
+            if (payment != null && "COMPLETED".equals(payment.getStatus())
+                    && paymentId.equals(payment.getRazorpayPaymentId())) {
+                return Settlement.ALREADY_PAID; // verified by the client and reported by the webhook
+            }
+            return refundDue(order, paymentId);
+        }
+        if ("EXPIRED".equals(order.getStatus()) && order.getCouponCode() != null && !couponService.reclaim(order)) {
+            return refundDue(order, paymentId);
+        }
+        markPaid(order, paymentId, signature);
+        return Settlement.PAID;
+    }
+
+    /**
+     * Whether {@code payment} records captured money. Its payment id is the
+     * one a refund is issued against, so nothing may replace it.
+     */
+    public static boolean isCaptured(PaymentDetails payment) {
+        return payment != null && CAPTURED.contains(payment.getStatus());
+    }
+
+    /**
+     * Flags the payment for a refund. An earlier captured payment on the order
+     * is left as it is; this one is then only in the log.
+     */
+    private Settlement refundDue(Order order, String paymentId) {
+        logger.warn("Payment {} captured for order {} in status {} cannot settle it; refund it",
+                paymentId, order.getId(), order.getStatus());
+        PaymentDetails payment = order.getPaymentDetails();
+        if (payment != null && !isCaptured(payment)) {
+            payment.setStatus("REFUND_DUE");
+            payment.setRazorpayPaymentId(paymentId);
+            orderRepository.save(order);
+        }
+        return Settlement.REFUND_DUE;
+    }
+
+    /**
+     * Records a captured payment: the order becomes PAID, its stock
+     * reservation is committed and the buyer's cart is cleared.
+     */
+    private void markPaid(Order order, String paymentId, String signature) {
         PaymentDetails payment = order.getPaymentDetails();
         if (payment != null) {
             payment.setStatus("COMPLETED");
             payment.setRazorpayPaymentId(paymentId);
-            payment.setRazorpaySignature(signature);
+            if (signature != null) {
+                payment.setRazorpaySignature(signature);
+            }
         }
 
         // Mark order as PAID
         order.setStatus("PAID");
         orderRepository.save(order);
+        inventoryService.commit(order.getId());
 
         // Clear the user's cart now that checkout is securely complete
-        cartRepository.findByUser(user).ifPresent(cart -> {
+        cartRepository.findByUser(order.getUser()).ifPresent(cart -> {
             cart.getItems().clear();
             cartRepository.save(cart);
+            cartPricingEngine.evict(cart.getId());
         });
-
-        return true;
     }
 }
@@ -0,0 +1,23 @@
+package com.mrsdeores.services;
+
+/**
+ * Payment provider used by checkout. {@link RazorpayService} talks to
+ * Razorpay; {@link StubPaymentGateway} answers locally so checkout can be
+ * load-tested offline ({@code app.payments.gateway=stub}).
+ */
+public interface PaymentGateway {
+
+    /**
+     * Creates the provider-side order for {@code amountPaise} and returns its
+     * id. This is a remote call; never make it inside a database transaction.
+     *
+     * Must be idempotent per {@code receipt}: if an order for the receipt
+     * already exists (an earlier attempt timed out, or its outbox lease
+     * expired while the call was in flight) that order's id is returned and
+     * no second order is created.
+     */
+    String createOrder(long amountPaise, String receipt) throws Exception;
+
+    /** Checks the signature the provider returned to the client for a payment. */
+    boolean verifySignature(String orderId, String paymentId, String signature);
+}
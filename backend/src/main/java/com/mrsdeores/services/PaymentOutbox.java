@@ -0,0 +1,315 @@
+package com.mrsdeores.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates gateway orders for checkouts outside the checkout transaction.
+ *
+ * {@link #enqueue} adds a {@code payment_outbox} row in the caller's
+ * transaction and wakes the dispatcher after commit. The dispatcher claims
+ * due rows with {@code FOR UPDATE SKIP LOCKED} (one short statement, so
+ * several instances can share the table) and hands each to a bounded pool of
+ * workers, never claiming more rows than there are idle workers. A worker
+ * calls the {@link PaymentGateway} without holding a connection, then records
+ * the gateway order id in {@code payment_details} in a second short
+ * transaction. Failures are retried with exponential backoff; after
+ * {@code max-attempts} the payment and order are marked failed and the
+ * coupon use and reserved stock are given back. A claim whose worker died is
+ * re-claimed once its lease expires; the attempt count fences off the stale
+ * worker. Gateway order creation is idempotent per receipt, so a retry or a
+ * re-claim reuses the order a stale worker may already have created.
+ */
+@Component
+public class PaymentOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentOutbox.class);
+
+    static final String INSERT = "INSERT INTO payment_outbox (order_id, amount_paise, receipt) VALUES (?, ?, ?)";
+
+    static final String CLAIM = "UPDATE payment_outbox SET status = 'PROCESSING', attempts = attempts + 1, "
+            + "locked_until = LOCALTIMESTAMP + ? * INTERVAL '1 millisecond', updated_at = LOCALTIMESTAMP "
+            + "WHERE id IN (SELECT id FROM payment_outbox "
+            + "WHERE (status = 'PENDING' AND next_attempt_at <= LOCALTIMESTAMP) "
+            + "OR (status = 'PROCESSING' AND locked_until < LOCALTIMESTAMP) "
+            + "ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, order_id, amount_paise, receipt, attempts";
+
+    static final String MARK_DONE = "UPDATE payment_outbox SET status = 'DONE', locked_until = NULL, "
+            + "last_error = NULL, updated_at = LOCALTIMESTAMP WHERE id = ? AND status = 'PROCESSING' AND attempts = ?";
+
+    static final String SET_GATEWAY_ORDER = "UPDATE payment_details SET razorpay_order_id = ? "
+            + "WHERE id = (SELECT payment_details_id FROM orders WHERE id = ?)";
+
+    static final String RETRY = "UPDATE payment_outbox SET status = 'PENDING', locked_until = NULL, "
+            + "last_error = ?, next_attempt_at = LOCALTIMESTAMP + ? * INTERVAL '1 millisecond', "
+            + "updated_at = LOCALTIMESTAMP WHERE id = ? AND status = 'PROCESSING' AND attempts = ?";
+
+    static final String MARK_FAILED = "UPDATE payment_outbox SET status = 'FAILED', locked_until = NULL, "
+            + "last_error = ?, updated_at = LOCALTIMESTAMP WHERE id = ? AND status = 'PROCESSING' AND attempts = ?";
+
+    static final String FAIL_PAYMENT = "UPDATE payment_details SET status = 'FAILED' "
+            + "WHERE id = (SELECT payment_details_id FROM orders WHERE id = ?)";
+
+    static final String FAIL_ORDER = "UPDATE orders SET status = 'PAYMENT_FAILED' "
+            + "WHERE id = ? AND status = 'CREATED'";
+
+    private static final RowMapper<Entry> ENTRY = (rs, i) -> new Entry(rs.getLong("id"), rs.getLong("order_id"),
+            rs.getLong("amount_paise"), rs.getString("receipt"), rs.getInt("attempts"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Value("${app.payments.outbox.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.payments.outbox.workers:8}")
+    private int workers = 8;
+
+    @Value("${app.payments.outbox.lease-ms:60000}")
+    private long leaseMs = 60000;
+
+    @Value("${app.payments.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.payments.outbox.backoff-ms:1000}")
+    private long backoffMs = 1000;
+
+    private ExecutorService pool;
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicBoolean wakeQueued = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong fenced = new AtomicLong();
+    private final AtomicLong gatewayMillis = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        // One extra thread runs the dispatcher when woken by a commit.
+        AtomicInteger threads = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers + 1, workers + 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(workers * 2), runnable -> {
+                    Thread thread = new Thread(runnable, "payment-outbox-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues gateway order creation for {@code orderId}. Call inside the
+     * transaction that creates the order, so both commit or neither does.
+     */
+    public void enqueue(Long orderId, long amountPaise, String receipt) {
+        jdbcTemplate.update(INSERT, orderId, amountPaise, receipt);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    /** Runs a dispatch soon on the pool; a busy pool is caught up by the next scheduled poll. */
+    public void wakeUp() {
+        if (!enabled) {
+            return;
+        }
+        if (!wakeQueued.compareAndSet(false, true)) {
+            return; // a dispatch is already queued and will see this row
+        }
+        try {
+            pool.execute(() -> {
+                wakeQueued.set(false);
+                dispatch();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeQueued.set(false); // the scheduled poll picks the row up
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.payments.outbox.poll-ms:1000}")
+    public void poll() {
+        if (enabled) {
+            dispatch();
+        }
+    }
+
+    /** Claims as many due rows as there are idle workers and starts them. */
+    void dispatch() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (true) {
+                int idle = workers - inFlight.get();
+                if (idle <= 0) {
+                    return;
+                }
+                List<Entry> claimed = jdbcTemplate.query(CLAIM, ENTRY, leaseMs, idle);
+                for (Entry entry : claimed) {
+                    inFlight.incrementAndGet();
+                    try {
+                        pool.execute(() -> process(entry));
+                    } catch (RejectedExecutionException e) {
+                        inFlight.decrementAndGet(); // shutting down; the lease expires and it is re-claimed
+                    }
+                }
+                if (claimed.size() < idle) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Payment outbox dispatch failed: {}", e.getMessage());
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    void process(Entry entry) {
+        try {
+            long started = System.nanoTime();
+            String gatewayOrderId;
+            try {
+                gatewayOrderId = paymentGateway.createOrder(entry.amountPaise, entry.receipt);
+            } finally {
+                gatewayMillis.addAndGet((System.nanoTime() - started) / 1_000_000);
+            }
+            complete(entry, gatewayOrderId);
+        } catch (Exception e) {
+            try {
+                if (entry.attempts >= maxAttempts) {
+                    giveUp(entry, e);
+                } else {
+                    retry(entry, e);
+                }
+            } catch (Exception recordFailure) {
+                // left PROCESSING; re-claimed when the lease expires
+                logger.warn("Could not record payment outbox failure for order {}: {}", entry.orderId,
+                        recordFailure.getMessage());
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        if (enabled) {
+            wakeUp(); // a worker is free again
+        }
+    }
+
+    private void complete(Entry entry, String gatewayOrderId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (jdbcTemplate.update(MARK_DONE, entry.id, entry.attempts) == 0) {
+                fenced.incrementAndGet(); // lease expired and another worker owns the row now
+                return;
+            }
+            jdbcTemplate.update(SET_GATEWAY_ORDER, gatewayOrderId, entry.orderId);
+            created.incrementAndGet();
+        });
+    }
+
+    private void retry(Entry entry, Exception cause) {
+        long delay = backoffMs << Math.min(entry.attempts - 1, 16);
+        jdbcTemplate.update(RETRY, message(cause), delay, entry.id, entry.attempts);
+        retried.incrementAndGet();
+        logger.debug("Payment order for order {} failed (attempt {}), retrying in {} ms: {}", entry.orderId,
+                entry.attempts, delay, cause.getMessage());
+    }
+
+    private void giveUp(Entry entry, Exception cause) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (jdbcTemplate.update(MARK_FAILED, message(cause), entry.id, entry.attempts) == 0) {
+                fenced.incrementAndGet();
+                return;
+            }
+            jdbcTemplate.update(FAIL_PAYMENT, entry.orderId);
+            jdbcTemplate.update(FAIL_ORDER, entry.orderId);
+            couponService.release(entry.orderId);
+            inventoryService.release(entry.orderId, false);
+            failed.incrementAndGet();
+        });
+        logger.warn("Giving up on payment order for order {} after {} attempts: {}", entry.orderId,
+                entry.attempts, cause.getMessage());
+    }
+
+    private static String message(Exception e) {
+        String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    /** Counters since startup, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("workers", workers);
+        stats.put("inFlight", inFlight.get());
+        stats.put("created", created.get());
+        stats.put("retried", retried.get());
+        stats.put("failed", failed.get());
+        stats.put("fenced", fenced.get());
+        stats.put("gatewayMillis", gatewayMillis.get());
+        return stats;
+    }
+
+    static final class Entry {
+        private final long id;
+        private final long orderId;
+        private final long amountPaise;
+        private final String receipt;
+        private final int attempts;
+
+        Entry(long id, long orderId, long amountPaise, String receipt, int attempts) {
+            this.id = id;
+            this.orderId = orderId;
+            this.amountPaise = amountPaise;
+            this.receipt = receipt;
+            this.attempts = attempts;
+        }
+    }
+}
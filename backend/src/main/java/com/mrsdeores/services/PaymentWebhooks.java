@@ -0,0 +1,406 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Order;
+import com.mrsdeores.models.PaymentDetails;
+import com.mrsdeores.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Razorpay payment webhooks, acknowledged at once and applied in the
+ * background. Razorpay retries any delivery that is slow or not 2xx, so the
+ * request path does no I/O: {@link #accept} checks the HMAC-SHA256 signature
+ * with a per-thread {@link Mac} already keyed with the webhook secret, drops
+ * event ids seen recently on this instance, and offers the event to a
+ * bounded queue. A full queue answers 503 so Razorpay delivers it again
+ * later, rather than the event being lost.
+ *
+ * One worker drains the queue in batches of up to {@code batch-size}. Each
+ * batch runs in one transaction: the event ids are recorded in
+ * {@code webhook_events} (a redelivery already recorded, here or on another
+ * instance, is skipped), the orders behind the batch are loaded with one
+ * query, and {@code payment.captured} / {@code payment.failed} are applied
+ * in arrival order. If a batch fails its events are retried one at a time,
+ * so one bad event cannot hold back the others.
+ *
+ * An event acknowledged but not yet applied is lost if the instance dies;
+ * the client-side verification and the unpaid-order sweep still settle the
+ * order, so the webhook is the safety net rather than the only path.
+ */
+@Component
+public class PaymentWebhooks {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhooks.class);
+
+    public static final String SIGNATURE_HEADER = "X-Razorpay-Signature";
+    public static final String EVENT_ID_HEADER = "X-Razorpay-Event-Id";
+
+    private static final int MAX_EVENT_ID_LENGTH = 100;
+
+    static final String RECORD_EVENT = "INSERT INTO webhook_events (event_id, event) VALUES (?, ?) "
+            + "ON CONFLICT (event_id) DO NOTHING";
+
+    private static final String PURGE_BATCH = "DELETE FROM webhook_events WHERE event_id IN ("
+            + "SELECT event_id FROM webhook_events WHERE processed_at < LOCALTIMESTAMP - ? * INTERVAL '1 day' LIMIT ?)";
+
+    public enum Result {
+        ACCEPTED, DUPLICATE, INVALID_SIGNATURE, BUSY
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${razorpay.webhook.secret:}")
+    private String webhookSecret = "";
+
+    @Value("${app.payments.webhooks.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${app.payments.webhooks.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.payments.webhooks.recent-event-ids:50000}")
+    private int recentEventIds = 50000;
+
+    @Value("${app.payments.webhooks.retention-days:7}")
+    private int retentionDays = 7;
+
+    private ThreadLocal<Mac> macs;
+    private BlockingQueue<Event> queue;
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private final Map<String, Boolean> recent = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > recentEventIds;
+        }
+    };
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong invalidSignatures = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+    private final AtomicLong redelivered = new AtomicLong();
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong ignored = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        init();
+        running = true;
+        worker = new Thread(this::work, "payment-webhooks");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** The signing key and the queue, without the worker (tests apply batches themselves). */
+    void init() {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            logger.warn("razorpay.webhook.secret is not set; payment webhooks will be rejected");
+        } else {
+            SecretKeySpec key = new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+            // Keyed once per thread; doFinal resets it for the next request.
+            macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance("HmacSHA256");
+                    mac.init(key);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("HmacSHA256 unavailable", e);
+                }
+            });
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /** Stops taking new events and applies what is already queued. */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopping = true;
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Verifies and queues one delivery; never touches the database. The
+     * event id header is optional: without it the signature stands in, as it
+     * is unique to the payload.
+     */
+    public Result accept(byte[] payload, String signature, String eventId) {
+        if (!verify(payload, signature)) {
+            invalidSignatures.incrementAndGet();
+            return Result.INVALID_SIGNATURE;
+        }
+        String id = eventId != null && !eventId.isBlank() && eventId.length() <= MAX_EVENT_ID_LENGTH
+                ? eventId : signature.toLowerCase(Locale.ROOT);
+        synchronized (recent) {
+            if (recent.putIfAbsent(id, Boolean.TRUE) != null) {
+                duplicates.incrementAndGet();
+                return Result.DUPLICATE;
+            }
+        }
+        if (stopping || !queue.offer(new Event(id, payload))) {
+            synchronized (recent) {
+                recent.remove(id); // not queued; the redelivery must get through
+            }
+            rejectedBusy.incrementAndGet();
+            return Result.BUSY;
+        }
+        accepted.incrementAndGet();
+        return Result.ACCEPTED;
+    }
+
+    boolean verify(byte[] payload, String signature) {
+        if (macs == null || payload == null || signature == null) {
+            return false;
+        }
+        byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(macs.get().doFinal(payload), expected);
+    }
+
+    private void work() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue; // stopping; drain what is left
+            }
+            queue.drainTo(batch, batchSize - 1);
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /** Applies a batch in one transaction, falling back to one event per transaction. */
+    void process(List<Event> batch) {
+        batches.incrementAndGet();
+        Tally tally = new Tally();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> apply(batch, tally));
+            // Counted only once committed, so a batch retried event by event is not counted twice.
+            redelivered.addAndGet(tally.redelivered);
+            captured.addAndGet(tally.captured);
+            failed.addAndGet(tally.failed);
+            ignored.addAndGet(tally.ignored);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                errors.incrementAndGet();
+                logger.error("Could not apply payment webhook {}: {}", batch.get(0).id, e.getMessage());
+                return;
+            }
+            for (Event event : batch) {
+                process(List.of(event));
+            }
+        }
+    }
+
+    private void apply(List<Event> batch, Tally tally) {
+        List<Parsed> events = new ArrayList<>(batch.size());
+        for (Event event : batch) {
+            events.add(parse(event));
+        }
+
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (Parsed event : events) {
+            rows.add(new Object[] { event.id, event.type });
+        }
+        int[] recorded = jdbcTemplate.batchUpdate(RECORD_EVENT, rows);
+
+        List<Parsed> fresh = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            if (recorded[i] == 0) {
+                tally.redelivered++; // applied before, here or on another instance
+            } else if (events.get(i).razorpayOrderId == null) {
+                tally.ignored++;
+            } else {
+                fresh.add(events.get(i));
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+
+        Map<String, Order> orders = orderRepository.findByPaymentDetailsRazorpayOrderIdIn(
+                fresh.stream().map(event -> event.razorpayOrderId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(order -> order.getPaymentDetails().getRazorpayOrderId(),
+                        Function.identity(), (a, b) -> a));
+        for (Parsed event : fresh) {
+            Order order = orders.get(event.razorpayOrderId);
+            if (order == null) {
+                tally.ignored++;
+                logger.warn("Payment webhook {} for unknown gateway order {}", event.id, event.razorpayOrderId);
+            } else if ("payment.captured".equals(event.type)) {
+                applyCaptured(order, event, tally);
+            } else {
+                applyFailed(order, event, tally);
+            }
+        }
+    }
+
+    private void applyCaptured(Order order, Parsed event, Tally tally) {
+        if (orderService.settlePayment(order, event.paymentId, null) == OrderService.Settlement.PAID) {
+            tally.captured++;
+        } else {
+            tally.ignored++; // already paid, or flagged for a refund
+        }
+    }
+
+    /** Records a failed attempt; the buyer may still retry, so the stock stays reserved until it expires. */
+    private void applyFailed(Order order, Parsed event, Tally tally) {
+        PaymentDetails payment = order.getPaymentDetails();
+        if (OrderService.isCaptured(payment)) {
+            tally.ignored++; // arrived after a later attempt was captured; keep that payment's id
+            return;
+        }
+        payment.setStatus("FAILED");
+        payment.setRazorpayPaymentId(event.paymentId);
+        if ("CREATED".equals(order.getStatus())) {
+            order.setStatus("PAYMENT_FAILED");
+        }
+        orderRepository.save(order);
+        tally.failed++;
+    }
+
+    /** Events other than payment.captured / payment.failed parse with no gateway order and are only recorded. */
+    private static Parsed parse(Event event) {
+        try {
+            JSONObject json = new JSONObject(new String(event.payload, StandardCharsets.UTF_8));
+            String type = json.optString("event", "unknown");
+            if (!"payment.captured".equals(type) && !"payment.failed".equals(type)) {
+                return new Parsed(event.id, truncate(type), null, null);
+            }
+            JSONObject payment = json.getJSONObject("payload").getJSONObject("payment").getJSONObject("entity");
+            return new Parsed(event.id, type, payment.optString("order_id", null), payment.optString("id", null));
+        } catch (JSONException e) {
+            logger.warn("Malformed payment webhook {}: {}", event.id, e.getMessage());
+            return new Parsed(event.id, "malformed", null, null);
+        }
+    }
+
+    private static String truncate(String type) {
+        return type.length() <= 50 ? type : type.substring(0, 50);
+    }
+
+    /** Deletes recorded event ids past the retention window, in batches. */
+    @Scheduled(cron = "${app.payments.webhooks.purge-cron:0 50 * * * *}")
+    public void purgeRecorded() {
+        long purged = 0;
+        try {
+            for (int i = 0; i < 100; i++) {
+                int deleted = jdbcTemplate.update(PURGE_BATCH, retentionDays, 1000);
+                purged += deleted;
+                if (deleted < 1000) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Webhook event purge stopped after {} rows: {}", purged, e.getMessage());
+        }
+        if (purged > 0) {
+            logger.info("Purged {} recorded webhook events", purged);
+        }
+    }
+
+    /** Counters since startup, for the admin stats endpoint. */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("configured", macs != null);
+        stats.put("pending", queue.size());
+        stats.put("capacity", queueCapacity);
+        stats.put("accepted", accepted.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("redelivered", redelivered.get());
+        stats.put("invalidSignatures", invalidSignatures.get());
+        stats.put("rejectedBusy", rejectedBusy.get());
+        stats.put("captured", captured.get());
+        stats.put("failed", failed.get());
+        stats.put("ignored", ignored.get());
+        stats.put("errors", errors.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+
+    static final class Event {
+        private final String id;
+        private final byte[] payload;
+
+        Event(String id, byte[] payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Tally {
+        private int redelivered;
+        private int captured;
+        private int failed;
+        private int ignored;
+    }
+
+    private static final class Parsed {
+        private final String id;
+        private final String type;
+        private final String razorpayOrderId;
+        private final String paymentId;
+
+        private Parsed(String id, String type, String razorpayOrderId, String paymentId) {
+            this.id = id;
+            this.type = type;
+            this.razorpayOrderId = razorpayOrderId;
+            this.paymentId = paymentId;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position for product listings: the (sort value, id) of the
+ * last item on a page, plus the ordering it was issued for so a cursor cannot
+ * be replayed against a different sort.
+ */
+public final class ProductCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final ProductSortKey sortKey;
+    private final boolean descending;
+    private final Long id;
+    private final Comparable<?> value;
+
+    private ProductCursor(ProductSortKey sortKey, boolean descending, Long id, Comparable<?> value) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        this.id = id;
+        this.value = value;
+    }
+
+    public static ProductCursor after(Product last, ProductSortKey sortKey, boolean descending) {
+        return new ProductCursor(sortKey, descending, last.getId(), sortKey.valueOf(last));
+    }
+
+    /** Cursor after the keyset position {@code (value, id)}. */
+    public static ProductCursor at(ProductSortKey sortKey, boolean descending, Long id, Comparable<?> value) {
+        return new ProductCursor(sortKey, descending, id, value);
+    }
+
+    public ProductSortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Comparable<?> getValue() {
+        return value;
+    }
+
+    public String encode() {
+        // The value goes last so it may contain the separator.
+        String raw = sortKey.getProperty() + SEPARATOR + (descending ? "d" : "a") + SEPARATOR + id + SEPARATOR
+                + (value == null ? "n" : "v" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed or was issued
+     *                                  for a different ordering
+     */
+    public static ProductCursor decode(String cursor, ProductSortKey sortKey, boolean descending) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || !sortKey.getProperty().equals(parts[0])
+                    || descending != "d".equals(parts[1])) {
+                throw new IllegalArgumentException("Cursor does not match the requested ordering");
+            }
+            Long id = Long.valueOf(parts[2]);
+            Comparable<?> value = parts[3].startsWith("v") ? sortKey.parseValue(parts[3].substring(1)) : null;
+            return new ProductCursor(sortKey, descending, id, value);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.request.ProductFilter;
+import com.mrsdeores.payload.response.FacetCounts;
+import com.mrsdeores.payload.response.FacetCounts.FacetValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Precomputed facet membership over a fixed product set. Every product gets
+ * an ordinal; every facet value is a {@link BitSet} of ordinals, so a filter
+ * is a handful of word-wise ANDs and a count is a cardinality, with no
+ * per-product work at query time. Price ranges are cut from a price-sorted
+ * ordinal array by binary search; the fixed facet bands are cut once at build
+ * time.
+ */
+public final class ProductFacets {
+
+    private static final BigDecimal[] PRICE_BOUNDS = { new BigDecimal("100"), new BigDecimal("250"),
+            new BigDecimal("500"), new BigDecimal("1000") };
+    private static final int MAX_RATING = 5;
+
+    private enum Dimension {
+        CATEGORY, PRICE, RATING, STOCK, BULK
+    }
+
+    private final int size;
+    private final Map<Long, Integer> ordinals;
+    private final Map<Integer, BitSet> byCategory;
+    private final Map<Integer, String> categoryNames;
+    private final int[] byPrice;
+    private final BigDecimal[] sortedPrices;
+    private final int pricedFrom;
+    private final BitSet[] priceBands;
+    private final BitSet[] ratingAtLeast;
+    private final BitSet inStock;
+    private final BitSet bulkAvailable;
+
+    private ProductFacets(int size, Map<Long, Integer> ordinals, Map<Integer, BitSet> byCategory,
+            Map<Integer, String> categoryNames, int[] byPrice, BigDecimal[] sortedPrices, int pricedFrom,
+            BitSet[] ratingAtLeast, BitSet inStock, BitSet bulkAvailable) {
+        this.size = size;
+        this.ordinals = ordinals;
+        this.byCategory = byCategory;
+        this.categoryNames = categoryNames;
+        this.byPrice = byPrice;
+        this.sortedPrices = sortedPrices;
+        this.pricedFrom = pricedFrom;
+        this.priceBands = new BitSet[PRICE_BOUNDS.length + 1];
+        for (int band = 0; band <= PRICE_BOUNDS.length; band++) {
+            priceBands[band] = priceRange(bandMin(band), bandMax(band), false);
+        }
+        this.ratingAtLeast = ratingAtLeast;
+        this.inStock = inStock;
+        this.bulkAvailable = bulkAvailable;
+    }
+
+    public static ProductFacets build(List<Product> products) {
+        int size = products.size();
+        Map<Long, Integer> ordinals = new HashMap<>(size * 2);
+        Map<Integer, BitSet> byCategory = new HashMap<>();
+        Map<Integer, String> categoryNames = new HashMap<>();
+        BitSet[] ratingAtLeast = new BitSet[MAX_RATING + 1];
+        for (int r = 0; r <= MAX_RATING; r++) {
+            ratingAtLeast[r] = new BitSet(size);
+        }
+        BitSet inStock = new BitSet(size);
+        BitSet bulkAvailable = new BitSet(size);
+
+        for (int i = 0; i < size; i++) {
+            Product product = products.get(i);
+            ordinals.put(product.getId(), i);
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(product.getCategory().getId(), id -> new BitSet(size)).set(i);
+                categoryNames.put(product.getCategory().getId(), product.getCategory().getName());
+            }
+            if (product.getAverageRating() != null) {
+                for (int r = 0; r <= MAX_RATING && product.getAverageRating() >= r; r++) {
+                    ratingAtLeast[r].set(i);
+                }
+            }
+            if (product.getStockQuantity() != null && product.getStockQuantity() > 0) {
+                inStock.set(i);
+            }
+            if (product.getBulkPrice() != null) {
+                bulkAvailable.set(i);
+            }
+        }
+
+        // Ordinals by selling price, unpriced ones first and excluded from ranges.
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparing((Integer i) -> products.get(i).getSellingPrice(),
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        int[] byPrice = new int[size];
+        BigDecimal[] sortedPrices = new BigDecimal[size];
+        int pricedFrom = 0;
+        for (int i = 0; i < size; i++) {
+            byPrice[i] = boxed[i];
+            sortedPrices[i] = products.get(boxed[i]).getSellingPrice();
+            if (sortedPrices[i] == null) {
+                pricedFrom = i + 1;
+            }
+        }
+
+        return new ProductFacets(size, Collections.unmodifiableMap(ordinals), Collections.unmodifiableMap(byCategory),
+                Collections.unmodifiableMap(categoryNames), byPrice, sortedPrices, pricedFrom, ratingAtLeast,
+                inStock, bulkAvailable);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** A fresh set containing every product. */
+    public BitSet all() {
+        BitSet all = new BitSet(size);
+        all.set(0, size);
+        return all;
+    }
+
+    /** A fresh set containing the given products; unknown ids are ignored. */
+    public BitSet of(Iterable<Long> productIds) {
+        BitSet set = new BitSet(size);
+        for (Long id : productIds) {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                set.set(ordinal);
+            }
+        }
+        return set;
+    }
+
+    public boolean contains(BitSet set, Long productId) {
+        Integer ordinal = ordinals.get(productId);
+        return ordinal != null && set.get(ordinal);
+    }
+
+    /** Products matching every criterion of {@code filter}; a fresh set. */
+    public BitSet match(ProductFilter filter) {
+        return match(filter, null);
+    }
+
+    /**
+     * Counts for each facet value within {@code universe} (all products, or a
+     * search's matches), honouring every filter except the facet's own.
+     */
+    public FacetCounts counts(BitSet universe, ProductFilter filter) {
+        BitSet categoryBase = within(universe, match(filter, Dimension.CATEGORY));
+        Map<String, FacetValue> byName = new TreeMap<>();
+        byCategory.forEach((categoryId, members) -> {
+            int count = intersectionSize(categoryBase, members);
+            if (count > 0) {
+                String name = categoryNames.get(categoryId);
+                byName.put(name + "\u0000" + categoryId, new FacetValue(String.valueOf(categoryId), name, count));
+            }
+        });
+
+        BitSet priceBase = within(universe, match(filter, Dimension.PRICE));
+        List<FacetValue> priceRanges = new ArrayList<>();
+        for (int band = 0; band <= PRICE_BOUNDS.length; band++) {
+            BigDecimal min = bandMin(band);
+            BigDecimal max = bandMax(band);
+            int count = intersectionSize(priceBase, priceBands[band]);
+            priceRanges.add(new FacetValue((min == null ? "" : min.toPlainString()) + "-"
+                    + (max == null ? "" : max.toPlainString()), priceLabel(min, max), count));
+        }
+
+        BitSet ratingBase = within(universe, match(filter, Dimension.RATING));
+        List<FacetValue> ratings = new ArrayList<>();
+        for (int r = MAX_RATING - 1; r >= 1; r--) {
+            ratings.add(new FacetValue(String.valueOf(r), r + "★ & up", intersectionSize(ratingBase, ratingAtLeast[r])));
+        }
+
+        int stockCount = intersectionSize(within(universe, match(filter, Dimension.STOCK)), inStock);
+        int bulkCount = intersectionSize(within(universe, match(filter, Dimension.BULK)), bulkAvailable);
+        return new FacetCounts(new ArrayList<>(byName.values()), priceRanges, ratings, stockCount, bulkCount);
+    }
+
+    /**
+     * Whether {@code product} meets every criterion of {@code filter}: the
+     * per-product form of {@link #match(ProductFilter)}, for product lists
+     * that have no facets built over them.
+     */
+    public static boolean matches(Product product, ProductFilter filter) {
+        if (filter.getCategoryId() != null
+                && (product.getCategory() == null || !filter.getCategoryId().equals(product.getCategory().getId()))) {
+            return false;
+        }
+        BigDecimal price = product.getSellingPrice();
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            if (price == null || (filter.getMinPrice() != null && price.compareTo(filter.getMinPrice()) < 0)
+                    || (filter.getMaxPrice() != null && price.compareTo(filter.getMaxPrice()) > 0)) {
+                return false;
+            }
+        }
+        if (filter.getMinRating() != null) {
+            int rating = Math.max(0, Math.min(MAX_RATING, filter.getMinRating()));
+            if (product.getAverageRating() == null || product.getAverageRating() < rating) {
+                return false;
+            }
+        }
+        if (Boolean.TRUE.equals(filter.getInStock())
+                && (product.getStockQuantity() == null || product.getStockQuantity() <= 0)) {
+            return false;
+        }
+        return !Boolean.TRUE.equals(filter.getBulkAvailable()) || product.getBulkPrice() != null;
+    }
+
+    private BitSet match(ProductFilter filter, Dimension skip) {
+        BitSet result = all();
+        if (skip != Dimension.CATEGORY && filter.getCategoryId() != null) {
+            BitSet members = byCategory.get(filter.getCategoryId());
+            if (members == null) {
+                return new BitSet(size);
+            }
+            result.and(members);
+        }
+        if (skip != Dimension.PRICE && (filter.getMinPrice() != null || filter.getMaxPrice() != null)) {
+            result.and(priceRange(filter.getMinPrice(), filter.getMaxPrice(), true));
+        }
+        if (skip != Dimension.RATING && filter.getMinRating() != null) {
+            int rating = Math.max(0, Math.min(MAX_RATING, filter.getMinRating()));
+            result.and(ratingAtLeast[rating]);
+        }
+        if (skip != Dimension.STOCK && Boolean.TRUE.equals(filter.getInStock())) {
+            result.and(inStock);
+        }
+        if (skip != Dimension.BULK && Boolean.TRUE.equals(filter.getBulkAvailable())) {
+            result.and(bulkAvailable);
+        }
+        return result;
+    }
+
+    /** Products priced in [min, max] (or [min, max) when the max is exclusive); null bounds are open. */
+    private BitSet priceRange(BigDecimal min, BigDecimal max, boolean maxInclusive) {
+        int from = min == null ? pricedFrom : firstAtLeast(min, false);
+        int to = max == null ? size : firstAtLeast(max, maxInclusive);
+        BitSet range = new BitSet(size);
+        for (int i = from; i < to; i++) {
+            range.set(byPrice[i]);
+        }
+        return range;
+    }
+
+    /** First index in price order whose price is >= value (> value when {@code strictly}). */
+    private int firstAtLeast(BigDecimal value, boolean strictly) {
+        int low = pricedFrom;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = sortedPrices[mid].compareTo(value);
+            if (cmp < 0 || (strictly && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static BigDecimal bandMin(int band) {
+        return band == 0 ? null : PRICE_BOUNDS[band - 1];
+    }
+
+    private static BigDecimal bandMax(int band) {
+        return band == PRICE_BOUNDS.length ? null : PRICE_BOUNDS[band];
+    }
+
+    private static String priceLabel(BigDecimal min, BigDecimal max) {
+        if (min == null) {
+            return "Under ₹" + max.toPlainString();
+        }
+        if (max == null) {
+            return "₹" + min.toPlainString() + " & above";
+        }
+        return "₹" + min.toPlainString() + " – ₹" + max.toPlainString();
+    }
+
+    private static BitSet within(BitSet universe, BitSet set) {
+        set.and(universe);
+        return set;
+    }
+
+    private static int intersectionSize(BitSet a, BitSet b) {
+        BitSet copy = (BitSet) a.clone();
+        copy.and(b);
+        return copy.cardinality();
+    }
+}
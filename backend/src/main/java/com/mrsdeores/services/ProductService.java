@@ -1,13 +1,26 @@
 package com.mrsdeores.services;
 
 import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.request.ProductFilter;
+import com.mrsdeores.payload.response.FacetCounts;
+import com.mrsdeores.payload.response.CursorPage;
+import com.mrsdeores.payload.response.FacetedResult;
+import com.mrsdeores.payload.response.ProductCard;
 import com.mrsdeores.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -15,14 +28,174 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
-    public List<Product> getAllActiveProducts(Sort sort) {
-        return productRepository.findAll(sort).stream()
-                .filter(Product::getIsActive)
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Value("${app.catalog.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    public List<Product> getAllActiveProducts(ProductSortKey sortKey, boolean descending) {
+        if (snapshotEnabled) {
+            return catalogSnapshotService.current().products(null, sortKey, descending);
+        }
+        return productRepository.findByIsActiveTrue(sortKey.toSort(descending));
+    }
+
+    public List<Product> getProductsByCategory(Integer categoryId, ProductSortKey sortKey, boolean descending) {
+        if (snapshotEnabled) {
+            return catalogSnapshotService.current().products(categoryId, sortKey, descending);
+        }
+        return productRepository.findByCategoryIdAndIsActiveTrue(categoryId, sortKey.toSort(descending));
+    }
+
+    public List<ProductCard> getProductCards(Integer categoryId, ProductSortKey sortKey, boolean descending) {
+        if (snapshotEnabled) {
+            return catalogSnapshotService.current().cards(categoryId, sortKey, descending);
+        }
+        return categoryId == null
+                ? productRepository.findActiveCards(sortKey.toSort(descending))
+                : productRepository.findActiveCardsByCategory(categoryId, sortKey.toSort(descending));
+    }
+
+    /**
+     * Card view of {@link #getProductPage}; the cursor format is shared. Without
+     * the snapshot the page comes straight from the card projection.
+     */
+    public CursorPage<ProductCard> getProductCardPage(Integer categoryId, ProductSortKey sortKey, boolean descending,
+            String cursor, int limit) {
+        if (snapshotEnabled) {
+            CursorPage<Product> page = getProductPage(categoryId, sortKey, descending, cursor, limit);
+            return new CursorPage<>(toCards(page.getItems()), page.getNextCursor());
+        }
+        ProductCursor after = cursor == null || cursor.isBlank() ? null
+                : ProductCursor.decode(cursor, sortKey, descending);
+        KeysetScrollPosition position = after == null ? ScrollPosition.keyset() : keysetPosition(after);
+        Window<ProductCard> window = productRepository.scrollActiveCards(categoryId, position,
+                sortKey.toSort(descending), Limit.of(limit));
+
+        String nextCursor = null;
+        if (window.hasNext() && !window.isEmpty()) {
+            Map<String, Object> last = ((KeysetScrollPosition) window.positionAt(window.size() - 1)).getKeys();
+            nextCursor = ProductCursor.at(sortKey, descending, (Long) last.get("id"),
+                    (Comparable<?>) last.get(sortKey.getProperty())).encode();
+        }
+        return new CursorPage<>(window.getContent(), nextCursor);
+    }
+
+    private List<ProductCard> toCards(List<Product> products) {
+        CatalogSnapshot snapshot = snapshotEnabled ? catalogSnapshotService.current() : null;
+        return products.stream()
+                .map(product -> {
+                    ProductCard card = snapshot != null ? snapshot.getCard(product.getId()) : null;
+                    return card != null ? card : ProductCard.from(product);
+                })
                 .toList();
     }
 
-    public List<Product> getProductsByCategory(Integer categoryId, Sort sort) {
-        return productRepository.findByCategoryIdAndIsActiveTrue(categoryId, sort);
+    /**
+     * Keyset-paginated listing over (sort value, id). {@code categoryId} may be
+     * null; {@code cursor} is the {@code nextCursor} of the previous page.
+     *
+     * @throws IllegalArgumentException if the cursor is invalid for this ordering
+     */
+    public CursorPage<Product> getProductPage(Integer categoryId, ProductSortKey sortKey, boolean descending,
+            String cursor, int limit) {
+        ProductCursor after = cursor == null || cursor.isBlank() ? null
+                : ProductCursor.decode(cursor, sortKey, descending);
+
+        List<Product> items;
+        boolean hasNext;
+        if (snapshotEnabled) {
+            List<Product> window = catalogSnapshotService.current()
+                    .page(categoryId, sortKey, descending, after, limit + 1);
+            hasNext = window.size() > limit;
+            items = hasNext ? window.subList(0, limit) : window;
+        } else {
+            ScrollPosition position = after == null ? ScrollPosition.keyset() : keysetPosition(after);
+            Window<Product> window = categoryId == null
+                    ? productRepository.findByIsActiveTrue(position, sortKey.toSort(descending), Limit.of(limit))
+                    : productRepository.findByCategoryIdAndIsActiveTrue(categoryId, position,
+                            sortKey.toSort(descending), Limit.of(limit));
+            items = window.getContent();
+            hasNext = window.hasNext();
+        }
+
+        String nextCursor = hasNext && !items.isEmpty()
+                ? ProductCursor.after(items.get(items.size() - 1), sortKey, descending).encode()
+                : null;
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * Filtered listing served from the snapshot's {@link ProductFacets}. With
+     * a {@code limit} the result is a keyset page like {@link #getProductPage};
+     * facet counts are included when {@code withFacets} is set.
+     *
+     * @throws IllegalArgumentException if the cursor is invalid for this ordering
+     */
+    public FacetedResult<Product> filterProducts(ProductFilter filter, ProductSortKey sortKey, boolean descending,
+            String cursor, Integer limit, boolean withFacets) {
+        ProductCursor after = cursor == null || cursor.isBlank() ? null
+                : ProductCursor.decode(cursor, sortKey, descending);
+        int fetch = limit == null ? Integer.MAX_VALUE : limit + 1;
+
+        List<Product> window;
+        int total;
+        FacetCounts counts = null;
+        if (snapshotEnabled) {
+            CatalogSnapshot snapshot = catalogSnapshotService.current();
+            ProductFacets facets = snapshot.getFacets();
+            BitSet mask = facets.match(filter);
+            window = snapshot.page(sortKey, descending, after, fetch, mask);
+            total = mask.cardinality();
+            if (withFacets) {
+                counts = facets.counts(facets.all(), filter);
+            }
+        } else {
+            // No snapshot to hold facets: filter product by product, and only
+            // build facets over this load when the counts are asked for.
+            List<Product> ordered = productRepository.findByIsActiveTrue(sortKey.toSort(descending));
+            int direction = descending ? -1 : 1;
+            window = new ArrayList<>();
+            total = 0;
+            for (Product product : ordered) {
+                if (!ProductFacets.matches(product, filter)) {
+                    continue;
+                }
+                total++;
+                boolean pastCursor = after == null
+                        || direction * sortKey.compare(product, after.getValue(), after.getId()) > 0;
+                if (pastCursor && window.size() < fetch) {
+                    window.add(product);
+                }
+            }
+            if (withFacets) {
+                ProductFacets facets = ProductFacets.build(ordered);
+                counts = facets.counts(facets.all(), filter);
+            }
+        }
+
+        boolean hasNext = limit != null && window.size() > limit;
+        List<Product> items = hasNext ? window.subList(0, limit) : window;
+        String nextCursor = hasNext
+                ? ProductCursor.after(items.get(items.size() - 1), sortKey, descending).encode()
+                : null;
+        return new FacetedResult<>(items, nextCursor, total, counts);
+    }
+
+    /** Card view of {@link #filterProducts}. */
+    public FacetedResult<ProductCard> filterProductCards(ProductFilter filter, ProductSortKey sortKey,
+            boolean descending, String cursor, Integer limit, boolean withFacets) {
+        FacetedResult<Product> result = filterProducts(filter, sortKey, descending, cursor, limit, withFacets);
+        return new FacetedResult<>(toCards(result.getItems()), result.getNextCursor(), result.getTotal(),
+                result.getFacets());
+    }
+
+    private static KeysetScrollPosition keysetPosition(ProductCursor cursor) {
+        Map<String, Object> keys = new HashMap<>();
+        keys.put(cursor.getSortKey().getProperty(), cursor.getValue());
+        keys.put("id", cursor.getId());
+        return ScrollPosition.forward(keys);
     }
 
     public List<Product> getRelatedProducts(Long productId, Integer categoryId, int limit) {
@@ -30,17 +203,20 @@ public class ProductService {
     }
 
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        return productRepository.findWithDetailsById(id);
     }
 
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        catalogSnapshotService.invalidate();
+        return saved;
     }
 
     public void deleteProduct(Long id) {
         productRepository.findById(id).ifPresent(product -> {
             product.setIsActive(false);
             productRepository.save(product);
+            catalogSnapshotService.invalidate();
         });
     }
 }
@@ -0,0 +1,96 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Product;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Whitelisted sort fields for product listings. Every key breaks ties on the
+ * product id so the resulting order is total and stable across requests.
+ * Null values sort after all others ascending (and so before them
+ * descending), in memory and in SQL alike.
+ */
+public enum ProductSortKey {
+    ID("id", Product::getId, Long::valueOf),
+    NAME("name", Product::getName, value -> value),
+    SELLING_PRICE("sellingPrice", Product::getSellingPrice, BigDecimal::new),
+    MRP("mrp", Product::getMrp, BigDecimal::new),
+    AVERAGE_RATING("averageRating", Product::getAverageRating, Double::valueOf),
+    CREATED_AT("createdAt", Product::getCreatedAt, LocalDateTime::parse);
+
+    private final String property;
+    private final Function<Product, Comparable<?>> extractor;
+    private final Function<String, Comparable<?>> parser;
+
+    ProductSortKey(String property, Function<Product, Comparable<?>> extractor,
+            Function<String, Comparable<?>> parser) {
+        this.property = property;
+        this.extractor = extractor;
+        this.parser = parser;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Comparable<?> valueOf(Product product) {
+        return extractor.apply(product);
+    }
+
+    /** Parses a value previously rendered with {@code toString()}. */
+    public Comparable<?> parseValue(String text) {
+        return parser.apply(text);
+    }
+
+    /** Ascending comparison on (value, id), nulls last. */
+    public int compare(Product a, Product b) {
+        return compare(a, valueOf(b), b.getId());
+    }
+
+    /** Ascending comparison of a product against a (value, id) keyset position. */
+    public int compare(Product product, Comparable<?> value, Long id) {
+        int result = compareValues(valueOf(product), value);
+        return result != 0 ? result : product.getId().compareTo(id);
+    }
+
+    public Sort toSort(boolean descending) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        if (this == ID) {
+            return Sort.by(direction, "id");
+        }
+        // Spelled out rather than left to the database default, which differs between H2 and PostgreSQL.
+        Sort.NullHandling nulls = descending ? Sort.NullHandling.NULLS_FIRST : Sort.NullHandling.NULLS_LAST;
+        return Sort.by(new Sort.Order(direction, property, nulls), new Sort.Order(direction, "id"));
+    }
+
+    /**
+     * Resolves the {@code sortBy} request parameter (e.g. "sellingPrice").
+     *
+     * @throws IllegalArgumentException if the field is not whitelisted
+     */
+    public static ProductSortKey fromProperty(String property) {
+        if (property == null || property.isBlank()) {
+            return ID;
+        }
+        for (ProductSortKey key : values()) {
+            if (key.property.equalsIgnoreCase(property.trim())) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort field: " + property);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compareValues(Comparable a, Comparable b) {
+        if (a == b)
+            return 0;
+        if (a == null)
+            return 1;
+        if (b == null)
+            return -1;
+        return a.compareTo(b);
+    }
+}
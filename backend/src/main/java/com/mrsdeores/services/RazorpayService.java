@@ -1,18 +1,20 @@
 package com.mrsdeores.services;
 
+import com.mrsdeores.pricing.Money;
 import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
 import com.razorpay.Utils;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.math.BigDecimal;
 
 @Service
-public class RazorpayService {
+@ConditionalOnProperty(name = "app.payments.gateway", havingValue = "razorpay", matchIfMissing = true)
+public class RazorpayService implements PaymentGateway {
 
     @Value("${razorpay.key.id}")
     private String keyId;
@@ -29,31 +31,40 @@ public class RazorpayService {
     }
 
     /**
-     * Creates an order seamlessly via Razorpay.
+     * Creates an order seamlessly via Razorpay, or returns the one already
+     * created for {@code receipt} (see {@link PaymentGateway#createOrder}).
      * 
-     * @param amount  The total amount in rupees. The method automatically
-     *                multiplies by 100 for paise.
-     * @param receipt The local application's order id or receipt reference.
-     * @return The Razorpay Order object which contains the `razorpay_order_id`
-     *         string.
+     * @param amountPaise The total amount in paise (see
+     *                    {@link Money#toPaise(java.math.BigDecimal)}).
+     * @param receipt     The local application's order id or receipt reference.
+     * @return The Razorpay order id (`razorpay_order_id`).
      */
-    public Order createOrder(BigDecimal amount, String receipt) throws RazorpayException {
-        JSONObject orderRequest = new JSONObject();
-        // Convert to paise (multiplied by 100)
-        long amountInPaise = amount.multiply(new BigDecimal("100")).longValue();
+    @Override
+    public String createOrder(long amountPaise, String receipt) throws RazorpayException {
+        // Razorpay has no idempotency key for orders; look the receipt up first.
+        JSONObject lookup = new JSONObject();
+        lookup.put("receipt", receipt);
+        for (Order existing : client.orders.fetchAll(lookup)) {
+            if (existing.toJson().optLong("amount") == amountPaise) {
+                return existing.get("id");
+            }
+        }
 
-        orderRequest.put("amount", amountInPaise);
+        JSONObject orderRequest = new JSONObject();
+        orderRequest.put("amount", amountPaise);
         orderRequest.put("currency", "INR");
         orderRequest.put("receipt", receipt);
 
         // This makes the remote curl to api.razorpay.com/v1/orders
-        return client.orders.create(orderRequest);
+        Order order = client.orders.create(orderRequest);
+        return order.get("id");
     }
 
     /**
      * Verifies the HMAC-SHA256 signature returned from Frontend callbacks or
      * Webhook payloads
      */
+    @Override
     public boolean verifySignature(String orderId, String paymentId, String signature) {
         try {
             JSONObject options = new JSONObject();
@@ -26,6 +26,9 @@ public class ReviewService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private CatalogSnapshotService catalogSnapshotService;
+
     @Transactional
     public Review addReview(User user, Product product, Integer rating, String comment) {
         if (reviewRepository.existsByUserIdAndProductId(user.getId(), product.getId())) {
@@ -52,6 +55,7 @@ public class ReviewService {
         product.setAverageRating(Math.round(average * 10.0) / 10.0);
         product.setTotalReviews(reviews.size());
         productRepository.save(product);
+        catalogSnapshotService.invalidate();
     }
 
     public List<Review> getReviewsByProduct(Long productId) {
@@ -0,0 +1,92 @@
+package com.mrsdeores.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expires stock reservations of orders that were never paid: their stock is
+ * returned, the order is marked EXPIRED and its coupon use is given back.
+ * Each order is settled in its own short transaction, at most
+ * {@code batch-size} per run, so the sweep never holds many locks.
+ */
+@Component
+public class StockReservationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    private static final String FIND_EXPIRED = "SELECT DISTINCT order_id FROM stock_reservations "
+            + "WHERE status = 'RESERVED' AND expires_at < LOCALTIMESTAMP LIMIT ?";
+
+    private static final String EXPIRE_ORDER = "UPDATE orders SET status = 'EXPIRED' "
+            + "WHERE id = ? AND status IN ('CREATED', 'PAYMENT_FAILED')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Value("${app.inventory.sweeper.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.inventory.sweeper.batch-size:200}")
+    private int batchSize = 200;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong ordersExpired = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${app.inventory.sweeper.interval-ms:60000}")
+    public void sweep() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        int expired = 0;
+        try {
+            List<Long> orderIds = jdbcTemplate.queryForList(FIND_EXPIRED, Long.class, batchSize);
+            TransactionTemplate tx = new TransactionTemplate(transactionManager);
+            for (Long orderId : orderIds) {
+                Boolean settled = tx.execute(status -> {
+                    // Locks the reservations; a payment verified meanwhile has committed them and nothing is left.
+                    if (inventoryService.release(orderId, false) == 0) {
+                        return false;
+                    }
+                    jdbcTemplate.update(EXPIRE_ORDER, orderId);
+                    couponService.release(orderId);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(settled)) {
+                    expired++;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Stock reservation sweep stopped after {} orders: {}", expired, e.getMessage());
+        } finally {
+            ordersExpired.addAndGet(expired);
+            running.set(false);
+        }
+        if (expired > 0) {
+            logger.info("Expired {} unpaid orders and returned their stock", expired);
+        }
+    }
+
+    public long getOrdersExpired() {
+        return ordersExpired.get();
+    }
+}
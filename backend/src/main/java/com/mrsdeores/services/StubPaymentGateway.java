@@ -0,0 +1,68 @@
+package com.mrsdeores.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for Razorpay, for development and offline load tests. Order
+ * creation sleeps {@code latency-ms} (plus up to as much again in jitter) and
+ * fails with probability {@code failure-rate}, so the outbox workers see
+ * gateway-like behaviour. Signatures use Razorpay's scheme (hex HMAC-SHA256
+ * of {@code orderId|paymentId} with the key secret), so test clients can
+ * sign payments themselves. Order ids are derived from the receipt, so a
+ * repeated call returns the same order like the real lookup does.
+ */
+@Service
+@ConditionalOnProperty(name = "app.payments.gateway", havingValue = "stub")
+public class StubPaymentGateway implements PaymentGateway {
+
+    @Value("${razorpay.key.secret}")
+    private String keySecret;
+
+    @Value("${app.payments.stub.latency-ms:150}")
+    private long latencyMs = 150;
+
+    @Value("${app.payments.stub.failure-rate:0.0}")
+    private double failureRate;
+
+    @Override
+    public String createOrder(long amountPaise, String receipt) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (latencyMs > 0) {
+            Thread.sleep(latencyMs + random.nextLong(latencyMs + 1));
+        }
+        if (random.nextDouble() < failureRate) {
+            throw new RuntimeException("Stub gateway: simulated failure for " + receipt);
+        }
+        return "order_stub_" + UUID.nameUUIDFromBytes(receipt.getBytes(StandardCharsets.UTF_8)).toString()
+                .replace("-", "").substring(0, 14);
+    }
+
+    @Override
+    public boolean verifySignature(String orderId, String paymentId, String signature) {
+        if (orderId == null || paymentId == null || signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(orderId + "|" + paymentId).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(keySecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new RuntimeException("HmacSHA256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mrsdeores.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stock units for one flash-sale product, held in memory. Claims and returns
+ * are a single compare-and-set on one counter, so the count never goes
+ * negative and no lock is taken. A closed pool refuses both: its tokens have
+ * been handed back to {@code products.stock_quantity}.
+ */
+final class TokenPool {
+
+    private static final long CLOSED = -1;
+
+    private final long productId;
+    private final AtomicLong tokens = new AtomicLong();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long activityAtLastReconcile;
+    private long idleRounds;
+
+    TokenPool(long productId) {
+        this.productId = productId;
+    }
+
+    long productId() {
+        return productId;
+    }
+
+    /** Takes {@code quantity} tokens if that many are left. */
+    boolean tryClaim(int quantity) {
+        while (true) {
+            long available = tokens.get();
+            if (available < quantity) {
+                misses.increment();
+                return false;
+            }
+            if (tokens.compareAndSet(available, available - quantity)) {
+                claimed.add(quantity);
+                return true;
+            }
+        }
+    }
+
+    /** Adds tokens back; false if the pool is closed and the caller must return them to the row. */
+    boolean give(long quantity) {
+        while (true) {
+            long available = tokens.get();
+            if (available == CLOSED) {
+                return false;
+            }
+            if (tokens.compareAndSet(available, available + quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /** Takes up to {@code max} tokens for returning to the row, without counting them as sold. */
+    long drain(long max) {
+        while (true) {
+            long available = tokens.get();
+            long taken = Math.min(available, max);
+            if (taken <= 0) {
+                return 0;
+            }
+            if (tokens.compareAndSet(available, available - taken)) {
+                return taken;
+            }
+        }
+    }
+
+    /** Closes the pool and returns what it held; later claims and gives fail. */
+    long close() {
+        while (true) {
+            long available = tokens.get();
+            if (available == CLOSED) {
+                return 0;
+            }
+            if (tokens.compareAndSet(available, CLOSED)) {
+                return available;
+            }
+        }
+    }
+
+    long available() {
+        return Math.max(0, tokens.get());
+    }
+
+    boolean isClosed() {
+        return tokens.get() == CLOSED;
+    }
+
+    long claimed() {
+        return claimed.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Consecutive reconciles without a claim or a miss, counting this one;
+     * 0 means the pool was used since the last call. Only the reconciler
+     * calls this.
+     */
+    long noteReconcile() {
+        long activity = claimed.sum() + misses.sum();
+        idleRounds = activity == activityAtLastReconcile ? idleRounds + 1 : 0;
+        activityAtLastReconcile = activity;
+        return idleRounds;
+    }
+}
@@ -0,0 +1,21 @@
+-- V14: Indexes backing keyset pagination of product listings.
+-- Each whitelisted sort key (see ProductSortKey) gets a (value, id) index over
+-- active products, globally and per category.
+
+-- Rating columns are mapped by the Product entity but were never migrated.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS average_rating DOUBLE PRECISION DEFAULT 5.0;
+ALTER TABLE products ADD COLUMN IF NOT EXISTS total_reviews INTEGER DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_products_active_id ON products (id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_name ON products (name, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_selling_price ON products (selling_price, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_mrp ON products (mrp, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_rating ON products (average_rating, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_created ON products (created_at, id) WHERE is_active;
+
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_id ON products (category_id, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_name ON products (category_id, name, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_selling_price ON products (category_id, selling_price, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_mrp ON products (category_id, mrp, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_rating ON products (category_id, average_rating, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_cat_active_created ON products (category_id, created_at, id) WHERE is_active;
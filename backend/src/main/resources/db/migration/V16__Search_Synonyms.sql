@@ -0,0 +1,7 @@
+-- V16: Seed the search synonym dictionary (see SearchSynonyms for the format).
+-- Spelling variants such as ladoo/laddoo/ladu are handled by term folding and
+-- need no entry here; this list is for genuinely different words.
+
+INSERT INTO site_settings (setting_key, setting_value) VALUES
+    ('search_synonyms', E'atta => flour\npeeth => flour\nchakli, chakali\npohe, poha\nbhajani, bhajni\nsweet, mithai\nnamkeen, farsan')
+ON CONFLICT (setting_key) DO NOTHING;
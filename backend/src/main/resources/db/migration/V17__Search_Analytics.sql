@@ -0,0 +1,25 @@
+-- V17: Search analytics written asynchronously by SearchAnalytics.
+-- search_queries holds raw events (pruned after the retention window);
+-- search_query_daily is the rolling per-day aggregate the admin view reads.
+
+CREATE TABLE IF NOT EXISTS search_queries (
+    id              BIGSERIAL PRIMARY KEY,
+    query           VARCHAR(200) NOT NULL,
+    normalized      VARCHAR(200) NOT NULL,
+    result_count    INTEGER NOT NULL,
+    latency_micros  INTEGER NOT NULL,
+    searched_at     TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_queries_searched_at ON search_queries (searched_at);
+
+CREATE TABLE IF NOT EXISTS search_query_daily (
+    day                   DATE NOT NULL,
+    normalized            VARCHAR(200) NOT NULL,
+    searches              INTEGER NOT NULL DEFAULT 0,
+    zero_results          INTEGER NOT NULL DEFAULT 0,
+    total_latency_micros  BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, normalized)
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_query_daily_zero ON search_query_daily (day, zero_results) WHERE zero_results > 0;
@@ -0,0 +1,6 @@
+-- V18: Indexes for guest (session) carts.
+-- Session lookups used to scan carts; the sweeper walks expired guest carts
+-- oldest first through the partial updated_at index.
+
+CREATE INDEX IF NOT EXISTS idx_carts_session_id ON carts (session_id) WHERE session_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_carts_guest_updated_at ON carts (updated_at, id) WHERE user_id IS NULL;
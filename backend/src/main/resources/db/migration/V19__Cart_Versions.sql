@@ -0,0 +1,26 @@
+-- V19: Optimistic versioning for carts and cart lines, and one guest cart
+-- per session.
+
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cart_items ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Concurrent first adds could create several guest carts for one session.
+-- Fold their lines into the oldest cart and drop the rest before enforcing
+-- uniqueness.
+CREATE TEMPORARY TABLE duplicate_guest_carts AS
+SELECT id, MIN(id) OVER (PARTITION BY session_id) AS keep_id
+FROM carts
+WHERE user_id IS NULL AND session_id IS NOT NULL;
+
+INSERT INTO cart_items (cart_id, product_id, quantity, created_at, updated_at)
+SELECT d.keep_id, ci.product_id, SUM(ci.quantity), now(), now()
+FROM cart_items ci
+JOIN duplicate_guest_carts d ON d.id = ci.cart_id AND d.id <> d.keep_id
+GROUP BY d.keep_id, ci.product_id
+ON CONFLICT (cart_id, product_id) DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity;
+
+DELETE FROM carts WHERE id IN (SELECT id FROM duplicate_guest_carts WHERE id <> keep_id);
+
+DROP TABLE duplicate_guest_carts;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_carts_guest_session ON carts (session_id) WHERE user_id IS NULL;
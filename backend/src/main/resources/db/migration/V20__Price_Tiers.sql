@@ -0,0 +1,21 @@
+-- V20: Quantity price tiers.
+-- A tier belongs to one product or to a whole category and applies from
+-- min_quantity units up. Product tiers may set an absolute unit price or a
+-- percentage off the selling price; category tiers are percentages, so they
+-- fit every product in the category. The legacy products.bulk_price /
+-- bulk_min_quantity pair keeps working as an implicit product tier.
+
+CREATE TABLE price_tiers (
+    id BIGSERIAL PRIMARY KEY,
+    product_id BIGINT REFERENCES products(id) ON DELETE CASCADE,
+    category_id INTEGER REFERENCES categories(id) ON DELETE CASCADE,
+    min_quantity INTEGER NOT NULL CHECK (min_quantity > 1),
+    unit_price DECIMAL(10, 2) CHECK (unit_price >= 0),
+    discount_percent DECIMAL(5, 2) CHECK (discount_percent > 0 AND discount_percent < 100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CHECK (num_nonnulls(product_id, category_id) = 1),
+    CHECK (num_nonnulls(unit_price, discount_percent) = 1),
+    CHECK (category_id IS NULL OR unit_price IS NULL),
+    UNIQUE (product_id, min_quantity),
+    UNIQUE (category_id, min_quantity)
+);
@@ -0,0 +1,38 @@
+-- V21: Atomic coupon redemption and per-user limits.
+-- The coupons table and the orders coupon columns were never part of a
+-- migration (they came from the entity model), so they are created here if
+-- missing to keep fresh databases in line with existing ones.
+
+CREATE TABLE IF NOT EXISTS coupons (
+    id BIGSERIAL PRIMARY KEY,
+    code VARCHAR(255) NOT NULL UNIQUE,
+    discount_type VARCHAR(255) NOT NULL,
+    discount_value DOUBLE PRECISION NOT NULL,
+    expiry_date TIMESTAMP,
+    min_order_value DOUBLE PRECISION DEFAULT 0,
+    max_discount DOUBLE PRECISION,
+    usage_limit INTEGER,
+    used_count INTEGER DEFAULT 0,
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS coupon_code VARCHAR(255);
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS discount_amount DECIMAL(19, 2) DEFAULT 0;
+
+-- Redemptions allowed per customer; NULL means unlimited.
+ALTER TABLE coupons ADD COLUMN per_user_limit INTEGER CHECK (per_user_limit > 0);
+
+-- One row per order that used a coupon. The coupon's used_count is claimed
+-- with a conditional UPDATE, which also locks the coupon row for the rest of
+-- the checkout transaction, so the per-user count below cannot race.
+CREATE TABLE coupon_redemptions (
+    id BIGSERIAL PRIMARY KEY,
+    coupon_id BIGINT NOT NULL REFERENCES coupons(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    order_id BIGINT NOT NULL UNIQUE REFERENCES orders(id) ON DELETE CASCADE,
+    discount_amount DECIMAL(19, 2) NOT NULL,
+    redeemed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_coupon_redemptions_coupon_user ON coupon_redemptions(coupon_id, user_id);
@@ -0,0 +1,23 @@
+-- V22: Transactional outbox for payment gateway orders.
+-- Checkout writes the order and one outbox row in the same short
+-- transaction; PaymentOutbox workers then create the gateway order outside
+-- any transaction and store its id in payment_details. attempts doubles as
+-- a fencing token: a worker only completes a row it still owns.
+
+CREATE TABLE payment_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL UNIQUE REFERENCES orders(id) ON DELETE CASCADE,
+    amount_paise BIGINT NOT NULL CHECK (amount_paise >= 0),
+    receipt VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING, PROCESSING, DONE, FAILED
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP,
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Only open rows are ever scanned.
+CREATE INDEX idx_payment_outbox_due ON payment_outbox(next_attempt_at, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
@@ -0,0 +1,19 @@
+-- V23: Idempotency-Key records for checkout and payment verification.
+-- A row is claimed (IN_PROGRESS) before the request runs and completed
+-- (DONE) with the response to replay. Rows expire after the configured TTL;
+-- an IN_PROGRESS row whose request died is taken over after a short lease.
+
+CREATE TABLE idempotency_keys (
+    user_id BIGINT NOT NULL,
+    endpoint VARCHAR(64) NOT NULL,
+    idem_key VARCHAR(128) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL, -- IN_PROGRESS, DONE
+    response_status INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, endpoint, idem_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
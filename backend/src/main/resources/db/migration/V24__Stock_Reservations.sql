@@ -0,0 +1,22 @@
+-- V24: Stock reservations.
+-- Checkout takes stock with a conditional decrement of products.stock_quantity
+-- and records what it took here. Paying commits the reservation; cancelling,
+-- a failed payment order, or expiry gives the stock back.
+
+-- The conditional decrement never matches NULL stock; treat it as none.
+UPDATE products SET stock_quantity = 0 WHERE stock_quantity IS NULL;
+ALTER TABLE products ALTER COLUMN stock_quantity SET NOT NULL;
+
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL REFERENCES orders(id) ON DELETE CASCADE,
+    product_id BIGINT NOT NULL REFERENCES products(id),
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    status VARCHAR(20) NOT NULL DEFAULT 'RESERVED', -- RESERVED, COMMITTED, RELEASED
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_reservations_order_id ON stock_reservations(order_id);
+-- The expiry sweep only scans open reservations.
+CREATE INDEX idx_stock_reservations_expiry ON stock_reservations(expires_at) WHERE status = 'RESERVED';
@@ -0,0 +1,8 @@
+-- V25: Flash-sale SKUs.
+-- Products listed here take checkout stock from in-memory token pools that
+-- lease units from products.stock_quantity in chunks, instead of locking the
+-- product row for every order. Removing a row returns the pools' tokens.
+CREATE TABLE flash_sale_skus (
+    product_id BIGINT PRIMARY KEY REFERENCES products(id) ON DELETE CASCADE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,12 @@
+-- V26: Payment webhook events already applied.
+-- Razorpay redelivers an event until it gets a 2xx, sometimes more than
+-- once; the event id is recorded in the same transaction that applies it,
+-- so a redelivery is skipped even after a restart.
+CREATE TABLE webhook_events (
+    event_id VARCHAR(100) PRIMARY KEY,
+    event VARCHAR(50) NOT NULL,
+    processed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Old rows are purged in batches by processed_at.
+CREATE INDEX idx_webhook_events_processed_at ON webhook_events(processed_at);
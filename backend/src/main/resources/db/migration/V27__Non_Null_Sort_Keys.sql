@@ -0,0 +1,10 @@
+-- V27: Listing sort keys can no longer be NULL.
+-- Keyset pagination continues after a (value, id) position with > and =,
+-- neither of which matches NULL, so a product with no rating or creation
+-- time could be skipped between pages. Backfill with the column defaults.
+
+UPDATE products SET average_rating = 5.0 WHERE average_rating IS NULL;
+UPDATE products SET created_at = COALESCE(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+ALTER TABLE products ALTER COLUMN average_rating SET NOT NULL;
+ALTER TABLE products ALTER COLUMN created_at SET NOT NULL;
@@ -0,0 +1,121 @@
+package com.mrsdeores.pricing;
+
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart total with bulk pricing and a 12.5% coupon, the old way (BigDecimal
+ * per line, double coupon math) against {@link Money} on long paise, and
+ * through the real {@link CartLine} / {@link CartView#of} path the pricing
+ * engine runs on every cart miss. Run with {@code -prof gc} to see allocations per operation:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.mrsdeores.pricing.MoneyBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({ "5", "50" })
+    private int lines;
+
+    private BigDecimal[] sellingPrices;
+    private BigDecimal[] bulkPrices;
+    private long[] sellingPaise;
+    private long[] bulkPaise;
+    private int[] quantities;
+    private List<CartLine> cartLines;
+
+    private static final int BULK_MIN = 50;
+    private static final double COUPON_PERCENT = 12.5;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sellingPrices = new BigDecimal[lines];
+        bulkPrices = new BigDecimal[lines];
+        sellingPaise = new long[lines];
+        bulkPaise = new long[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            long selling = 5_000 + random.nextInt(50_000);
+            sellingPaise[i] = selling;
+            bulkPaise[i] = selling * 85 / 100;
+            sellingPrices[i] = Money.toRupees(sellingPaise[i]);
+            bulkPrices[i] = Money.toRupees(bulkPaise[i]);
+            quantities[i] = 1 + random.nextInt(80);
+        }
+        cartLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            cartLines.add(new CartLine((long) i, "Product " + i, null, quantities[i], sellingPaise[i], bulkPaise[i],
+                    BULK_MIN));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            BigDecimal unit = quantities[i] >= BULK_MIN ? bulkPrices[i] : sellingPrices[i];
+            subtotal = subtotal.add(unit.multiply(BigDecimal.valueOf(quantities[i])));
+        }
+        double discount = subtotal.doubleValue() * COUPON_PERCENT / 100.0;
+        return subtotal.subtract(BigDecimal.valueOf(discount)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    public long paise() {
+        long subtotal = 0;
+        for (int i = 0; i < lines; i++) {
+            long unit = quantities[i] >= BULK_MIN ? bulkPaise[i] : sellingPaise[i];
+            subtotal = Money.plus(subtotal, Money.times(unit, quantities[i]));
+        }
+        return subtotal - Money.percentOf(subtotal, 1_250);
+    }
+
+    /** Repricing each line (as a quantity tier does) and totalling; allocates only the two views. */
+    @Benchmark
+    public CartView cartView() {
+        for (int i = 0; i < lines; i++) {
+            CartLine line = cartLines.get(i);
+            line.applyUnitPrice(quantities[i] >= BULK_MIN ? bulkPaise[i] : sellingPaise[i]);
+        }
+        CartView view = CartView.of(1L, 1L, cartLines);
+        return view.withDiscount("SAVE", Money.percentOf(view.getSubtotalPaise(), 1_250));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,38 @@
+package com.mrsdeores.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneyTest {
+
+    @Test
+    public void convertsAtTheBoundaryRoundingHalfUp() {
+        assertEquals(12_345, Money.toPaise(new BigDecimal("123.45")));
+        assertEquals(12_346, Money.toPaise(new BigDecimal("123.455")));
+        assertEquals(12_345, Money.toPaise(new BigDecimal("123.4549")));
+        assertEquals(-12_346, Money.toPaise(new BigDecimal("-123.455")));
+        assertEquals(0, Money.toPaise((BigDecimal) null));
+        assertEquals(1_010, Money.toPaise(10.1)); // not 1009 from 10.1 * 100
+        assertEquals(new BigDecimal("123.45"), Money.toRupees(12_345));
+    }
+
+    @Test
+    public void percentagesRoundHalfUpToThePaisa() {
+        assertEquals(1_000, Money.percentOf(10_000, 1_000)); // 10% of 100.00
+        assertEquals(13, Money.percentOf(125, 1_000)); // 10% of 1.25 = 0.125 -> 0.13
+        assertEquals(12, Money.percentOf(124, 1_000));
+        assertEquals(-13, Money.percentOf(-125, 1_000));
+        assertEquals(1_250, Money.basisPoints(12.5));
+    }
+
+    @Test
+    public void arithmeticIsExact() {
+        assertEquals(490_000, Money.times(10_000, 49));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+        assertThrows(ArithmeticException.class, () -> Money.plus(Long.MAX_VALUE, 1));
+    }
+}
@@ -0,0 +1,82 @@
+package com.mrsdeores.pricing;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.PriceTier;
+import com.mrsdeores.models.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PriceTiersTest {
+
+    @Test
+    public void picksTheLastTierAtOrBelowTheQuantity() {
+        PriceTiers tiers = PriceTiers.compile(1, List.of(product(1L, null, "100.00")), List.of(
+                productTier(1L, 10, "90.00"),
+                productTier(1L, 50, "80.00"),
+                productTier(1L, 100, "70.00")));
+
+        assertEquals(10_000, tiers.unitPaise(1L, 9, 10_000));
+        assertEquals(9_000, tiers.unitPaise(1L, 10, 10_000));
+        assertEquals(9_000, tiers.unitPaise(1L, 49, 10_000));
+        assertEquals(8_000, tiers.unitPaise(1L, 50, 10_000));
+        assertEquals(7_000, tiers.unitPaise(1L, 5_000, 10_000));
+        assertEquals(10_000, tiers.unitPaise(2L, 5_000, 10_000)); // no tiers
+    }
+
+    @Test
+    public void productTiersOverrideTheLegacyBulkPairAndCategoryPercentages() {
+        Category category = new Category();
+        category.setId(7);
+        Product product = product(1L, category, "100.00");
+        product.setBulkPrice(new BigDecimal("85.00"));
+        product.setBulkMinQuantity(50);
+
+        PriceTiers tiers = PriceTiers.compile(1, List.of(product, product(2L, category, "200.00")), List.of(
+                categoryTier(7, 10, "5"),
+                categoryTier(7, 50, "10"),
+                productTier(1L, 50, "88.00")));
+
+        assertEquals(9_500, tiers.unitPaise(1L, 10, 10_000)); // category 5%
+        // At 50 the product's own tier replaces both the bulk pair (85.00) and the category's 10%.
+        assertEquals(8_800, tiers.unitPaise(1L, 50, 10_000));
+        assertEquals(18_000, tiers.unitPaise(2L, 60, 20_000)); // category 10%
+    }
+
+    @Test
+    public void laterTiersNeverRaiseThePrice() {
+        PriceTiers tiers = PriceTiers.compile(1, List.of(product(1L, null, "100.00")), List.of(
+                productTier(1L, 10, "80.00"),
+                productTier(1L, 20, "90.00")));
+
+        assertEquals(8_000, tiers.unitPaise(1L, 25, 10_000));
+        assertEquals(7_500, tiers.unitPaise(1L, 25, 7_500)); // fallback already lower
+    }
+
+    private static Product product(Long id, Category category, String sellingPrice) {
+        Product product = new Product();
+        product.setId(id);
+        product.setCategory(category);
+        product.setSellingPrice(new BigDecimal(sellingPrice));
+        return product;
+    }
+
+    private static PriceTier productTier(Long productId, int minQuantity, String unitPrice) {
+        PriceTier tier = new PriceTier();
+        tier.setProductId(productId);
+        tier.setMinQuantity(minQuantity);
+        tier.setUnitPrice(new BigDecimal(unitPrice));
+        return tier;
+    }
+
+    private static PriceTier categoryTier(Integer categoryId, int minQuantity, String percent) {
+        PriceTier tier = new PriceTier();
+        tier.setCategoryId(categoryId);
+        tier.setMinQuantity(minQuantity);
+        tier.setDiscountPercent(new BigDecimal(percent));
+        return tier;
+    }
+}
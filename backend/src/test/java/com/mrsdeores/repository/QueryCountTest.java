@@ -0,0 +1,297 @@
+package com.mrsdeores.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mrsdeores.controllers.OrderController;
+import com.mrsdeores.controllers.ProductController;
+import com.mrsdeores.models.*;
+import com.mrsdeores.payload.response.ProductCard;
+import com.mrsdeores.services.CartPricingEngine;
+import com.mrsdeores.services.CatalogSnapshotService;
+import com.mrsdeores.services.CategoryService;
+import com.mrsdeores.services.CouponService;
+import com.mrsdeores.services.FlashStockPools;
+import com.mrsdeores.services.IdempotencyStore;
+import com.mrsdeores.services.InventoryService;
+import com.mrsdeores.services.OrderService;
+import com.mrsdeores.services.PaymentGateway;
+import com.mrsdeores.services.PaymentOutbox;
+import com.mrsdeores.services.ProductService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the read paths against N+1 regressions: each response-shaped load
+ * must cost a fixed number of SQL statements regardless of how many products,
+ * cart items or order lines it contains. The endpoint tests go through the
+ * controllers and JSON serialization, so lazy loads triggered while writing
+ * the response are counted too; the catalog snapshot is off so listings
+ * reach the database.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // application.yml pins PostgreSQL; the embedded test database is H2.
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.default_batch_fetch_size=64",
+        "app.catalog.snapshot.enabled=false"
+})
+@Import({ ProductController.class, ProductService.class, OrderController.class, OrderService.class })
+public class QueryCountTest {
+
+    private static final int PRODUCTS = 8;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductController productController;
+
+    @Autowired
+    private OrderController orderController;
+
+    @MockitoBean
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @MockitoBean
+    private CategoryService categoryService;
+
+    @MockitoBean
+    private FlashStockPools flashStockPools;
+
+    @MockitoBean
+    private IdempotencyStore idempotencyStore;
+
+    @MockitoBean
+    private PaymentGateway paymentGateway;
+
+    @MockitoBean
+    private PaymentOutbox paymentOutbox;
+
+    @MockitoBean
+    private CartPricingEngine cartPricingEngine;
+
+    @MockitoBean
+    private CouponService couponService;
+
+    @MockitoBean
+    private InventoryService inventoryService;
+
+    private MockMvc mockMvc;
+    private Statistics statistics;
+    private User user;
+    private Integer categoryId;
+    private Long productId;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().failOnEmptyBeans(false).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(productController, orderController)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+
+        Category snacks = entityManager.persist(new Category("Snacks", "Snacks", null));
+        Category premixes = entityManager.persist(new Category("Premixes", "Premixes", null));
+        categoryId = snacks.getId();
+
+        user = entityManager.persist(new User("buyer", "buyer@example.com", "secret"));
+
+        Address address = new Address();
+        address.setUser(user);
+        address.setFullName("Buyer");
+        address.setPhoneNumber("9999999999");
+        address.setStreetAddress("1 Main Road");
+        address.setCity("Dhule");
+        address.setState("MH");
+        address.setZipCode("424005");
+        entityManager.persist(address);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        entityManager.persist(cart);
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setShippingAddress(address);
+        order.setStatus("CREATED");
+        order.setTotalAmount(BigDecimal.ZERO);
+        PaymentDetails payment = new PaymentDetails();
+        payment.setStatus("PENDING");
+        order.setPaymentDetails(payment);
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product("Product " + i, "Description " + i, new BigDecimal("100.00"),
+                    new BigDecimal("90.00"), i % 2 == 0 ? snacks : premixes);
+            product.getImages().add(new ProductImage("/uploads/" + i + "-a.jpg", product, true));
+            product.getImages().add(new ProductImage("/uploads/" + i + "-b.jpg", product, false));
+            entityManager.persist(product);
+            productId = product.getId();
+
+            CartItem cartItem = new CartItem();
+            cartItem.setCart(cart);
+            cartItem.setProduct(product);
+            cartItem.setQuantity(1);
+            entityManager.persist(cartItem);
+
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProduct(product);
+            orderItem.setQuantity(1);
+            orderItem.setPriceAtPurchase(new BigDecimal("90.00"));
+            order.addOrderItem(orderItem);
+        }
+        entityManager.persist(order);
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    public void activeProductListingIsOneStatement() {
+        List<Product> products = productRepository.findByIsActiveTrue();
+        products.forEach(this::touch);
+
+        assertEquals(PRODUCTS, products.size());
+        assertStatements(1);
+    }
+
+    @Test
+    public void catalogSnapshotLoadIsOneStatement() {
+        List<Product> products = productRepository.findAllActiveWithDetails();
+        products.forEach(this::touch);
+
+        assertEquals(PRODUCTS, products.size());
+        assertStatements(1);
+    }
+
+    @Test
+    public void cardPagesAreOneStatementEach() {
+        Sort sort = Sort.by(Sort.Direction.DESC, "sellingPrice", "id");
+        Set<Long> seen = new HashSet<>();
+        KeysetScrollPosition position = ScrollPosition.keyset();
+        Window<ProductCard> window;
+        do {
+            statistics.clear();
+            window = productRepository.scrollActiveCards(null, position, sort, Limit.of(3));
+            window.forEach(card -> assertTrue(seen.add(card.getId()), "card repeated across pages"));
+            assertStatements(1);
+            position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        } while (window.hasNext());
+
+        // Every product once, though all share one price and only the id breaks the tie.
+        assertEquals(PRODUCTS, seen.size());
+    }
+
+    @Test
+    public void cartLoadIsConstant() {
+        Cart cart = cartRepository.findByUser(user).orElseThrow();
+        cart.getItems().forEach(item -> touch(item.getProduct()));
+
+        assertEquals(PRODUCTS, cart.getItems().size());
+        // cart + items + products + categories, then one batch for images
+        assertStatements(2);
+    }
+
+    @Test
+    public void orderHistoryLoadIsConstant() {
+        List<Order> orders = orderRepository.findByUserOrderByCreatedAtDesc(user);
+        for (Order order : orders) {
+            order.getPaymentDetails().getStatus();
+            order.getShippingAddress().getCity();
+            order.getOrderItems().forEach(item -> touch(item.getProduct()));
+        }
+
+        assertEquals(PRODUCTS, orders.get(0).getOrderItems().size());
+        // order graph, then one batch for images
+        assertStatements(2);
+    }
+
+    @Test
+    public void productListingEndpointsAreConstant() throws Exception {
+        assertEndpointStatements("/api/products", 1);
+        assertEndpointStatements("/api/products?view=card", 1);
+        assertEndpointStatements("/api/products?categoryId=" + categoryId + "&sortBy=sellingPrice&order=desc", 1);
+        assertEndpointStatements("/api/products?inStock=true", 1);
+        assertEndpointStatements("/api/products?limit=3&view=card", 1);
+        // the page with its categories, then one batch for images
+        assertEndpointStatements("/api/products?limit=3", 2);
+    }
+
+    @Test
+    public void productDetailEndpointIsOneStatement() throws Exception {
+        assertEndpointStatements("/api/products/" + productId, 1);
+    }
+
+    @Test
+    public void orderHistoryEndpointIsConstant() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                org.springframework.security.core.userdetails.User.withUsername("buyer").password("secret").build(),
+                null, List.of()));
+        try {
+            // user lookup, order graph, the buyer's roles, one batch for images
+            assertEndpointStatements("/api/orders", 4);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    /** Requests {@code url} with an empty persistence context and counts the statements it costs. */
+    private void assertEndpointStatements(String url, long max) throws Exception {
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        long executed = statistics.getPrepareStatementCount();
+        assertTrue(executed <= max, "expected at most " + max + " SQL statements for " + url + " but got "
+                + executed);
+    }
+
+    /** Walks what the JSON serializer would walk for a product. */
+    private void touch(Product product) {
+        product.getCategory().getName();
+        product.getImages().forEach(ProductImage::getImageUrl);
+    }
+
+    private void assertStatements(long max) {
+        long executed = statistics.getPrepareStatementCount();
+        assertTrue(executed <= max, "expected at most " + max + " SQL statements but got " + executed);
+    }
+}
@@ -0,0 +1,83 @@
+package com.mrsdeores.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SearchAnalyticsTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private SearchAnalytics searchAnalytics;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(searchAnalytics, "enabled", true);
+        ReflectionTestUtils.setField(searchAnalytics, "capacity", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dropsWhenFullAndAggregatesOnDrain() {
+        searchAnalytics.record("Ladoo", 3, 120_000);
+        searchAnalytics.record("  ladoo ", 0, 80_000);
+        searchAnalytics.record("chakli", 1, 50_000);
+
+        assertEquals(2, searchAnalytics.getPending());
+        assertEquals(1, searchAnalytics.getDropped());
+
+        searchAnalytics.drain();
+
+        ArgumentCaptor<List<Object[]>> events = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO search_queries"), events.capture());
+        assertEquals(2, events.getValue().size());
+
+        ArgumentCaptor<List<Object[]>> daily = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO search_query_daily"), daily.capture());
+        Object[] ladoo = daily.getValue().get(0);
+        assertEquals("ladoo", ladoo[1]);
+        assertEquals(2, ladoo[2]); // searches
+        assertEquals(1, ladoo[3]); // zero results
+        assertEquals(200L, ladoo[4]); // latency micros
+        assertEquals(0, searchAnalytics.getPending());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void aFailedUpsertRollsTheEventsBackWithIt() {
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO search_query_daily"), anyList()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        searchAnalytics.record("Ladoo", 3, 120_000);
+
+        searchAnalytics.drain();
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO search_queries"), anyList());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertEquals(0, searchAnalytics.getPending());
+    }
+}
@@ -0,0 +1,109 @@
+package com.mrsdeores.search;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.services.CatalogChangedEvent;
+import com.mrsdeores.services.CatalogSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchIndexTest {
+
+    private final Category sweets = category(1, "Sweets");
+    private final Category premixes = category(2, "Premixes");
+
+    private SearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        SearchSynonyms synonyms = new SearchSynonyms();
+        synonyms.update("atta => flour\nchakli, chakali");
+        index = new SearchIndex();
+        ReflectionTestUtils.setField(index, "synonyms", synonyms);
+    }
+
+    @Test
+    public void ranksCategoriesFirstThenByRelevance() {
+        index.onCatalogChanged(event(1,
+                product(10L, "Besan Ladoo", "Roasted gram flour ladoo with ghee", sweets),
+                product(11L, "Puran Poli", "Sweet flatbread, goes well after a ladoo", sweets),
+                product(12L, "Dhokla Premix", "Instant mix", premixes)));
+
+        List<Map<String, Object>> results = index.search("ladoo", 12);
+
+        assertEquals(2, results.size());
+        assertEquals(10L, results.get(0).get("id"));
+        assertEquals(11L, results.get(1).get("id"));
+
+        List<Map<String, Object>> byCategory = index.search("sweet", 12);
+        assertEquals("category", byCategory.get(0).get("type"));
+        assertEquals(1, byCategory.get(0).get("id"));
+    }
+
+    @Test
+    public void matchesWordPrefixes() {
+        index.onCatalogChanged(event(1, product(10L, "Besan Ladoo", "", sweets)));
+
+        assertEquals(10L, index.search("lad", 12).get(0).get("id"));
+        assertTrue(index.search("xyz", 12).isEmpty());
+    }
+
+    @Test
+    public void reindexesChangedProductsAndIgnoresStaleSnapshots() {
+        index.onCatalogChanged(event(1, product(10L, "Besan Ladoo", "", sweets)));
+        index.onCatalogChanged(event(3, product(10L, "Rava Ladoo", "", sweets),
+                product(11L, "Chakli", "", sweets)));
+        index.onCatalogChanged(event(2, product(10L, "Besan Ladoo", "", sweets)));
+
+        assertTrue(index.search("besan", 12).isEmpty());
+        assertEquals("Rava Ladoo", index.search("rava", 12).get(0).get("name"));
+        assertEquals(11L, index.search("chakli", 12).get(0).get("id"));
+    }
+
+    @Test
+    public void toleratesTransliterationVariantsJoinedWordsAndSynonyms() {
+        index.onCatalogChanged(event(1,
+                product(10L, "Ladoo Masala", "", premixes),
+                product(11L, "Puran Poli Premix", "", premixes),
+                product(12L, "Ukadiche Modak Flour", "", premixes)));
+
+        assertEquals(10L, index.search("ladu", 12).get(0).get("id"));
+        assertEquals(10L, index.search("laddoo", 12).get(0).get("id"));
+        assertEquals(11L, index.search("puranpoli", 12).get(0).get("id"));
+        assertEquals(12L, index.search("modak atta", 12).get(0).get("id"));
+    }
+
+    @Test
+    public void fallsBackToNearSpellings() {
+        index.onCatalogChanged(event(1, product(10L, "Bhakarwadi", "", sweets),
+                product(11L, "Shrikhand", "", sweets)));
+
+        assertEquals(10L, index.search("bhakervadi", 12).get(0).get("id"));
+        assertEquals(11L, index.search("shrikand", 12).get(0).get("id"));
+        assertTrue(index.search("chivda", 12).isEmpty());
+    }
+
+    private CatalogChangedEvent event(long version, Product... products) {
+        return new CatalogChangedEvent(CatalogSnapshot.build(version, List.of(products), List.of(sweets, premixes)));
+    }
+
+    private static Category category(int id, String name) {
+        Category category = new Category(name, name + " from Dhule", null);
+        category.setId(id);
+        return category;
+    }
+
+    private static Product product(Long id, String name, String description, Category category) {
+        Product product = new Product(name, description, new BigDecimal("100.00"), new BigDecimal("90.00"), category);
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,41 @@
+package com.mrsdeores.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SuggestionTrieTest {
+
+    private final SuggestionTrie trie = new SuggestionTrie.Builder()
+            .add("Besan Ladoo", 40, Map.of("name", "Besan Ladoo"))
+            .add("Rava Ladoo", 90, Map.of("name", "Rava Ladoo"))
+            .add("Ladoo Premix", 5, Map.of("name", "Ladoo Premix"))
+            .add("Bhakarwadi", 60, Map.of("name", "Bhakarwadi"))
+            .build();
+
+    @Test
+    public void completesFromAnyWordStartByWeight() {
+        assertEquals(List.of("Rava Ladoo", "Besan Ladoo", "Ladoo Premix"), names(trie.complete("lad", 10)));
+        assertEquals(List.of("Bhakarwadi", "Besan Ladoo"), names(trie.complete("B", 10)));
+    }
+
+    @Test
+    public void normalisesQueryWhileWalking() {
+        assertEquals(List.of("Besan Ladoo"), names(trie.complete("  BESAN--la", 10)));
+        assertEquals(List.of("Rava Ladoo"), names(trie.complete("lad", 1)));
+    }
+
+    @Test
+    public void unknownOrBlankPrefixYieldsNothing() {
+        assertTrue(trie.complete("xyz", 10).isEmpty());
+        assertTrue(trie.complete("  ", 10).isEmpty());
+    }
+
+    private static List<Object> names(List<Map<String, Object>> results) {
+        return results.stream().map(r -> r.get("name")).toList();
+    }
+}
@@ -0,0 +1,53 @@
+package com.mrsdeores.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GuestCartTokensTest {
+
+    private GuestCartTokens tokens;
+
+    @BeforeEach
+    public void setUp() {
+        tokens = new GuestCartTokens();
+        ReflectionTestUtils.setField(tokens, "jwtSecret",
+                "5367566B59703373367639792F423F4528482B4D6251655468576D5A71347437");
+        ReflectionTestUtils.setField(tokens, "expirationMs", 60_000L);
+    }
+
+    @Test
+    public void roundTripKeepsLinesInOrder() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        lines.put(7L, 50);
+        lines.put(3L, 1);
+
+        Map<Long, Integer> decoded = tokens.decode(tokens.encode(lines));
+
+        assertEquals(lines, decoded);
+        assertEquals(List.of(7L, 3L), List.copyOf(decoded.keySet()));
+    }
+
+    @Test
+    public void tamperedTokenIsAnEmptyCart() {
+        String token = tokens.encode(Map.of(7L, 50));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1].substring(0, parts[1].length() - 2) + "AA." + parts[2];
+
+        assertTrue(tokens.decode(forged).isEmpty());
+        assertTrue(tokens.decode("not-a-token").isEmpty());
+        assertTrue(tokens.decode(null).isEmpty());
+    }
+
+    @Test
+    public void parseLinesSumsDuplicatesAndDropsEmptyLines() {
+        assertEquals(Map.of(1L, 5, 2L, 3), GuestCartTokens.parseLines("1:2,2:3,1:3,4:0"));
+    }
+}
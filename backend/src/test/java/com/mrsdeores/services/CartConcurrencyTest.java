@@ -0,0 +1,151 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.CartItem;
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.models.User;
+import com.mrsdeores.repository.CartItemRepository;
+import com.mrsdeores.repository.CategoryRepository;
+import com.mrsdeores.repository.ProductRepository;
+import com.mrsdeores.repository.UserRepository;
+import com.mrsdeores.security.jwt.GuestCartTokens;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent cart writers against a real PostgreSQL with the Flyway schema
+ * and real transactions (no test-managed rollback). The line writes are
+ * PostgreSQL upserts ({@code ON CONFLICT ... DO UPDATE ... RETURNING}) that
+ * H2 cannot run, so unlike the H2 tests this one needs Docker and is
+ * skipped without it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CartConcurrencyTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @MockitoBean
+    private GuestCartTokens guestCartTokens;
+
+    @MockitoBean
+    private CartPricingEngine cartPricingEngine;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Product first;
+    private Product second;
+
+    @BeforeEach
+    public void setUp() {
+        long suffix = System.nanoTime();
+        Category category = categoryRepository.save(new Category("Carts " + suffix, "Carts", null));
+        first = productRepository.save(new Product("First", "First", new BigDecimal("100.00"),
+                new BigDecimal("90.00"), category));
+        second = productRepository.save(new Product("Second", "Second", new BigDecimal("100.00"),
+                new BigDecimal("90.00"), category));
+        user = userRepository.save(new User("buyer" + suffix, "buyer" + suffix + "@example.com", "secret"));
+    }
+
+    @Test
+    public void concurrentAddsToOneCartKeepExactQuantities() throws Exception {
+        int threads = 16;
+        int addsPerThread = 25;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < addsPerThread; i++) {
+                    cartService.addToCart(user, null, (i % 2 == 0 ? first : second).getId(), 2);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Long cartId = cartService.findCartId(user, null).orElseThrow();
+        int addsPerLine = threads * addsPerThread / 2;
+        assertEquals(addsPerLine * 2, quantityOf(cartId, first));
+        assertEquals(addsPerLine * 2, quantityOf(cartId, second));
+        // Every add bumped the cart version, so pricing caches keyed on it never serve a stale total.
+        assertTrue(jdbcTemplate.queryForObject("SELECT version FROM carts WHERE id = ?", Long.class, cartId)
+                >= threads * addsPerThread - 1);
+    }
+
+    @Test
+    public void aStaleLineCannotOverwriteAConcurrentUpsert() {
+        cartService.addToCart(user, null, first.getId(), 1);
+        Long cartId = cartService.findCartId(user, null).orElseThrow();
+        CartItem stale = cartItemRepository.findAll().stream()
+                .filter(item -> item.getCart().getId().equals(cartId)).findFirst().orElseThrow();
+
+        cartService.addToCart(user, null, first.getId(), 4); // native upsert bumps the line version
+        stale.setQuantity(1);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> cartItemRepository.save(stale));
+        assertEquals(5, quantityOf(cartId, first));
+    }
+
+    private int quantityOf(Long cartId, Product product) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM cart_items WHERE cart_id = ? AND product_id = ?",
+                Integer.class, cartId, product.getId());
+    }
+}
@@ -0,0 +1,127 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Coupon;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
+import com.mrsdeores.pricing.PriceTierService;
+import com.mrsdeores.pricing.PriceTiers;
+import com.mrsdeores.repository.CartItemRepository;
+import com.mrsdeores.repository.CartRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CartPricingEngineTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private CatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private CouponService couponService;
+
+    @Mock
+    private PriceTierService priceTierService;
+
+    @InjectMocks
+    private CartPricingEngine pricingEngine;
+
+    private CatalogSnapshot catalog = CatalogSnapshot.build(1, List.of(), List.of());
+
+    @BeforeEach
+    public void setUp() {
+        when(catalogSnapshotService.current()).thenAnswer(i -> catalog);
+        when(priceTierService.current()).thenReturn(PriceTiers.empty());
+    }
+
+    @Test
+    public void pricesOncePerCartAndCatalogVersion() {
+        when(cartRepository.findVersionById(10L)).thenReturn(3L, 3L, 4L, 4L);
+        when(cartItemRepository.findLines(10L)).thenReturn(List.of(line(60)));
+
+        CartView first = pricingEngine.price(10L);
+        assertSame(first, pricingEngine.price(10L));
+        verify(cartItemRepository, times(1)).findLines(10L);
+
+        // cart changed
+        pricingEngine.price(10L);
+        verify(cartItemRepository, times(2)).findLines(10L);
+
+        // product prices changed
+        catalog = CatalogSnapshot.build(2, List.of(), List.of());
+        pricingEngine.price(10L);
+        verify(cartItemRepository, times(3)).findLines(10L);
+
+        assertEquals(1, pricingEngine.getHits());
+        assertEquals(new BigDecimal("4800.00"), first.getSubtotal());
+        assertEquals(new BigDecimal("1200.00"), first.getBulkSavings());
+        assertEquals(60, first.getTotalQuantity());
+    }
+
+    @Test
+    public void mutationResultIsServedToLaterReads() {
+        CartView fromMutation = pricingEngine.price(10L, 5L, List.of(line(10)));
+        when(cartRepository.findVersionById(10L)).thenReturn(5L);
+
+        assertSame(fromMutation, pricingEngine.price(10L));
+        verify(cartItemRepository, times(0)).findLines(10L);
+    }
+
+    @Test
+    public void couponDiscountIsAppliedToTheTotal() {
+        Coupon coupon = new Coupon("SAVE10", "PERCENTAGE", 10.0, null, 0.0);
+        when(couponService.validateCoupon("save10", 100_000L)).thenReturn(coupon);
+        when(couponService.discountPaise(coupon, 100_000L)).thenReturn(10_000L);
+
+        CartView view = pricingEngine.applyCoupon(pricingEngine.price(10L, 1L, List.of(line(10))), "save10");
+
+        assertEquals("SAVE10", view.getCouponCode());
+        assertEquals(new BigDecimal("100.00"), view.getDiscount());
+        assertEquals(new BigDecimal("900.00"), view.getTotal());
+    }
+
+    @Test
+    public void aFullCacheDropsTheLeastRecentlyUsedCart() {
+        // Two carts per stripe; carts 1, 33 and 65 share a stripe.
+        ReflectionTestUtils.setField(pricingEngine, "maxCachedCarts", 64);
+        when(cartRepository.findVersionById(anyLong())).thenReturn(1L);
+        when(cartItemRepository.findLines(anyLong())).thenReturn(List.of(line(10)));
+        pricingEngine.price(1L, 1L, List.of(line(10)));
+        pricingEngine.price(33L, 1L, List.of(line(10)));
+
+        pricingEngine.price(1L);
+        pricingEngine.price(65L, 1L, List.of(line(10)));
+
+        pricingEngine.price(1L);
+        verify(cartItemRepository, never()).findLines(1L);
+        pricingEngine.price(33L);
+        verify(cartItemRepository).findLines(33L);
+    }
+
+    /** Sells at 100, or 80 from 50 units. */
+    private static CartLine line(int quantity) {
+        return new CartLine(1L, "Puran Poli", null, quantity, new BigDecimal("100.00"), new BigDecimal("80.00"), 50);
+    }
+}
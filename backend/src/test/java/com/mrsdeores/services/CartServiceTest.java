@@ -1,22 +1,43 @@
 package com.mrsdeores.services;
 
-import com.mrsdeores.models.Cart;
 import com.mrsdeores.models.CartItem;
 import com.mrsdeores.models.Product;
 import com.mrsdeores.models.User;
+import com.mrsdeores.payload.request.CartBatchRequest;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.payload.response.CartView;
+import com.mrsdeores.pricing.PriceTierService;
+import com.mrsdeores.repository.CartItemRepository;
 import com.mrsdeores.repository.CartRepository;
 import com.mrsdeores.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,44 +46,195 @@ public class CartServiceTest {
     @Mock
     private CartRepository cartRepository;
 
+    @Mock
+    private CartItemRepository cartItemRepository;
+
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CatalogSnapshotService catalogSnapshotService;
+
     @InjectMocks
     private CartService cartService;
 
+    @BeforeEach
+    public void setUp() {
+        // Real pricing engine over the same mocks; the catalog never changes here.
+        CartPricingEngine pricingEngine = new CartPricingEngine();
+        ReflectionTestUtils.setField(pricingEngine, "cartRepository", cartRepository);
+        ReflectionTestUtils.setField(pricingEngine, "cartItemRepository", cartItemRepository);
+        ReflectionTestUtils.setField(pricingEngine, "catalogSnapshotService", catalogSnapshotService);
+        ReflectionTestUtils.setField(pricingEngine, "priceTierService", new PriceTierService());
+        ReflectionTestUtils.setField(cartService, "cartPricingEngine", pricingEngine);
+        lenient().when(catalogSnapshotService.current()).thenReturn(CatalogSnapshot.build(1, List.of(), List.of()));
+    }
+
     @Test
     public void testBulkPricingLogic() {
-        // Arrange
+        // Arrange: the line quantity lives "in the database" and grows with each upsert
+        User user = new User();
+        user.setId(1L);
+        AtomicInteger stored = new AtomicInteger();
+
+        when(cartRepository.upsertUserCartId(1L)).thenReturn(10L);
+        when(cartItemRepository.addQuantity(eq(10L), eq(1L), anyInt()))
+                .thenAnswer(i -> stored.addAndGet(i.getArgument(2)) > 0 ? 1 : 0);
+        when(cartItemRepository.findLines(10L)).thenAnswer(i -> List.of(new CartLine(1L, "Test Product", null,
+                stored.get(), new BigDecimal("100.00"), new BigDecimal("80.00"), 50)));
+
+        // Act 1: Add 49 items (Should be selling price)
+        CartView cart = cartService.addToCart(user, null, 1L, 49);
+        CartLine line = cart.getItems().get(0);
+
+        assertEquals(new BigDecimal("100.00"), line.getUnitPrice());
+        assertEquals(new BigDecimal("4900.00"), line.getLineTotal());
+
+        // Act 2: Add 1 more item (Total 50, Should be bulk price)
+        cart = cartService.addToCart(user, null, 1L, 1);
+        line = cart.getItems().get(0);
+
+        assertEquals(new BigDecimal("80.00"), line.getUnitPrice());
+        assertEquals(new BigDecimal("4000.00"), line.getLineTotal());
+        assertEquals(new BigDecimal("4000.00"), cart.getSubtotal());
+        assertEquals(new BigDecimal("1000.00"), cart.getBulkSavings());
+        assertEquals(50, cart.getTotalQuantity());
+    }
+
+    @Test
+    public void testCartItemBulkPricing() {
         Product product = new Product();
-        product.setId(1L);
-        product.setName("Test Product");
         product.setSellingPrice(new BigDecimal("100.00"));
         product.setBulkPrice(new BigDecimal("80.00"));
         product.setBulkMinQuantity(50);
 
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(49);
+        assertEquals(new BigDecimal("100.00"), item.getEffectivePrice());
+
+        item.setQuantity(50);
+        assertEquals(new BigDecimal("80.00"), item.getEffectivePrice());
+        assertEquals(new BigDecimal("4000.00"), item.getTotalPrice());
+    }
+
+    @Test
+    public void testZeroQuantityRemovesLine() {
         User user = new User();
         user.setId(1L);
+        when(cartRepository.upsertUserCartId(1L)).thenReturn(10L);
+        when(cartItemRepository.findLines(10L)).thenReturn(List.of());
 
-        Cart cart = new Cart();
-        cart.setUser(user);
+        CartView cart = cartService.updateItemQuantity(user, null, 1L, 0);
 
-        when(cartRepository.findByUser(user)).thenReturn(Optional.of(cart));
-        when(cartRepository.save(any(Cart.class))).thenAnswer(i -> i.getArguments()[0]);
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        verify(cartItemRepository).deleteItem(10L, 1L);
+        verify(cartItemRepository, never()).setQuantity(eq(10L), eq(1L), anyInt());
+        assertEquals(0, cart.getTotalQuantity());
+    }
 
-        // Act 1: Add 49 items (Should be selling price)
-        Cart updatedCart = cartService.addToCart(user, null, 1L, 49);
-        CartItem item = updatedCart.getItems().get(0);
+    @Test
+    public void testChangingALineWithoutACartDoesNotCreateOne() {
+        when(cartRepository.findIdsBySessionId("guest-session")).thenReturn(List.of());
 
-        assertEquals(new BigDecimal("100.00"), item.getEffectivePrice());
-        assertEquals(new BigDecimal("4900.00"), item.getTotalPrice());
+        CartView cart = cartService.updateItemQuantity(null, "guest-session", 1L, 3);
 
-        // Act 2: Add 1 more item (Total 50, Should be bulk price)
-        updatedCart = cartService.addToCart(user, null, 1L, 1);
-        item = updatedCart.getItems().get(0);
+        assertEquals(0, cart.getTotalQuantity());
+        verify(cartRepository, never()).save(any());
+        verify(cartItemRepository, never()).setQuantity(any(), any(), anyInt());
+    }
 
-        assertEquals(new BigDecimal("80.00"), item.getEffectivePrice());
-        assertEquals(new BigDecimal("4000.00"), item.getTotalPrice());
+    @Test
+    public void testBatchFoldsOperationsPerProduct() {
+        User user = new User();
+        user.setId(1L);
+        when(cartRepository.upsertUserCartId(1L)).thenReturn(10L);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product(1L), product(2L), product(3L)));
+        when(cartItemRepository.findLines(10L)).thenReturn(List.of());
+
+        cartService.applyBatch(user, null, List.of(
+                operation(1L, 20, "add"),
+                operation(1L, 30, "add"),
+                operation(2L, 5, "add"),
+                operation(2L, 0, "remove"),
+                operation(3L, 0, "remove"),
+                operation(3L, 7, "add")));
+
+        ArgumentCaptor<SqlParameterSource[]> adds = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(eq(CartItemRepository.ADD_QUANTITY), adds.capture());
+        assertEquals(1, adds.getValue().length);
+        assertEquals(50, adds.getValue()[0].getValue("quantity"));
+
+        ArgumentCaptor<SqlParameterSource[]> sets = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(eq(CartItemRepository.UPSERT_QUANTITY), sets.capture());
+        assertEquals(3L, sets.getValue()[0].getValue("productId"));
+        assertEquals(7, sets.getValue()[0].getValue("quantity"));
+
+        ArgumentCaptor<SqlParameterSource[]> deletes = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(eq(CartItemRepository.DELETE_ITEM), deletes.capture());
+        assertEquals(2L, deletes.getValue()[0].getValue("productId"));
+    }
+
+    @Test
+    public void testGuestTokenMergeKeepsTheLargerQuantityInsteadOfAdding() {
+        User user = new User();
+        user.setId(1L);
+        when(cartRepository.upsertUserCartId(1L)).thenReturn(10L);
+        when(productRepository.findAllById(any())).thenReturn(List.of(product(1L)));
+
+        cartService.mergeGuestLines(user, Map.of(1L, 4));
+
+        ArgumentCaptor<SqlParameterSource[]> merged = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(eq(CartItemRepository.MERGE_TOKEN_QUANTITY), merged.capture());
+        assertEquals(4, merged.getValue()[0].getValue("quantity"));
+        verify(jdbcTemplate, never()).batchUpdate(eq(CartItemRepository.ADD_QUANTITY), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void testBatchRejectsUnknownProducts() {
+        when(productRepository.findAllById(any())).thenReturn(List.of(product(1L)));
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyBatch(new User(), null,
+                List.of(operation(1L, 1, "add"), operation(99L, 1, "add"))));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    public void testMergeLocksUserCartThenMovesLinesInOneUpsert() {
+        User user = new User();
+        user.setId(1L);
+        when(cartRepository.upsertUserCartId(1L)).thenReturn(10L);
+
+        cartService.mergeCarts(user, "guest-session");
+
+        InOrder order = inOrder(cartRepository, cartItemRepository);
+        order.verify(cartRepository).upsertUserCartId(1L);
+        order.verify(cartItemRepository).mergeGuestItems(10L, "guest-session");
+        order.verify(cartRepository).deleteGuestCarts("guest-session");
+        verify(cartItemRepository, never()).addQuantity(any(), any(), anyInt());
+    }
+
+    /**
+     * Many threads add to the same two lines while every first attempt loses
+     * a (simulated) race and is rolled back; the retries must land each add
+     * exactly once.
+     */
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+
+    private static CartBatchRequest.Operation operation(Long productId, int quantity, String op) {
+        CartBatchRequest.Operation operation = new CartBatchRequest.Operation();
+        operation.setProductId(productId);
+        operation.setQuantity(quantity);
+        operation.setOp(op);
+        return operation;
     }
 }
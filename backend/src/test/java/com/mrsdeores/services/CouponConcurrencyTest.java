@@ -0,0 +1,148 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Coupon;
+import com.mrsdeores.models.User;
+import com.mrsdeores.repository.CouponRepository;
+import com.mrsdeores.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent redemptions of one coupon against a real PostgreSQL with the
+ * Flyway schema and real transactions, so the conditional claim and the
+ * per-user ledger insert race the way checkouts do. Needs Docker; skipped
+ * without it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CouponService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CouponConcurrencyTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponRepository couponRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void theUsageLimitHoldsUnderConcurrentRedemptions() throws Exception {
+        Coupon coupon = coupon(10, null);
+        List<User> buyers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            buyers.add(user());
+        }
+
+        int redeemed = redeemConcurrently(coupon, buyers);
+
+        assertEquals(10, redeemed);
+        assertEquals(10, couponRepository.findById(coupon.getId()).orElseThrow().getUsedCount());
+        assertEquals(10, redemptions(coupon));
+    }
+
+    @Test
+    public void thePerUserLimitHoldsUnderConcurrentRedemptions() throws Exception {
+        Coupon coupon = coupon(null, 2);
+        User buyer = user();
+        List<User> attempts = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            attempts.add(buyer);
+        }
+
+        int redeemed = redeemConcurrently(coupon, attempts);
+
+        assertEquals(2, redeemed);
+        // A refused per-user insert rolls its claim back with it.
+        assertEquals(2, couponRepository.findById(coupon.getId()).orElseThrow().getUsedCount());
+        assertEquals(2, redemptions(coupon));
+    }
+
+    /** One redemption per entry, each for its own order and in its own transaction, all started at once. */
+    private int redeemConcurrently(Coupon coupon, List<User> buyers) throws Exception {
+        List<Long> orderIds = new ArrayList<>();
+        for (User buyer : buyers) {
+            orderIds.add(order(buyer));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(buyers.size());
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger redeemed = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < buyers.size(); i++) {
+            User buyer = buyers.get(i);
+            Long orderId = orderIds.get(i);
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    couponService.redeem(coupon, buyer, orderId, 1_000);
+                    redeemed.incrementAndGet();
+                } catch (RuntimeException limitReached) {
+                    // expected for all but the allowed redemptions
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        return redeemed.get();
+    }
+
+    private Coupon coupon(Integer usageLimit, Integer perUserLimit) {
+        Coupon coupon = new Coupon("RACE" + System.nanoTime(), "FIXED", 10.0, null, 0.0);
+        coupon.setUsageLimit(usageLimit);
+        coupon.setPerUserLimit(perUserLimit);
+        return couponRepository.save(coupon);
+    }
+
+    private User user() {
+        long suffix = System.nanoTime();
+        return userRepository.save(new User("coupon" + suffix, "coupon" + suffix + "@example.com", "secret"));
+    }
+
+    private Long order(User buyer) {
+        Long addressId = jdbcTemplate.queryForObject("INSERT INTO addresses (user_id, full_name, phone_number, "
+                + "street_address, city, state, zip_code) VALUES (?, 'Buyer', '9999999999', '1 Street', 'Pune', "
+                + "'MH', '411001') RETURNING id", Long.class, buyer.getId());
+        return jdbcTemplate.queryForObject("INSERT INTO orders (user_id, address_id, total_amount, status) "
+                + "VALUES (?, ?, 100.00, 'CREATED') RETURNING id", Long.class, buyer.getId(), addressId);
+    }
+
+    private int redemptions(Coupon coupon) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = ?",
+                Integer.class, coupon.getId());
+    }
+}
@@ -0,0 +1,116 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Coupon;
+import com.mrsdeores.models.Order;
+import com.mrsdeores.models.User;
+import com.mrsdeores.repository.CouponRedemptionRepository;
+import com.mrsdeores.repository.CouponRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CouponServiceTest {
+
+    @Mock
+    private CouponRepository couponRepository;
+
+    @Mock
+    private CouponRedemptionRepository couponRedemptionRepository;
+
+    @InjectMocks
+    private CouponService couponService;
+
+    @Test
+    public void validatesFromTheCachedActiveCouponsByNormalizedCode() {
+        when(couponRepository.findByIsActiveTrue()).thenReturn(List.of(coupon(1L, "save10", null)));
+
+        assertEquals(1L, couponService.validateCoupon("SAVE10", 50_000L).getId());
+        assertEquals(1L, couponService.validateCoupon("  Save10 ", 50_000L).getId());
+        assertThrows(IllegalArgumentException.class, () -> couponService.validateCoupon("NOPE", 50_000L));
+        verify(couponRepository, times(1)).findByIsActiveTrue();
+        verify(couponRepository, never()).findByCodeIgnoreCaseAndIsActiveTrue(any());
+
+        couponService.invalidate();
+        couponService.validateCoupon("SAVE10", 50_000L);
+        verify(couponRepository, times(2)).findByIsActiveTrue();
+    }
+
+    @Test
+    public void redemptionFailsWhenTheConditionalClaimMatchesNoRow() {
+        when(couponRepository.claimUse(1L)).thenReturn(0);
+
+        assertThrows(RuntimeException.class,
+                () -> couponService.redeem(coupon(1L, "SAVE10", null), user(), 100L, 1_000));
+        verify(couponRedemptionRepository, never()).insertIfUnderLimit(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void redemptionEnforcesThePerUserLimitThroughTheLedger() {
+        when(couponRepository.claimUse(1L)).thenReturn(1);
+        when(couponRedemptionRepository.insertIfUnderLimit(1L, 7L, 100L, new BigDecimal("10.00"), 2))
+                .thenReturn(0);
+
+        assertThrows(RuntimeException.class,
+                () -> couponService.redeem(coupon(1L, "SAVE10", 2), user(), 100L, 1_000));
+    }
+
+    @Test
+    public void releaseGivesTheUseBack() {
+        when(couponRedemptionRepository.deleteByOrderIdReturningCouponId(100L)).thenReturn(List.of(1L));
+
+        couponService.release(100L);
+        verify(couponRepository).releaseUse(1L);
+
+        when(couponRedemptionRepository.deleteByOrderIdReturningCouponId(101L)).thenReturn(List.of());
+        couponService.release(101L);
+        verify(couponRepository, times(1)).releaseUse(anyLong());
+    }
+
+    @Test
+    public void aFailedReclaimGivesTheClaimedUseBack() {
+        Order order = new Order();
+        order.setId(100L);
+        order.setUser(user());
+        order.setCouponCode("SAVE10");
+        order.setDiscountAmount(new BigDecimal("10.00"));
+        when(couponRepository.findByCodeIgnoreCaseAndIsActiveTrue("SAVE10"))
+                .thenReturn(Optional.of(coupon(1L, "SAVE10", 1)));
+        when(couponRepository.claimUse(1L)).thenReturn(1);
+        when(couponRedemptionRepository.insertIfUnderLimit(1L, 7L, 100L, new BigDecimal("10.00"), 1))
+                .thenReturn(0);
+
+        assertFalse(couponService.reclaim(order));
+        verify(couponRepository).releaseUse(1L);
+    }
+
+    private static Coupon coupon(Long id, String code, Integer perUserLimit) {
+        Coupon coupon = new Coupon(code, "PERCENTAGE", 10.0, null, 0.0);
+        coupon.setId(id);
+        coupon.setPerUserLimit(perUserLimit);
+        return coupon;
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(7L);
+        return user;
+    }
+}
@@ -0,0 +1,112 @@
+package com.mrsdeores.services;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sixteen checkouts taking one unit of the same SKU: the row path (one
+ * transaction with the conditional decrement, each waiting on the row lock)
+ * against a flash {@link TokenPool} claim, which goes to the row only to
+ * lease another chunk. Uses an in-memory H2 database, so the row path's
+ * numbers are a best case; against PostgreSQL over the network the gap is
+ * wider.
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.mrsdeores.services.FlashStockBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class FlashStockBenchmark {
+
+    private static final long PRODUCT_ID = 1;
+    private static final int LEASE_SIZE = 100;
+
+    // H2 has no UPDATE ... FROM; lock, read and decrement instead of FlashStockPools.LEASE.
+    private static final String LEASE_READ = "SELECT LEAST(stock_quantity - 1, ?) FROM products "
+            + "WHERE id = ? FOR UPDATE";
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate tx;
+    private TokenPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:flash;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        config.setMaximumPoolSize(16);
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS products (id BIGINT PRIMARY KEY, stock_quantity INT NOT NULL)");
+        jdbcTemplate.update("MERGE INTO products KEY (id) VALUES (?, ?)", PRODUCT_ID, Integer.MAX_VALUE);
+        pool = new TokenPool(PRODUCT_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public boolean rowLock() {
+        return Boolean.TRUE.equals(
+                tx.execute(status -> jdbcTemplate.update(InventoryService.TAKE_STOCK, 1, PRODUCT_ID, 1) == 1));
+    }
+
+    @Benchmark
+    public boolean tokenPool() {
+        while (!pool.tryClaim(1)) {
+            lease();
+        }
+        return true;
+    }
+
+    /** One chunk from the row into the pool; only one thread leases at a time, like the reconciler. */
+    private synchronized void lease() {
+        if (pool.available() > 0) {
+            return;
+        }
+        Integer units = tx.execute(status -> {
+            Integer n = jdbcTemplate.queryForObject(LEASE_READ, Integer.class, LEASE_SIZE, PRODUCT_ID);
+            jdbcTemplate.update(InventoryService.TAKE_STOCK, n, PRODUCT_ID, n);
+            return n;
+        });
+        pool.give(units);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FlashStockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
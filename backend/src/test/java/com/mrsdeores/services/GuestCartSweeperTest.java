@@ -0,0 +1,64 @@
+package com.mrsdeores.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GuestCartSweeperTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private GuestCartSweeper sweeper;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(sweeper, "enabled", true);
+        ReflectionTestUtils.setField(sweeper, "ttlDays", 30);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 1000);
+        ReflectionTestUtils.setField(sweeper, "pauseMs", 0L);
+        ReflectionTestUtils.setField(sweeper, "maxBatches", 10);
+    }
+
+    @Test
+    public void sweepsInBatchesUntilAShortBatch() {
+        when(jdbcTemplate.update(anyString(), any(), eq(1000))).thenReturn(1000, 1000, 3);
+
+        sweeper.sweep();
+
+        verify(jdbcTemplate, times(3)).update(anyString(), any(), eq(1000));
+        Map<String, Object> stats = sweeper.stats();
+        assertEquals(2003L, stats.get("cartsSwept"));
+        assertEquals(2003L, stats.get("lastSwept"));
+        assertEquals(3L, stats.get("batches"));
+        assertEquals(1L, stats.get("runs"));
+    }
+
+    @Test
+    public void stopsAtMaxBatches() {
+        ReflectionTestUtils.setField(sweeper, "maxBatches", 2);
+        when(jdbcTemplate.update(anyString(), any(), eq(1000))).thenReturn(1000);
+
+        sweeper.sweep();
+
+        verify(jdbcTemplate, times(2)).update(anyString(), any(), eq(1000));
+        assertEquals(2000L, sweeper.stats().get("cartsSwept"));
+    }
+}
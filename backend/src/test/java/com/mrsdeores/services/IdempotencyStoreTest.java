@@ -0,0 +1,116 @@
+package com.mrsdeores.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private IdempotencyStore store;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    public void aRepeatedKeyReplaysTheFirstResponseFromMemory() {
+        claimSucceeds();
+
+        ResponseEntity<?> first = store.execute(1L, "checkout", "k1", Map.of("addressId", 5), this::createOrder);
+        ResponseEntity<?> second = store.execute(1L, "checkout", "k1", Map.of("addressId", 5), this::createOrder);
+
+        assertEquals(1, runs.get());
+        assertEquals(HttpStatus.ACCEPTED, second.getStatusCode());
+        assertEquals("{\"orderId\":1}", second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(Map.of("orderId", 1), first.getBody());
+        verify(jdbcTemplate, times(1)).update(eq(IdempotencyStore.CLAIM), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void reusingAKeyForADifferentRequestIsRejected() {
+        claimSucceeds();
+
+        store.execute(1L, "checkout", "k1", Map.of("addressId", 5), this::createOrder);
+        ResponseEntity<?> other = store.execute(1L, "checkout", "k1", Map.of("addressId", 6), this::createOrder);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, other.getStatusCode());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void aKeyClaimedElsewhereIsAnsweredFromTheTable() {
+        when(jdbcTemplate.update(eq(IdempotencyStore.CLAIM), any(), any(), any(), any(), any(), any()))
+                .thenReturn(0);
+        when(jdbcTemplate.query(eq(IdempotencyStore.FIND), any(RowMapper.class), eq(1L), eq("checkout"), eq("k1")))
+                .thenReturn(List.of());
+
+        ResponseEntity<?> response = store.execute(1L, "checkout", "k1", Map.of("addressId", 5), this::createOrder);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode()); // still running on the other instance
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void serverErrorsAreNotStored() {
+        claimSucceeds();
+
+        store.execute(1L, "verify", "k2", Map.of("orderId", "9"), () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.internalServerError().build();
+        });
+        store.execute(1L, "verify", "k2", Map.of("orderId", "9"), this::createOrder);
+
+        assertEquals(2, runs.get());
+        verify(jdbcTemplate, times(1)).update(IdempotencyStore.RELEASE, 1L, "verify", "k2");
+    }
+
+    @Test
+    public void requestsWithoutAKeyAlwaysRun() {
+        store.execute(1L, "checkout", null, Map.of(), this::createOrder);
+        store.execute(1L, "checkout", " ", Map.of(), this::createOrder);
+
+        assertEquals(2, runs.get());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private void claimSucceeds() {
+        when(jdbcTemplate.update(eq(IdempotencyStore.CLAIM), any(), any(), any(), any(), any(), any()))
+                .thenReturn(1);
+    }
+
+    private ResponseEntity<?> createOrder() {
+        runs.incrementAndGet();
+        return ResponseEntity.accepted().body(Map.of("orderId", 1));
+    }
+}
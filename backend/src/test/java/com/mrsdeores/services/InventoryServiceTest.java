@@ -0,0 +1,161 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.response.CartLine;
+import com.mrsdeores.repository.CategoryRepository;
+import com.mrsdeores.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the conditional stock decrement against a real database with real
+ * transactions (no test-managed rollback), so concurrent checkouts contend
+ * for the same product row the way they do in production.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // Checkouts queue on the hot row; give them longer than H2's 1s lock timeout.
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:inventory;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"
+})
+@Import({ InventoryService.class, FlashStockPools.class, CatalogSnapshotService.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class InventoryServiceTest {
+
+    private static final AtomicLong ORDER_IDS = new AtomicLong(1000);
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Category category;
+
+    @BeforeEach
+    public void setUp() {
+        category = categoryRepository.save(new Category("Stock " + System.nanoTime(), "Stock", null));
+    }
+
+    @Test
+    public void aHotProductIsNeverOversoldUnderContention() throws Exception {
+        int stock = 40;
+        int threads = 16;
+        int checkoutsPerThread = 10;
+        Product hot = product("Hot mix", stock);
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < checkoutsPerThread; i++) {
+                    try {
+                        checkout(line(hot, 1));
+                        sold.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        refused.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(stock, sold.get());
+        assertEquals(threads * checkoutsPerThread - stock, refused.get());
+        assertEquals(0, stockOf(hot));
+        assertEquals(stock, jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_reservations WHERE product_id = ?", Integer.class,
+                hot.getId()));
+    }
+
+    @Test
+    public void aShortLineRollsBackTheWholeCart() {
+        Product plenty = product("Plenty", 10);
+        Product scarce = product("Scarce", 1);
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> checkout(line(plenty, 2), line(scarce, 2)));
+
+        assertEquals(true, error.getMessage().contains("Scarce"));
+        assertEquals(10, stockOf(plenty));
+        assertEquals(1, stockOf(scarce));
+    }
+
+    @Test
+    public void releasingGivesTheStockBackOnce() {
+        Product product = product("Returned", 5);
+        long orderId = checkout(line(product, 3));
+        assertEquals(2, stockOf(product));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> inventoryService.release(orderId, false));
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> inventoryService.release(orderId, false));
+
+        assertEquals(5, stockOf(product));
+    }
+
+    private long checkout(CartLine... lines) {
+        long orderId = ORDER_IDS.incrementAndGet();
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> inventoryService.reserve(orderId, List.of(lines)));
+        return orderId;
+    }
+
+    private Product product(String name, int stock) {
+        Product product = new Product(name, name, new BigDecimal("100.00"), new BigDecimal("90.00"), category);
+        product.setStockQuantity(stock);
+        return productRepository.save(product);
+    }
+
+    private int stockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM products WHERE id = ?", Integer.class,
+                product.getId());
+    }
+
+    private static CartLine line(Product product, int quantity) {
+        return new CartLine(product.getId(), product.getName(), null, quantity, product.getSellingPrice(), null, null);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Order;
+import com.mrsdeores.models.PaymentDetails;
+import com.mrsdeores.repository.CartRepository;
+import com.mrsdeores.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CouponService couponService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    @Test
+    public void aPaymentForACancelledOrderIsFlaggedForRefund() {
+        Order order = order("CANCELLED", null);
+
+        assertEquals(OrderService.Settlement.REFUND_DUE, orderService.settlePayment(order, "pay_1", "sig"));
+        assertEquals("CANCELLED", order.getStatus());
+        assertEquals("REFUND_DUE", order.getPaymentDetails().getStatus());
+        verify(inventoryService, never()).commit(anyLong());
+    }
+
+    @Test
+    public void theSamePaymentReportedTwiceSettlesTheOrderOnce() {
+        Order order = order("CREATED", null);
+
+        assertEquals(OrderService.Settlement.PAID, orderService.settlePayment(order, "pay_1", "sig"));
+        assertEquals(OrderService.Settlement.ALREADY_PAID, orderService.settlePayment(order, "pay_1", null));
+        assertEquals(OrderService.Settlement.REFUND_DUE, orderService.settlePayment(order, "pay_2", null));
+        assertEquals("PAID", order.getStatus());
+        assertEquals("pay_1", order.getPaymentDetails().getRazorpayPaymentId());
+        verify(inventoryService).commit(7L);
+    }
+
+    @Test
+    public void anExpiredOrderIsOnlyPaidIfItsCouponCanBeClaimedAgain() {
+        Order expired = order("EXPIRED", "SAVE10");
+        when(couponService.reclaim(expired)).thenReturn(false);
+
+        assertEquals(OrderService.Settlement.REFUND_DUE, orderService.settlePayment(expired, "pay_1", "sig"));
+        assertEquals("EXPIRED", expired.getStatus());
+
+        Order reclaimed = order("EXPIRED", "SAVE10");
+        when(couponService.reclaim(reclaimed)).thenReturn(true);
+
+        assertEquals(OrderService.Settlement.PAID, orderService.settlePayment(reclaimed, "pay_2", "sig"));
+        assertEquals("PAID", reclaimed.getStatus());
+    }
+
+    private static Order order(String status, String couponCode) {
+        PaymentDetails payment = new PaymentDetails();
+        payment.setStatus("PENDING");
+        Order order = new Order();
+        order.setId(7L);
+        order.setStatus(status);
+        order.setCouponCode(couponCode);
+        order.setPaymentDetails(payment);
+        return order;
+    }
+}
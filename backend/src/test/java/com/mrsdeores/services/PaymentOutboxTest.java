@@ -0,0 +1,94 @@
+package com.mrsdeores.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentOutboxTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private CouponService couponService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @InjectMocks
+    private PaymentOutbox outbox;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(outbox, "enabled", false); // no pool: process() is called directly
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outbox, "backoffMs", 1000L);
+    }
+
+    @Test
+    public void storesTheGatewayOrderIdWhenTheClaimIsStillOwned() throws Exception {
+        when(paymentGateway.createOrder(50_000, "rcpt_7")).thenReturn("order_abc");
+        when(jdbcTemplate.update(PaymentOutbox.MARK_DONE, 1L, 1)).thenReturn(1);
+
+        outbox.process(new PaymentOutbox.Entry(1L, 7L, 50_000, "rcpt_7", 1));
+
+        verify(jdbcTemplate).update(PaymentOutbox.SET_GATEWAY_ORDER, "order_abc", 7L);
+        assertEquals(1L, outbox.stats().get("created"));
+        assertEquals(0, outbox.stats().get("inFlight"));
+    }
+
+    @Test
+    public void aFencedOffWorkerDoesNotOverwriteThePayment() throws Exception {
+        when(paymentGateway.createOrder(50_000, "rcpt_7")).thenReturn("order_stale");
+        when(jdbcTemplate.update(PaymentOutbox.MARK_DONE, 1L, 1)).thenReturn(0);
+
+        outbox.process(new PaymentOutbox.Entry(1L, 7L, 50_000, "rcpt_7", 1));
+
+        verify(jdbcTemplate, never()).update(eq(PaymentOutbox.SET_GATEWAY_ORDER), eq("order_stale"), eq(7L));
+        assertEquals(1L, outbox.stats().get("fenced"));
+    }
+
+    @Test
+    public void gatewayFailuresBackOffExponentially() throws Exception {
+        when(paymentGateway.createOrder(50_000, "rcpt_7")).thenThrow(new RuntimeException("timeout"));
+
+        outbox.process(new PaymentOutbox.Entry(1L, 7L, 50_000, "rcpt_7", 2));
+
+        verify(jdbcTemplate).update(eq(PaymentOutbox.RETRY), anyString(), eq(2000L), eq(1L), eq(2));
+        verify(couponService, never()).release(7L);
+    }
+
+    @Test
+    public void theLastFailedAttemptFailsTheOrderAndReleasesTheCoupon() throws Exception {
+        when(paymentGateway.createOrder(50_000, "rcpt_7")).thenThrow(new RuntimeException("down"));
+        when(jdbcTemplate.update(eq(PaymentOutbox.MARK_FAILED), anyString(), eq(1L), eq(3))).thenReturn(1);
+
+        outbox.process(new PaymentOutbox.Entry(1L, 7L, 50_000, "rcpt_7", 3));
+
+        verify(jdbcTemplate).update(PaymentOutbox.FAIL_PAYMENT, 7L);
+        verify(jdbcTemplate).update(PaymentOutbox.FAIL_ORDER, 7L);
+        verify(couponService).release(7L);
+        verify(inventoryService).release(7L, false);
+        assertEquals(1L, outbox.stats().get("failed"));
+    }
+}
@@ -0,0 +1,191 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Order;
+import com.mrsdeores.models.PaymentDetails;
+import com.mrsdeores.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentWebhooksTest {
+
+    private static final String SECRET = "whsec_test";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @InjectMocks
+    private PaymentWebhooks webhooks;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(webhooks, "webhookSecret", SECRET);
+        ReflectionTestUtils.setField(webhooks, "queueCapacity", 2);
+        webhooks.init(); // no worker: batches are applied by the test
+    }
+
+    @Test
+    public void onlyCorrectlySignedPayloadsAreAccepted() {
+        byte[] payload = captured("order_A", "pay_1");
+
+        assertEquals(PaymentWebhooks.Result.ACCEPTED, webhooks.accept(payload, sign(payload), "evt_1"));
+        assertEquals(PaymentWebhooks.Result.INVALID_SIGNATURE,
+                webhooks.accept(payload, sign(captured("order_B", "pay_1")), "evt_2"));
+        assertEquals(PaymentWebhooks.Result.INVALID_SIGNATURE, webhooks.accept(payload, "not-hex", "evt_3"));
+        assertEquals(2L, webhooks.stats().get("invalidSignatures"));
+    }
+
+    @Test
+    public void aRedeliveredEventIdIsAcknowledgedWithoutQueueingItAgain() {
+        byte[] payload = captured("order_A", "pay_1");
+
+        webhooks.accept(payload, sign(payload), "evt_1");
+
+        assertEquals(PaymentWebhooks.Result.DUPLICATE, webhooks.accept(payload, sign(payload), "evt_1"));
+        assertEquals(1, webhooks.stats().get("pending"));
+    }
+
+    @Test
+    public void aFullQueueRefusesSoTheRedeliveryGetsThrough() {
+        for (int i = 0; i < 2; i++) {
+            byte[] payload = captured("order_" + i, "pay_" + i);
+            webhooks.accept(payload, sign(payload), "evt_" + i);
+        }
+        byte[] payload = captured("order_X", "pay_X");
+
+        assertEquals(PaymentWebhooks.Result.BUSY, webhooks.accept(payload, sign(payload), "evt_X"));
+        ReflectionTestUtils.setField(webhooks, "queueCapacity", 3);
+        webhooks.init();
+        assertEquals(PaymentWebhooks.Result.ACCEPTED, webhooks.accept(payload, sign(payload), "evt_X"));
+    }
+
+    @Test
+    public void capturedPaymentsMarkTheirOrdersPaidOnce() {
+        Order order = order(7L, "order_A", "CREATED");
+        when(jdbcTemplate.batchUpdate(eq(PaymentWebhooks.RECORD_EVENT), anyList())).thenReturn(new int[] { 1, 0 });
+        when(orderRepository.findByPaymentDetailsRazorpayOrderIdIn(anyCollection())).thenReturn(List.of(order));
+
+        when(orderService.settlePayment(order, "pay_1", null)).thenReturn(OrderService.Settlement.PAID);
+
+        webhooks.process(List.of(event("evt_1", captured("order_A", "pay_1")),
+                event("evt_1", captured("order_A", "pay_1"))));
+
+        verify(orderService).settlePayment(order, "pay_1", null);
+        assertEquals(1L, webhooks.stats().get("captured"));
+        assertEquals(1L, webhooks.stats().get("redelivered"));
+    }
+
+    @Test
+    public void aFailedAttemptAfterASuccessIsIgnored() {
+        Order order = order(7L, "order_A", "PAID");
+        order.getPaymentDetails().setStatus("COMPLETED");
+        when(jdbcTemplate.batchUpdate(eq(PaymentWebhooks.RECORD_EVENT), anyList())).thenReturn(new int[] { 1 });
+        when(orderRepository.findByPaymentDetailsRazorpayOrderIdIn(anyCollection())).thenReturn(List.of(order));
+
+        webhooks.process(List.of(event("evt_2", payload("payment.failed", "order_A", "pay_0"))));
+
+        assertEquals("PAID", order.getStatus());
+        assertEquals("COMPLETED", order.getPaymentDetails().getStatus());
+        verify(orderRepository, never()).save(order);
+    }
+
+    @Test
+    public void aFailedAttemptAfterACaptureAwaitingRefundIsIgnored() {
+        Order order = order(7L, "order_A", "CANCELLED");
+        when(jdbcTemplate.batchUpdate(eq(PaymentWebhooks.RECORD_EVENT), anyList())).thenReturn(new int[] { 1, 1 });
+        when(orderRepository.findByPaymentDetailsRazorpayOrderIdIn(anyCollection())).thenReturn(List.of(order));
+        when(orderService.settlePayment(order, "pay_1", null)).thenAnswer(invocation -> {
+            order.getPaymentDetails().setStatus("REFUND_DUE");
+            order.getPaymentDetails().setRazorpayPaymentId("pay_1");
+            return OrderService.Settlement.REFUND_DUE;
+        });
+
+        webhooks.process(List.of(event("evt_4", captured("order_A", "pay_1")),
+                event("evt_5", payload("payment.failed", "order_A", "pay_0"))));
+
+        assertEquals("REFUND_DUE", order.getPaymentDetails().getStatus());
+        assertEquals("pay_1", order.getPaymentDetails().getRazorpayPaymentId());
+        assertEquals("CANCELLED", order.getStatus());
+        assertEquals(0L, webhooks.stats().get("failed"));
+        assertEquals(2L, webhooks.stats().get("ignored"));
+        verify(orderRepository, never()).save(order);
+    }
+
+    @Test
+    public void aFailedAttemptLeavesTheOrderOpenForAnotherTry() {
+        Order order = order(7L, "order_A", "CREATED");
+        when(jdbcTemplate.batchUpdate(eq(PaymentWebhooks.RECORD_EVENT), anyList())).thenReturn(new int[] { 1 });
+        when(orderRepository.findByPaymentDetailsRazorpayOrderIdIn(anyCollection())).thenReturn(List.of(order));
+
+        webhooks.process(List.of(event("evt_3", payload("payment.failed", "order_A", "pay_0"))));
+
+        assertEquals("PAYMENT_FAILED", order.getStatus());
+        assertEquals("FAILED", order.getPaymentDetails().getStatus());
+        assertEquals(1L, webhooks.stats().get("failed"));
+    }
+
+    private static Order order(Long id, String razorpayOrderId, String status) {
+        PaymentDetails payment = new PaymentDetails();
+        payment.setRazorpayOrderId(razorpayOrderId);
+        payment.setStatus("PENDING");
+        Order order = new Order();
+        order.setId(id);
+        order.setStatus(status);
+        order.setPaymentDetails(payment);
+        return order;
+    }
+
+    private static PaymentWebhooks.Event event(String id, byte[] payload) {
+        return new PaymentWebhooks.Event(id, payload);
+    }
+
+    private static byte[] captured(String razorpayOrderId, String paymentId) {
+        return payload("payment.captured", razorpayOrderId, paymentId);
+    }
+
+    private static byte[] payload(String event, String razorpayOrderId, String paymentId) {
+        return ("{\"entity\":\"event\",\"event\":\"" + event + "\",\"payload\":{\"payment\":{\"entity\":"
+                + "{\"id\":\"" + paymentId + "\",\"order_id\":\"" + razorpayOrderId + "\",\"amount\":50000}}}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(payload));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
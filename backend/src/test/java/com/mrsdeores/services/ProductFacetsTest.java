@@ -0,0 +1,121 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Category;
+import com.mrsdeores.models.Product;
+import com.mrsdeores.payload.request.ProductFilter;
+import com.mrsdeores.payload.response.FacetCounts;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProductFacetsTest {
+
+    private final Category sweets = category(1, "Sweets");
+    private final Category premixes = category(2, "Premixes");
+
+    private final List<Product> products = List.of(
+            product(1L, "90.00", 4.5, 10, null, sweets),
+            product(2L, "250.00", 3.0, 0, "200.00", sweets),
+            product(3L, "600.00", 4.0, 5, "550.00", premixes),
+            product(4L, "1200.00", 2.0, 0, null, premixes));
+
+    private final ProductFacets facets = ProductFacets.build(products);
+
+    @Test
+    public void combinesFiltersByIntersection() {
+        ProductFilter filter = new ProductFilter();
+        filter.setMinPrice(new BigDecimal("100"));
+        filter.setMaxPrice(new BigDecimal("600"));
+        assertIds(facets.match(filter), 2L, 3L);
+
+        filter.setInStock(true);
+        assertIds(facets.match(filter), 3L);
+
+        filter.setCategoryId(1);
+        assertIds(facets.match(filter));
+    }
+
+    @Test
+    public void countsEachFacetWithoutItsOwnFilter() {
+        ProductFilter filter = new ProductFilter();
+        filter.setCategoryId(1);
+        filter.setMinRating(4);
+
+        FacetCounts counts = facets.counts(facets.all(), filter);
+
+        // categories ignore the category filter but honour the rating filter
+        assertEquals(2, counts.getCategories().size());
+        assertEquals("Premixes", counts.getCategories().get(0).getLabel());
+        assertEquals(1, counts.getCategories().get(0).getCount());
+        // ratings ignore the rating filter but honour the category filter
+        assertEquals("4", counts.getRatings().get(0).getValue());
+        assertEquals(1, counts.getRatings().get(0).getCount());
+        assertEquals(2, counts.getRatings().get(1).getCount());
+        // price bands: under 100, 100-250, 250-500, 500-1000, 1000+
+        assertEquals(List.of(1, 0, 0, 0, 0),
+                counts.getPriceRanges().stream().map(FacetCounts.FacetValue::getCount).toList());
+        assertEquals(1, counts.getInStock());
+        assertEquals(0, counts.getBulkAvailable());
+    }
+
+    @Test
+    public void countsWithinASearchUniverse() {
+        BitSet universe = facets.of(List.of(3L, 4L, 99L));
+
+        FacetCounts counts = facets.counts(universe, new ProductFilter());
+
+        assertEquals(1, counts.getCategories().size());
+        assertEquals(2, counts.getCategories().get(0).getCount());
+        assertEquals(1, counts.getBulkAvailable());
+        assertTrue(facets.contains(universe, 3L));
+        assertFalse(facets.contains(universe, 1L));
+    }
+
+    @Test
+    public void perProductMatchingAgreesWithTheBitSets() {
+        ProductFilter priced = new ProductFilter();
+        priced.setMinPrice(new BigDecimal("250"));
+        priced.setMaxPrice(new BigDecimal("600"));
+        ProductFilter rated = new ProductFilter();
+        rated.setMinRating(4);
+        rated.setCategoryId(2);
+        ProductFilter stocked = new ProductFilter();
+        stocked.setInStock(true);
+        stocked.setBulkAvailable(true);
+
+        for (ProductFilter filter : List.of(new ProductFilter(), priced, rated, stocked)) {
+            BitSet mask = facets.match(filter);
+            for (Product product : products) {
+                assertEquals(facets.contains(mask, product.getId()), ProductFacets.matches(product, filter),
+                        "product " + product.getId());
+            }
+        }
+    }
+
+    private void assertIds(BitSet set, Long... expected) {
+        List<Long> ids = List.of(1L, 2L, 3L, 4L).stream().filter(id -> facets.contains(set, id)).toList();
+        assertEquals(List.of(expected), ids);
+    }
+
+    private static Category category(int id, String name) {
+        Category category = new Category(name, name, null);
+        category.setId(id);
+        return category;
+    }
+
+    private static Product product(Long id, String price, double rating, int stock, String bulkPrice,
+            Category category) {
+        Product product = new Product("Product " + id, "", new BigDecimal(price), new BigDecimal(price), category);
+        product.setId(id);
+        product.setAverageRating(rating);
+        product.setStockQuantity(stock);
+        product.setBulkPrice(bulkPrice == null ? null : new BigDecimal(bulkPrice));
+        return product;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mrsdeores.services;
+
+import com.mrsdeores.models.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProductSortKeyTest {
+
+    @Test
+    public void nullValuesSortLastAscending() {
+        List<Product> products = new ArrayList<>(List.of(product(1L, null), product(2L, 4.0), product(3L, 3.0)));
+
+        products.sort(ProductSortKey.AVERAGE_RATING::compare);
+
+        assertEquals(List.of(3L, 2L, 1L), products.stream().map(Product::getId).toList());
+        // A keyset position on a null value still has the rated products before it.
+        assertTrue(ProductSortKey.AVERAGE_RATING.compare(product(2L, 4.0), null, 1L) < 0);
+    }
+
+    @Test
+    public void theDatabaseSortAgreesOnWhereNullsGo() {
+        Sort ascending = ProductSortKey.AVERAGE_RATING.toSort(false);
+        Sort descending = ProductSortKey.AVERAGE_RATING.toSort(true);
+
+        assertEquals(Sort.NullHandling.NULLS_LAST, ascending.getOrderFor("averageRating").getNullHandling());
+        assertEquals(Sort.NullHandling.NULLS_FIRST, descending.getOrderFor("averageRating").getNullHandling());
+        assertEquals(Sort.Direction.DESC, descending.getOrderFor("id").getDirection());
+    }
+
+    private static Product product(Long id, Double rating) {
+        Product product = new Product("Product " + id, "", BigDecimal.TEN, BigDecimal.TEN, null);
+        product.setId(id);
+        product.setAverageRating(rating);
+        return product;
+    }
+}
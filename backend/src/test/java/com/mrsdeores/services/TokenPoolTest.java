@@ -0,0 +1,107 @@
+package com.mrsdeores.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenPoolTest {
+
+    @Test
+    public void aHotPoolIsNeverOversoldUnderContention() throws Exception {
+        TokenPool pool = new TokenPool(1);
+        pool.give(1000);
+        AtomicLong sold = new AtomicLong();
+
+        runConcurrently(16, () -> {
+            while (pool.tryClaim(3)) {
+                sold.addAndGet(3);
+            }
+        });
+
+        assertEquals(999, sold.get());
+        assertEquals(1, pool.available());
+        assertEquals(999, pool.claimed());
+        assertFalse(pool.tryClaim(2));
+        assertTrue(pool.tryClaim(1));
+    }
+
+    @Test
+    public void closingMidSaleKeepsEveryUnitAccountedFor() throws Exception {
+        TokenPool pool = new TokenPool(1);
+        pool.give(500);
+        AtomicLong refusedGives = new AtomicLong();
+
+        // Checkouts claim and roll back while the pool is closed under them.
+        AtomicLong closedWith = new AtomicLong();
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 20_000; i++) {
+                if (i == 10_000 && !pool.isClosed()) {
+                    closedWith.addAndGet(pool.close());
+                }
+                if (pool.tryClaim(1) && !pool.give(1)) {
+                    refusedGives.incrementAndGet(); // the caller returns it to the row instead
+                }
+            }
+        });
+
+        assertTrue(pool.isClosed());
+        assertEquals(500, closedWith.get() + refusedGives.get());
+        assertEquals(0, pool.available());
+        assertFalse(pool.give(1));
+        assertFalse(pool.tryClaim(1));
+    }
+
+    @Test
+    public void drainNeverTakesMoreThanIsLeft() {
+        TokenPool pool = new TokenPool(1);
+        pool.give(10);
+
+        assertEquals(4, pool.drain(4));
+        assertEquals(6, pool.drain(Long.MAX_VALUE));
+        assertEquals(0, pool.drain(1));
+        assertEquals(0, pool.claimed());
+    }
+
+    @Test
+    public void idleRoundsResetOnAClaimOrAMiss() {
+        TokenPool pool = new TokenPool(1);
+        pool.give(1);
+
+        assertEquals(1, pool.noteReconcile());
+        assertEquals(2, pool.noteReconcile());
+        pool.tryClaim(1);
+        assertEquals(0, pool.noteReconcile());
+        pool.tryClaim(1); // a miss is demand too
+        assertEquals(0, pool.noteReconcile());
+        assertEquals(1, pool.noteReconcile());
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}